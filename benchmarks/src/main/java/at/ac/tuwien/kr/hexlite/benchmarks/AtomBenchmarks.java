@@ -0,0 +1,160 @@
+package at.ac.tuwien.kr.hexlite.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.ac.tuwien.kr.hexlite.OWLAPIPlugin;
+import at.ac.tuwien.kr.hexlite.Stubs;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IAnswer;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IQuery;
+import at.ac.tuwien.kr.hexlite.api.ISolverContext;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+// steady-state cost of one call of each atom of createAtoms() on a koala-style ontology (see Workloads.koala)
+//
+// the answer cache is disabled, and the modified-ontology atoms alternate between two deltas of deltaSize true modifiers,
+// so every call extracts and switches a modification; read-only atoms measure the memoized path after the first call
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dhexlite.owlapi.answercache.entries=0", "-Dhexlite.owlapi.preintern=false" })
+public class AtomBenchmarks {
+    @Param({ "1000", "10000" })
+    public int individuals;
+
+    @Param({ "1", "10", "100" })
+    public int deltaSize;
+
+    private Path dir;
+    private OWLAPIPlugin plugin;
+    private final Map<String, IPluginAtom> atoms = new HashMap<String, IPluginAtom>();
+    private Stubs.SolverContext solver;
+    private ISolverContext ctx;
+
+    private IQuery classReadOnly;
+    private IQuery objectPropertyReadOnly;
+    private IQuery dataPropertyReadOnly;
+    private IQuery simplifyIRI;
+    private final IQuery[] consistent = new IQuery[2];
+    private final IQuery[] classModified = new IQuery[2];
+    private final IQuery[] objectPropertyModified = new IQuery[2];
+    private int call;
+
+    private static ISymbol individual(final int i) {
+        return Stubs.quoted("koala:i" + i);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("hexlite-owlapi-bench");
+        final ISymbol onto = Stubs.quoted(Workloads.koala(dir, individuals).toString());
+        plugin = new OWLAPIPlugin();
+        for( final IPluginAtom atom : plugin.createAtoms() ) {
+            atoms.put(atom.getPredicate(), atom);
+        }
+        solver = new Stubs.SolverContext();
+        ctx = solver.create();
+
+        final List<ISymbol> none = new ArrayList<ISymbol>();
+        classReadOnly = Stubs.query(Stubs.interpretation(none), onto, Stubs.quoted("koala:Animal"));
+        objectPropertyReadOnly = Stubs.query(Stubs.interpretation(none), onto, Stubs.quoted("koala:hasChild"));
+        dataPropertyReadOnly = Stubs.query(Stubs.interpretation(none), onto, Stubs.quoted("koala:age"));
+        simplifyIRI = Stubs.query(Stubs.interpretation(none), onto, Stubs.quoted(Workloads.KOALA_NS + "i1"));
+
+        // selector s<k> makes deltaSize individuals (disjoint for both selectors) parents of marsupials
+        final ISymbol delta = Stubs.constant("delta");
+        final List<ISymbol> inputAtoms = new ArrayList<ISymbol>();
+        final List<ISymbol> replacementAtoms = new ArrayList<ISymbol>();
+        for( int k = 0; k < 2; k++ ) {
+            final ISymbol sel = Stubs.constant("s" + k);
+            for( int d = 0; d < deltaSize; d++ ) {
+                final int parent = (2 * d + k) % individuals;
+                final int child = (parent + 1) % individuals;
+                inputAtoms.add(Stubs.atom(true, "delta", sel,
+                    Stubs.term("addop", Stubs.quoted("koala:hasChild"), individual(parent), individual(child))));
+                inputAtoms.add(Stubs.atom(true, "delta", sel, Stubs.term("addc", Stubs.quoted("koala:Marsupial"), individual(child))));
+                replacementAtoms.add(Stubs.atom(true, "aux_r_dlC", onto, delta, sel, Stubs.quoted("koala:Parent"), individual(parent)));
+            }
+        }
+        solver.setInstantiatedOutputAtoms(replacementAtoms);
+        for( int k = 0; k < 2; k++ ) {
+            final ISymbol sel = Stubs.constant("s" + k);
+            consistent[k] = Stubs.query(Stubs.interpretation(inputAtoms), onto, delta, sel);
+            classModified[k] = Stubs.query(Stubs.interpretation(inputAtoms), onto, delta, sel, Stubs.quoted("koala:Parent"));
+            objectPropertyModified[k] = Stubs.query(Stubs.interpretation(inputAtoms), onto, delta, sel, Stubs.quoted("koala:hasDescendant"));
+        }
+        call = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        plugin.teardown();
+        try( Stream<Path> files = Files.walk(dir) ) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private IAnswer retrieve(final String predicate, final IQuery query) {
+        return atoms.get(predicate).retrieve(ctx, query);
+    }
+
+    @Benchmark
+    public IAnswer dlCro() {
+        return retrieve("dlCro", classReadOnly);
+    }
+
+    @Benchmark
+    public IAnswer dlOPro() {
+        return retrieve("dlOPro", objectPropertyReadOnly);
+    }
+
+    @Benchmark
+    public IAnswer dlDPro() {
+        return retrieve("dlDPro", dataPropertyReadOnly);
+    }
+
+    @Benchmark
+    public IAnswer dlSimplifyIRI() {
+        return retrieve("dlSimplifyIRI", simplifyIRI);
+    }
+
+    @Benchmark
+    public IAnswer dlConsistent() {
+        return retrieve("dlConsistent", consistent[call++ & 1]);
+    }
+
+    @Benchmark
+    public IAnswer dlC() {
+        return retrieve("dlC", classModified[call++ & 1]);
+    }
+
+    @Benchmark
+    public IAnswer dlOP() {
+        return retrieve("dlOP", objectPropertyModified[call++ & 1]);
+    }
+}
@@ -0,0 +1,75 @@
+package at.ac.tuwien.kr.hexlite.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.ac.tuwien.kr.hexlite.OWLAPIPlugin;
+import at.ac.tuwien.kr.hexlite.Stubs;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IAnswer;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+// cost of the first call on a fresh plugin: loading the ontology, classification, and answering dlCro
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmarks {
+    @Param({ "1000", "10000", "100000" })
+    public int individuals;
+
+    private Path dir;
+    private ISymbol onto;
+    private OWLAPIPlugin plugin;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dir = Files.createTempDirectory("hexlite-owlapi-bench");
+        onto = Stubs.quoted(Workloads.koala(dir, individuals).toString());
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardownPlugin() {
+        if( plugin != null ) plugin.teardown();
+        plugin = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try( Stream<Path> files = Files.walk(dir) ) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public IAnswer firstDlCro() {
+        plugin = new OWLAPIPlugin();
+        for( final IPluginAtom atom : plugin.createAtoms() ) {
+            if( atom.getPredicate().equals("dlCro") )
+                return atom.retrieve(new Stubs.SolverContext().create(),
+                    Stubs.query(Stubs.interpretation(new ArrayList<ISymbol>()), onto, Stubs.quoted("koala:Animal")));
+        }
+        throw new IllegalStateException("no dlCro atom");
+    }
+}
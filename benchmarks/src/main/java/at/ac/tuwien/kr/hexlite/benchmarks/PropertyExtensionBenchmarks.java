@@ -0,0 +1,107 @@
+package at.ac.tuwien.kr.hexlite.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+import at.ac.tuwien.kr.hexlite.BulkPropertyExtensions;
+
+// property extensions of dlOPro and dlOP: bulk lookup of told sub-property assertions (BulkPropertyExtensions)
+// against one reasoner call per individual, and against the path before bulk extensions (instances of the
+// property domains, then one reasoner call per instance);
+// hasChild is told-complete, hasDescendant is transitive and takes the per-individual fallback in the bulk variant
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PropertyExtensionBenchmarks {
+    @Param({ "1000", "10000" })
+    public int individuals;
+
+    @Param({ "hasChild", "hasDescendant" })
+    public String property;
+
+    private Path dir;
+    private OWLOntology ontology;
+    private OWLReasoner reasoner;
+    private BulkPropertyExtensions extensions;
+    private OWLObjectProperty op;
+    private List<OWLNamedIndividual> signature;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, OWLOntologyCreationException {
+        dir = Files.createTempDirectory("hexlite-owlapi-bench");
+        Workloads.koala(dir, individuals);
+        ontology = OWLManager.createOWLOntologyManager()
+            .loadOntologyFromOntologyDocument(dir.resolve("koala-" + individuals + ".owl").toFile());
+        reasoner = new org.semanticweb.HermiT.Reasoner(new org.semanticweb.HermiT.Configuration(), ontology);
+        reasoner.precomputeInferences();
+        extensions = new BulkPropertyExtensions(ontology);
+        op = ontology.getOWLOntologyManager().getOWLDataFactory().getOWLObjectProperty(IRI.create(Workloads.KOALA_NS + property));
+        signature = new ArrayList<OWLNamedIndividual>();
+        ontology.individualsInSignature(Imports.INCLUDED).forEach(signature::add);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        reasoner.dispose();
+        try( Stream<Path> files = Files.walk(dir) ) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long bulk() {
+        final long[] pairs = new long[] { 0 };
+        extensions.objectPropertyExtension(ontology, () -> reasoner, op, (s, o) -> pairs[0]++);
+        return pairs[0];
+    }
+
+    @Benchmark
+    public long perIndividual() {
+        long pairs = 0;
+        for( final OWLNamedIndividual s : signature ) {
+            pairs += reasoner.getObjectPropertyValues(s, op).entities().count();
+        }
+        return pairs;
+    }
+
+    @Benchmark
+    public long domainInstances() {
+        final long[] pairs = new long[] { 0 };
+        reasoner.objectPropertyDomains(op)
+            .flatMap(domain -> reasoner.instances(domain, false))
+            .distinct()
+            .forEach(s -> pairs[0] += reasoner.objectPropertyValues(s, op).count());
+        return pairs[0];
+    }
+}
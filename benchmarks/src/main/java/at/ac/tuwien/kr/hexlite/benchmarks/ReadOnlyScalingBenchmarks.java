@@ -0,0 +1,93 @@
+package at.ac.tuwien.kr.hexlite.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.ac.tuwien.kr.hexlite.OWLAPIPlugin;
+import at.ac.tuwien.kr.hexlite.Stubs;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IAnswer;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IQuery;
+import at.ac.tuwien.kr.hexlite.api.ISolverContext;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+// throughput of memoized read-only calls from one and from four threads sharing the plugin
+//
+// memoized read-only calls do not take the ontology lock, so the throughput with four threads should be close to
+// four times the single-threaded throughput on a machine with four free processors
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadOnlyScalingBenchmarks {
+    private Path dir;
+    private OWLAPIPlugin plugin;
+    private IPluginAtom dlCro;
+    private IQuery query;
+
+    // every solver thread has its own solver context
+    @State(Scope.Thread)
+    public static class Solver {
+        ISolverContext ctx;
+
+        @Setup(Level.Trial)
+        public void create() {
+            ctx = new Stubs.SolverContext().create();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("hexlite-owlapi-bench");
+        final ISymbol onto = Stubs.quoted(Workloads.koala(dir, 1000).toString());
+        plugin = new OWLAPIPlugin();
+        for( final IPluginAtom atom : plugin.createAtoms() ) {
+            if( atom.getPredicate().equals("dlCro") )
+                dlCro = atom;
+        }
+        query = Stubs.query(Stubs.interpretation(new ArrayList<ISymbol>()), onto, Stubs.quoted("koala:Animal"));
+        // memoize the answer
+        dlCro.retrieve(new Stubs.SolverContext().create(), query);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        plugin.teardown();
+        try( Stream<Path> files = Files.walk(dir) ) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IAnswer memoizedDlCroOneThread(final Solver solver) {
+        return dlCro.retrieve(solver.ctx, query);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public IAnswer memoizedDlCroFourThreads(final Solver solver) {
+        return dlCro.retrieve(solver.ctx, query);
+    }
+}
@@ -0,0 +1,176 @@
+package at.ac.tuwien.kr.hexlite.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import at.ac.tuwien.kr.hexlite.OWLAPIPlugin;
+import at.ac.tuwien.kr.hexlite.Stubs;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IQuery;
+import at.ac.tuwien.kr.hexlite.api.ISolverContext;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+// end-to-end scaling of the plugin atoms on generated workloads (see Workloads), written as CSV
+//
+// for every workload size a fresh plugin loads the ontology (first call), then each atom is called repeatedly
+// for a fixed time; modified-ontology atoms cycle through several deltas so that every call switches the modification
+//
+// usage: ScalingSuite <out.csv> [koala sizes, default 1000,10000,100000] [factory boxes, default 10,100,1000] [seconds per measurement, default 5]
+public final class ScalingSuite {
+    private final PrintWriter csv;
+    private final Path dir;
+    private final double seconds;
+
+    private ScalingSuite(final PrintWriter _csv, final Path _dir, final double _seconds) {
+        csv = _csv;
+        dir = _dir;
+        seconds = _seconds;
+    }
+
+    private static long usedHeap() {
+        for( int i = 0; i < 3; i++ ) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private void row(final String workload, final int size, final int delta, final String atom, final long calls,
+            final double elapsed, final long heap) {
+        csv.printf("%s,%d,%d,%s,%d,%.3f,%.1f,%.1f%n", workload, size, delta, atom, calls, elapsed,
+            calls / elapsed, heap / (1024.0 * 1024.0));
+        csv.flush();
+    }
+
+    // call atom with the queries in turn until the time is up
+    private void measure(final String workload, final int size, final int delta, final Map<String, IPluginAtom> atoms,
+            final ISolverContext ctx, final String atom, final List<IQuery> queries) {
+        final long end = System.nanoTime() + (long) (seconds * 1e9);
+        final long start = System.nanoTime();
+        long calls = 0;
+        do {
+            atoms.get(atom).retrieve(ctx, queries.get((int) (calls % queries.size())));
+            calls++;
+        } while( System.nanoTime() < end );
+        row(workload, size, delta, atom, calls, (System.nanoTime() - start) / 1e9, usedHeap());
+    }
+
+    private static Map<String, IPluginAtom> atoms(final OWLAPIPlugin plugin) {
+        final Map<String, IPluginAtom> ret = new HashMap<String, IPluginAtom>();
+        for( final IPluginAtom atom : plugin.createAtoms() ) ret.put(atom.getPredicate(), atom);
+        return ret;
+    }
+
+    private void koala(final int individuals) throws IOException {
+        final ISymbol onto = Stubs.quoted(Workloads.koala(dir, individuals).toString());
+        final OWLAPIPlugin plugin = new OWLAPIPlugin();
+        final Map<String, IPluginAtom> atoms = atoms(plugin);
+        final ISolverContext ctx = new Stubs.SolverContext().create();
+        final IQuery animals = Stubs.query(Stubs.interpretation(new ArrayList<ISymbol>()), onto, Stubs.quoted("koala:Animal"));
+
+        final long start = System.nanoTime();
+        atoms.get("dlCro").retrieve(ctx, animals);
+        row("koala", individuals, 0, "load+dlCro", 1, (System.nanoTime() - start) / 1e9, usedHeap());
+
+        measure("koala", individuals, 0, atoms, ctx, "dlCro", Arrays.asList(animals));
+        measure("koala", individuals, 0, atoms, ctx, "dlOPro",
+            Arrays.asList(Stubs.query(Stubs.interpretation(new ArrayList<ISymbol>()), onto, Stubs.quoted("koala:hasChild"))));
+        measure("koala", individuals, 0, atoms, ctx, "dlDPro",
+            Arrays.asList(Stubs.query(Stubs.interpretation(new ArrayList<ISymbol>()), onto, Stubs.quoted("koala:age"))));
+
+        final ISymbol delta = Stubs.constant("delta");
+        for( final int deltaSize : new int[] { 1, 10, 100 } ) {
+            // 4 selectors with disjoint deltas of deltaSize new hasChild pairs
+            final List<ISymbol> inputAtoms = new ArrayList<ISymbol>();
+            for( int k = 0; k < 4; k++ ) {
+                for( int d = 0; d < deltaSize; d++ ) {
+                    final int parent = (4 * d + k) % individuals;
+                    inputAtoms.add(Stubs.atom(true, "delta", Stubs.constant("s" + k), Stubs.term("addop", Stubs.quoted("koala:hasChild"),
+                        Stubs.quoted("koala:i" + parent), Stubs.quoted("koala:i" + ((parent + 1) % individuals)))));
+                }
+            }
+            final List<IQuery> consistent = new ArrayList<IQuery>();
+            final List<IQuery> parents = new ArrayList<IQuery>();
+            for( int k = 0; k < 4; k++ ) {
+                consistent.add(Stubs.query(Stubs.interpretation(inputAtoms), onto, delta, Stubs.constant("s" + k)));
+                parents.add(Stubs.query(Stubs.interpretation(inputAtoms), onto, delta, Stubs.constant("s" + k), Stubs.quoted("koala:Parent")));
+            }
+            measure("koala", individuals, deltaSize, atoms, ctx, "dlConsistent", consistent);
+            measure("koala", individuals, deltaSize, atoms, ctx, "dlC", parents);
+        }
+        plugin.teardown();
+    }
+
+    // the calls of the factory domain: one delta per time step with the open/closed state of every box
+    private void factory(final int boxes) throws IOException {
+        final int robots = Math.max(1, boxes / 5);
+        final int timesteps = 5;
+        final Path instance = Workloads.factory(dir, boxes, robots, timesteps);
+        final ISymbol onto = Stubs.quoted(instance.resolve("meta.json").toString());
+        final OWLAPIPlugin plugin = new OWLAPIPlugin();
+        final Map<String, IPluginAtom> atoms = atoms(plugin);
+        final ISolverContext ctx = new Stubs.SolverContext().create();
+        final IQuery boxQuery = Stubs.query(Stubs.interpretation(new ArrayList<ISymbol>()), onto, Stubs.quoted("ex:Box"));
+
+        final long start = System.nanoTime();
+        atoms.get("dlCro").retrieve(ctx, boxQuery);
+        row("factory", boxes, 0, "load+dlCro", 1, (System.nanoTime() - start) / 1e9, usedHeap());
+        measure("factory", boxes, 0, atoms, ctx, "dlCro", Arrays.asList(boxQuery));
+
+        final Random random = new Random(boxes);
+        final ISymbol delta = Stubs.constant("delta");
+        final List<ISymbol> inputAtoms = new ArrayList<ISymbol>();
+        for( int t = 0; t <= timesteps; t++ ) {
+            final ISymbol step = Stubs.constant(String.valueOf(t));
+            for( int b = 1; b <= boxes; b++ ) {
+                final boolean closed = random.nextBoolean();
+                final ISymbol box = Stubs.quoted("ex:b" + b);
+                inputAtoms.add(Stubs.atom(true, "delta", step, Stubs.term("addc", Stubs.quoted(closed ? "ex:ClosedBox" : "ex:OpenBox"), box)));
+                inputAtoms.add(Stubs.atom(true, "delta", step, Stubs.term("delc", Stubs.quoted(closed ? "ex:OpenBox" : "ex:ClosedBox"), box)));
+            }
+        }
+        final List<IQuery> consistent = new ArrayList<IQuery>();
+        final List<IQuery> affordances = new ArrayList<IQuery>();
+        for( int t = 0; t <= timesteps; t++ ) {
+            final ISymbol step = Stubs.constant(String.valueOf(t));
+            consistent.add(Stubs.query(Stubs.interpretation(inputAtoms), onto, delta, step));
+            for( final String c : new String[] { "ex:AffordsOpening", "ex:AffordsClosing", "ex:AffordsPainting", "ex:MRobot", "ex:PRobot" } )
+                affordances.add(Stubs.query(Stubs.interpretation(inputAtoms), onto, delta, step, Stubs.quoted(c)));
+        }
+        measure("factory", boxes, 2 * boxes, atoms, ctx, "dlConsistent", consistent);
+        measure("factory", boxes, 2 * boxes, atoms, ctx, "dlC", affordances);
+        plugin.teardown();
+    }
+
+    private static int[] sizes(final String[] args, final int index, final int[] defaults) {
+        if( args.length <= index )
+            return defaults;
+        return Arrays.stream(args[index].split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if( args.length < 1 ) {
+            System.err.println("usage: ScalingSuite <out.csv> [koala sizes] [factory boxes] [seconds per measurement]");
+            System.exit(1);
+        }
+        final int[] koalaSizes = sizes(args, 1, new int[] { 1000, 10000, 100000 });
+        final int[] factorySizes = sizes(args, 2, new int[] { 10, 100, 1000 });
+        final double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 5.0;
+        final Path dir = Files.createTempDirectory("hexlite-owlapi-scaling");
+        try( PrintWriter csv = new PrintWriter(Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8)) ) {
+            csv.println("workload,size,delta,atom,calls,seconds,calls_per_second,heap_mb");
+            final ScalingSuite suite = new ScalingSuite(csv, dir, seconds);
+            for( final int size : koalaSizes ) suite.koala(size);
+            for( final int boxes : factorySizes ) suite.factory(boxes);
+        }
+        System.out.println("generated workloads are in " + dir);
+    }
+}
@@ -0,0 +1,136 @@
+package at.ac.tuwien.kr.hexlite.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+// synthetic workloads: ontologies with a meta file for the plugin (and HEX programs for the factory domain)
+public final class Workloads {
+    public static final String KOALA_NS = "http://kr.tuwien.ac.at/hexlite/hexlite-plugin-owlapi/benchmarks/koala#";
+    public static final String FACTORY_NS = "http://www.kr.tuwien.ac.at/projects/hexlite/example#";
+
+    private Workloads() {
+    }
+
+    // command line: koala <dir> <individuals> | factory <dir> <boxes> <robots> <timesteps>
+    public static void main(final String[] args) throws IOException {
+        if( args.length == 3 && args[0].equals("koala") ) {
+            System.out.println(koala(Paths.get(args[1]), Integer.parseInt(args[2])));
+        } else if( args.length == 5 && args[0].equals("factory") ) {
+            System.out.println(factory(Paths.get(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4])));
+        } else {
+            System.err.println("usage: Workloads koala <dir> <individuals> | factory <dir> <boxes> <robots> <timesteps>");
+            System.exit(1);
+        }
+    }
+
+    // koala-style ontology with the given number of individuals, returns the meta file
+    //
+    // TBox: Koala < Marsupial < Animal, Person < Animal, Koala and Person disjoint, Parent = hasChild some Animal,
+    // hasChild < hasDescendant (transitive); ABox: every individual is a Koala, Person or Marsupial,
+    // has a child 3 positions further, and an age
+    public static Path koala(final Path dir, final int individuals) throws IOException {
+        Files.createDirectories(dir);
+        final Path owl = dir.resolve("koala-" + individuals + ".owl");
+        try( PrintWriter out = new PrintWriter(Files.newBufferedWriter(owl, StandardCharsets.UTF_8)) ) {
+            out.println("Prefix(:=<" + KOALA_NS + ">)");
+            out.println("Prefix(xsd:=<http://www.w3.org/2001/XMLSchema#>)");
+            out.println("Ontology(<" + KOALA_NS.substring(0, KOALA_NS.length() - 1) + ">");
+            for( final String c : new String[] { "Animal", "Marsupial", "Koala", "Person", "Parent" } )
+                out.println("Declaration(Class(:" + c + "))");
+            out.println("Declaration(ObjectProperty(:hasChild))");
+            out.println("Declaration(ObjectProperty(:hasDescendant))");
+            out.println("Declaration(DataProperty(:age))");
+            out.println("SubClassOf(:Koala :Marsupial)");
+            out.println("SubClassOf(:Marsupial :Animal)");
+            out.println("SubClassOf(:Person :Animal)");
+            out.println("DisjointClasses(:Koala :Person)");
+            out.println("EquivalentClasses(:Parent ObjectSomeValuesFrom(:hasChild :Animal))");
+            out.println("SubObjectPropertyOf(:hasChild :hasDescendant)");
+            out.println("TransitiveObjectProperty(:hasDescendant)");
+            out.println("DataPropertyRange(:age xsd:integer)");
+            for( int i = 0; i < individuals; i++ ) {
+                out.println("Declaration(NamedIndividual(:i" + i + "))");
+                out.println("ClassAssertion(:" + (i % 3 == 0 ? "Koala" : i % 3 == 1 ? "Person" : "Marsupial") + " :i" + i + ")");
+                if( i + 3 < individuals && i % 2 == 0 )
+                    out.println("ObjectPropertyAssertion(:hasChild :i" + i + " :i" + (i + 3) + ")");
+                out.println("DataPropertyAssertion(:age :i" + i + " \"" + (i % 100) + "\"^^xsd:integer)");
+            }
+            out.println(")");
+        }
+        return meta(dir, "koala-" + individuals + "-meta.json", owl, "koala", KOALA_NS);
+    }
+
+    // factory domain (examples/factory) with the given number of boxes and robots and a planning horizon,
+    // returns the directory with meta.json, factory.owl, domain.hex and query.hex (run hexlite there on domain.hex query.hex)
+    //
+    // boxes alternate between open and closed, robots between MRobot, PRobot and both; every time step of the program
+    // adds and deletes one class assertion per box and state, so the program is dominated by modified-ontology calls
+    public static Path factory(final Path dir, final int boxes, final int robots, final int timesteps) throws IOException {
+        final Path instance = dir.resolve("factory-" + boxes + "-" + robots + "-" + timesteps);
+        Files.createDirectories(instance);
+        final Path owl = instance.resolve("factory.owl");
+        try( PrintWriter out = new PrintWriter(Files.newBufferedWriter(owl, StandardCharsets.UTF_8)) ) {
+            out.println("Prefix(:=<" + FACTORY_NS + ">)");
+            out.println("Ontology(<" + FACTORY_NS.substring(0, FACTORY_NS.length() - 1) + ">");
+            for( final String c : new String[] { "Affordance", "AffordsClosing", "AffordsOpening", "AffordsPainting",
+                    "Box", "ClosedBox", "OpenBox", "PaintedBox", "Robot", "MRobot", "PRobot" } )
+                out.println("Declaration(Class(:" + c + "))");
+            for( final String c : new String[] { "AffordsClosing", "AffordsOpening", "AffordsPainting" } )
+                out.println("SubClassOf(:" + c + " :Affordance)");
+            out.println("SubClassOf(:ClosedBox :AffordsOpening)");
+            out.println("SubClassOf(:ClosedBox :AffordsPainting)");
+            out.println("SubClassOf(:ClosedBox :Box)");
+            out.println("DisjointClasses(:ClosedBox :OpenBox)");
+            out.println("SubClassOf(:OpenBox :AffordsClosing)");
+            out.println("SubClassOf(:OpenBox :Box)");
+            out.println("SubClassOf(:PaintedBox :Box)");
+            out.println("SubClassOf(:MRobot :Robot)");
+            out.println("SubClassOf(:PRobot :Robot)");
+            for( int b = 1; b <= boxes; b++ ) {
+                out.println("Declaration(NamedIndividual(:b" + b + "))");
+                out.println("ClassAssertion(:" + (b % 2 == 0 ? "ClosedBox" : "OpenBox") + " :b" + b + ")");
+            }
+            for( int r = 1; r <= robots; r++ ) {
+                out.println("Declaration(NamedIndividual(:r" + r + "))");
+                if( r % 3 != 2 ) out.println("ClassAssertion(:MRobot :r" + r + ")");
+                if( r % 3 != 1 ) out.println("ClassAssertion(:PRobot :r" + r + ")");
+            }
+            out.println(")");
+        }
+        meta(instance, "meta.json", owl, "ex", FACTORY_NS);
+        try( InputStream domain = Workloads.class.getResourceAsStream("/factory/domain.hex") ) {
+            Files.copy(domain, instance.resolve("domain.hex"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        try( PrintWriter out = new PrintWriter(Files.newBufferedWriter(instance.resolve("query.hex"), StandardCharsets.UTF_8)) ) {
+            out.println("#const finaltimestep=" + timesteps + ".");
+            out.println();
+            out.println(":- box(B), not state(B,painted,finaltimestep).");
+            out.println();
+            out.println(":~ do(A,T). [T+1,A]");
+            out.println();
+            out.println("#show state/3.");
+            out.println("#show do/2.");
+        }
+        return instance;
+    }
+
+    static Path meta(final Path dir, final String name, final Path owl, final String prefix, final String namespace) throws IOException {
+        final Path meta = dir.resolve(name);
+        try( PrintWriter out = new PrintWriter(Files.newBufferedWriter(meta, StandardCharsets.UTF_8)) ) {
+            out.println("{");
+            out.println("  \"load-uri\": \"" + owl.toAbsolutePath() + "\",");
+            out.println("  \"namespaces\": {");
+            out.println("    \"owl\": \"http://www.w3.org/2002/07/owl#\",");
+            out.println("    \"" + prefix + "\": \"" + namespace + "\"");
+            out.println("  }");
+            out.println("}");
+        }
+        return meta;
+    }
+}
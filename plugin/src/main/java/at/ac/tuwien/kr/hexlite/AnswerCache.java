@@ -0,0 +1,134 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import at.ac.tuwien.kr.hexlite.api.Answer;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+// bounded LRU cache for answers of modified-ontology atoms (thread-safe)
+// one cache per solver context: the cached tuples are symbols of that context, and so are the modifiers in the keys
+// an answer only depends on the ontology, the atom, its query constants and the set of true delta modifiers
+// (the delta predicate and the selector do not matter, only the modifications they select)
+class AnswerCache {
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+    public static final int DEFAULT_MAX_TUPLES = 1 << 20;
+
+    public static class Key {
+        private final IOntologyContext context;
+        private final String predicate;
+        private final List<ISymbol> query;
+        private final Set<ISymbol> modifiers;
+        private final int hash;
+
+        public Key(final IOntologyContext _context, final String _predicate, final List<ISymbol> _query, final Set<ISymbol> _modifiers) {
+            context = _context;
+            predicate = _predicate;
+            query = new ArrayList<ISymbol>(_query);
+            // set equality and set hash code do not depend on the order of the modifiers
+            modifiers = new HashSet<ISymbol>(_modifiers);
+            hash = ((System.identityHashCode(context) * 31 + predicate.hashCode()) * 31 + query.hashCode()) * 31 + modifiers.hashCode();
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if( o instanceof Key ) {
+                final Key k = (Key)o;
+                return hash == k.hash && context == k.context && predicate.equals(k.predicate)
+                    && query.equals(k.query) && modifiers.equals(k.modifiers);
+            } else {
+                return false;
+            }
+        }
+    }
+
+    private final int maxEntries;
+    private final int maxTuples;
+    private final LinkedHashMap<Key, List<ArrayList<ISymbol>>> entries;
+    private int tuples;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public AnswerCache(final int _maxEntries, final int _maxTuples) {
+        maxEntries = _maxEntries;
+        maxTuples = _maxTuples;
+        // access order = LRU iteration order
+        entries = new LinkedHashMap<Key, List<ArrayList<ISymbol>>>(16, 0.75f, true);
+        tuples = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    // returns a fresh answer with the cached tuples or null if the key is not cached
+    public synchronized Answer get(final Key key) {
+        if( !isEnabled() )
+            return null;
+        final List<ArrayList<ISymbol>> cached = entries.get(key);
+        if( cached == null ) {
+            misses++;
+            return null;
+        }
+        hits++;
+        final Answer answer = new Answer();
+        for( final ArrayList<ISymbol> t : cached ) {
+            answer.output(new ArrayList<ISymbol>(t));
+        }
+        return answer;
+    }
+
+    public synchronized void put(final Key key, final Answer answer) {
+        if( !isEnabled() )
+            return;
+        final List<ArrayList<ISymbol>> stored = new ArrayList<ArrayList<ISymbol>>(answer.getTrueTuples().size());
+        for( final List<ISymbol> t : answer.getTrueTuples() ) {
+            stored.add(new ArrayList<ISymbol>(t));
+        }
+        if( stored.size() > maxTuples )
+            return;
+        final List<ArrayList<ISymbol>> previous = entries.put(key, stored);
+        if( previous != null )
+            tuples -= previous.size();
+        tuples += stored.size();
+
+        // evict least recently used entries until we are within both bounds
+        final Iterator<Map.Entry<Key, List<ArrayList<ISymbol>>>> it = entries.entrySet().iterator();
+        while( (entries.size() > maxEntries || tuples > maxTuples) && it.hasNext() ) {
+            final Map.Entry<Key, List<ArrayList<ISymbol>>> eldest = it.next();
+            if( eldest.getKey().equals(key) )
+                continue;
+            tuples -= eldest.getValue().size();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,36 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+// public entry point to the property extensions of the plugin (see PropertyExtensions) for code outside this package,
+// e.g. the benchmarks
+public final class BulkPropertyExtensions {
+    private final PropertyExtensions extensions;
+
+    public BulkPropertyExtensions(final OWLOntology ontology) {
+        extensions = new PropertyExtensions(ontology);
+    }
+
+    // whether the extension of op consists of asserted pairs only (no reasoner call)
+    public boolean isToldComplete(final OWLObjectProperty op) {
+        return extensions.isToldComplete(op);
+    }
+
+    public void objectPropertyExtension(final OWLOntology ontology, final Supplier<OWLReasoner> reasoner, final OWLObjectProperty op,
+            final BiConsumer<OWLNamedIndividual, OWLNamedIndividual> consumer) {
+        extensions.objectPropertyExtension(ontology, reasoner, op, consumer);
+    }
+
+    public void dataPropertyExtension(final OWLOntology ontology, final Supplier<OWLReasoner> reasoner, final OWLDataProperty dp,
+            final BiConsumer<OWLNamedIndividual, OWLLiteral> consumer) {
+        extensions.dataPropertyExtension(ontology, reasoner, dp, consumer);
+    }
+}
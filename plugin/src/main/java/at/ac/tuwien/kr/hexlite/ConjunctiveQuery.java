@@ -0,0 +1,420 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.parameters.AxiomAnnotations;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
+
+// conjunctive query over the vocabulary of an ontology, e.g. "koala:Koala(?X), koala:hasChild(?X,?Y), koala:age(?Y,?A)"
+//
+// atoms are C(t) for a class C and p(t1,t2) for an object or data property p; terms are variables (?X),
+// individuals, and (as values of data properties) literals: "text", "text"^^xsd:type, "text"@lang, 42, 4.2, true
+//
+// all variables are answer variables, in the order of their first occurrence
+//
+// the query is parsed once: class atoms and property atoms with one constant are rolled up into one class expression
+// per variable (e.g. p(?X,a) becomes "p value a"), whose instances are retrieved with a single reasoner call;
+// property atoms between two variables are joined over the property extensions inside the plugin
+// (each evaluation retrieves instances and extensions again, the context memoizes the answers per query)
+//
+// both parts are complete w.r.t. the same reasoner: the extension of a property consists of its asserted pairs only if
+// PropertyExtensions shows that nothing else can be entailed (no transitivity, chains, hasValue, equality, ...);
+// otherwise it is retrieved from the reasoner, like the instances of the rolled-up class expressions
+// (with the RL materializer, object property extensions and class names come from the materialization)
+class ConjunctiveQuery {
+    // stands for a query that could not be parsed (the error is reported once, when the query is compiled)
+    static final ConjunctiveQuery INVALID = new ConjunctiveQuery();
+
+    // property atom between two variables (or with a constant subject and a literal variable)
+    private static final class Edge {
+        final OWLObjectProperty op;
+        final OWLDataProperty dp;
+        // variable index of the subject, -1 if the subject is the constant fixedSubject
+        final int subject;
+        final OWLNamedIndividual fixedSubject;
+        final int object;
+
+        Edge(final OWLObjectProperty _op, final OWLDataProperty _dp, final int _subject, final OWLNamedIndividual _fixedSubject, final int _object) {
+            op = _op;
+            dp = _dp;
+            subject = _subject;
+            fixedSubject = _fixedSubject;
+            object = _object;
+        }
+    }
+
+    private final List<String> variables;
+    // class expressions per variable, from class atoms and rolled-up property atoms
+    private final List<List<OWLClassExpression>> constraints;
+    private final List<Edge> edges;
+    // atoms without variables
+    private final List<OWLAxiom> checks;
+
+    private ConjunctiveQuery() {
+        variables = Collections.emptyList();
+        constraints = Collections.emptyList();
+        edges = Collections.emptyList();
+        checks = Collections.emptyList();
+    }
+
+    private ConjunctiveQuery(final List<String> _variables, final List<List<OWLClassExpression>> _constraints,
+            final List<Edge> _edges, final List<OWLAxiom> _checks) {
+        variables = _variables;
+        constraints = _constraints;
+        edges = _edges;
+        checks = _checks;
+    }
+
+    // number of answer variables
+    public int arity() {
+        return variables.size();
+    }
+
+    public List<String> variables() {
+        return variables;
+    }
+
+    // parses query, names are resolved with the ontology signature of oc (the caller holds its lock)
+    // throws IllegalArgumentException if query is malformed or uses names that are not in the signature
+    static ConjunctiveQuery parse(final String query, final IOntologyContext oc) {
+        return new Parser(query, oc).parse();
+    }
+
+    private static final class Parser {
+        private final String s;
+        private final OWLDataFactory df;
+        private final QueryVocabulary vocabulary;
+        private int pos;
+
+        private final List<String> variables = new ArrayList<String>();
+        private final Map<String, Integer> index = new HashMap<String, Integer>();
+        // for each variable: whether it stands for literals
+        private final List<Boolean> literal = new ArrayList<Boolean>();
+        private final List<List<OWLClassExpression>> constraints = new ArrayList<List<OWLClassExpression>>();
+        private final List<Edge> edges = new ArrayList<Edge>();
+        private final List<OWLAxiom> checks = new ArrayList<OWLAxiom>();
+
+        Parser(final String _s, final IOntologyContext _oc) {
+            s = _s;
+            df = _oc.df();
+            vocabulary = new QueryVocabulary(_oc);
+            pos = 0;
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " of conjunctive query " + s);
+        }
+
+        private void skipWhitespace() {
+            while( pos < s.length() && Character.isWhitespace(s.charAt(pos)) ) pos++;
+        }
+
+        private boolean accept(final char c) {
+            skipWhitespace();
+            if( pos < s.length() && s.charAt(pos) == c ) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(final char c) {
+            if( !accept(c) )
+                throw error("expected '" + c + "'");
+        }
+
+        // prefixed name, plain name, or full IRI in angle brackets
+        private String name() {
+            skipWhitespace();
+            final int start = pos;
+            if( pos < s.length() && s.charAt(pos) == '<' ) {
+                final int end = s.indexOf('>', pos);
+                if( end == -1 )
+                    throw error("unterminated IRI");
+                pos = end + 1;
+                return s.substring(start, pos);
+            }
+            while( pos < s.length() && !Character.isWhitespace(s.charAt(pos)) && "(),".indexOf(s.charAt(pos)) == -1 ) pos++;
+            if( pos == start )
+                throw error("expected a name");
+            return s.substring(start, pos);
+        }
+
+        // variable index (>= 0) or constant (individual or literal)
+        private Object term() {
+            skipWhitespace();
+            if( pos >= s.length() )
+                throw error("expected a term");
+            final char c = s.charAt(pos);
+            if( c == '?' ) {
+                pos++;
+                final int start = pos;
+                while( pos < s.length() && (Character.isLetterOrDigit(s.charAt(pos)) || s.charAt(pos) == '_') ) pos++;
+                if( pos == start )
+                    throw error("expected a variable name");
+                final String variable = s.substring(start, pos);
+                Integer v = index.get(variable);
+                if( v == null ) {
+                    v = variables.size();
+                    index.put(variable, v);
+                    variables.add(variable);
+                    literal.add(null);
+                    constraints.add(new ArrayList<OWLClassExpression>());
+                }
+                return v;
+            }
+            if( c == '"' || c == '\'' ) {
+                final int end = s.indexOf(c, pos + 1);
+                if( end == -1 )
+                    throw error("unterminated literal");
+                final String lexical = s.substring(pos + 1, end);
+                pos = end + 1;
+                if( s.startsWith("^^", pos) ) {
+                    pos += 2;
+                    return df.getOWLLiteral(lexical, df.getOWLDatatype(vocabulary.iri(name())));
+                }
+                if( s.startsWith("@", pos) ) {
+                    pos++;
+                    return df.getOWLLiteral(lexical, name());
+                }
+                return df.getOWLLiteral(lexical);
+            }
+            final String name = name();
+            if( name.matches("[-+]?[0-9]+") )
+                return df.getOWLLiteral(name, OWL2Datatype.XSD_INTEGER);
+            if( name.matches("[-+]?[0-9]*\\.[0-9]+") )
+                return df.getOWLLiteral(name, OWL2Datatype.XSD_DECIMAL);
+            if( name.equals("true") || name.equals("false") )
+                return df.getOWLLiteral(Boolean.parseBoolean(name));
+            return vocabulary.getOWLIndividual(name);
+        }
+
+        // the term must be a variable for individuals or an individual
+        private Object individualTerm(final Object term) {
+            if( term instanceof Integer ) {
+                kind((Integer) term, false);
+            } else if( term instanceof OWLLiteral ) {
+                throw error("literal " + term + " where an individual is expected");
+            }
+            return term;
+        }
+
+        private void kind(final int variable, final boolean isLiteral) {
+            final Boolean known = literal.get(variable);
+            if( known != null && known != isLiteral )
+                throw error("variable ?" + variables.get(variable) + " is used for individuals and for literals");
+            literal.set(variable, isLiteral);
+        }
+
+        private void atom() {
+            final String predicate = name();
+            expect('(');
+            final Object first = term();
+            final Object second = accept(',') ? term() : null;
+            expect(')');
+            if( second == null ) {
+                final OWLClass cls = vocabulary.getOWLClass(predicate);
+                if( cls == null )
+                    throw error("unknown class " + predicate);
+                final Object t = individualTerm(first);
+                if( t instanceof Integer )
+                    constraints.get((Integer) t).add(cls);
+                else
+                    checks.add(df.getOWLClassAssertionAxiom(cls, (OWLNamedIndividual) t));
+                return;
+            }
+            final OWLObjectProperty op = vocabulary.getOWLObjectProperty(predicate);
+            if( op != null ) {
+                final Object subject = individualTerm(first);
+                final Object object = individualTerm(second);
+                if( subject instanceof Integer && object instanceof Integer ) {
+                    edges.add(new Edge(op, null, (Integer) subject, null, (Integer) object));
+                } else if( subject instanceof Integer ) {
+                    constraints.get((Integer) subject).add(df.getOWLObjectHasValue(op, (OWLNamedIndividual) object));
+                } else if( object instanceof Integer ) {
+                    constraints.get((Integer) object).add(df.getOWLObjectHasValue(df.getOWLObjectInverseOf(op), (OWLNamedIndividual) subject));
+                } else {
+                    checks.add(df.getOWLObjectPropertyAssertionAxiom(op, (OWLNamedIndividual) subject, (OWLNamedIndividual) object));
+                }
+                return;
+            }
+            final OWLDataProperty dp = vocabulary.getOWLDataProperty(predicate);
+            if( dp == null )
+                throw error("unknown object or data property " + predicate);
+            final Object subject = individualTerm(first);
+            if( second instanceof OWLNamedIndividual )
+                throw error("individual " + second + " where a literal is expected");
+            if( second instanceof Integer ) {
+                kind((Integer) second, true);
+                if( subject instanceof Integer )
+                    edges.add(new Edge(null, dp, (Integer) subject, null, (Integer) second));
+                else
+                    edges.add(new Edge(null, dp, -1, (OWLNamedIndividual) subject, (Integer) second));
+            } else if( subject instanceof Integer ) {
+                constraints.get((Integer) subject).add(df.getOWLDataHasValue(dp, (OWLLiteral) second));
+            } else {
+                checks.add(df.getOWLDataPropertyAssertionAxiom(dp, (OWLNamedIndividual) subject, (OWLLiteral) second));
+            }
+        }
+
+        ConjunctiveQuery parse() {
+            do {
+                atom();
+            } while( accept(',') );
+            skipWhitespace();
+            if( pos < s.length() )
+                throw error("expected ',' or end of query");
+            return new ConjunctiveQuery(Collections.unmodifiableList(variables), constraints, edges, checks);
+        }
+    }
+
+    private static boolean isEntailed(final IOntologyContext oc, final OWLAxiom axiom) {
+        final OWLReasoner reasoner = oc.reasonerFor(axiom);
+        if( reasoner.isEntailmentCheckingSupported(axiom.getAxiomType()) )
+            return reasoner.isEntailed(axiom);
+        // StructuralReasoner: asserted axioms only
+        return oc.ontology().containsAxiom(axiom, Imports.INCLUDED, AxiomAnnotations.IGNORE_AXIOM_ANNOTATIONS);
+    }
+
+    private static Set<OWLObject> instances(final IOntologyContext oc, final OWLClassExpression ce) {
+        if( ce.isOWLClass() && oc.materializer() != null )
+            return new HashSet<OWLObject>(oc.materializer().instances(ce.asOWLClass()));
+        return oc.reasonerFor(ce).getInstances(ce, false).entities().collect(Collectors.toSet());
+    }
+
+    private static List<OWLObject[]> pairs(final IOntologyContext oc, final Edge edge) {
+        final List<OWLObject[]> ret = new ArrayList<OWLObject[]>();
+        if( edge.op != null ) {
+            if( oc.materializer() != null ) {
+                oc.materializer().forEachPair(edge.op, (subject, object) -> ret.add(new OWLObject[] { subject, object }));
+            } else {
+                oc.propertyExtensions().objectPropertyExtension(oc.ontology(), () -> oc.reasonerFor(edge.op), edge.op,
+                    (subject, object) -> ret.add(new OWLObject[] { subject, object }));
+            }
+        } else {
+            oc.propertyExtensions().dataPropertyExtension(oc.ontology(), () -> oc.reasonerFor(edge.dp), edge.dp,
+                (subject, value) -> ret.add(new OWLObject[] { subject, value }));
+        }
+        return ret;
+    }
+
+    // bindings extended by the pairs of edge (hash join on the variables of edge that are already bound)
+    private static List<OWLObject[]> join(final List<OWLObject[]> bindings, final boolean[] bound, final Edge edge,
+            final List<OWLObject[]> pairs, final List<Set<OWLObject>> candidates) {
+        final Set<OWLObject> subjects = edge.subject >= 0 ? candidates.get(edge.subject) : null;
+        final Set<OWLObject> objects = candidates.get(edge.object);
+        final boolean subjectBound = edge.subject >= 0 && bound[edge.subject];
+        final boolean objectBound = bound[edge.object];
+        final List<OWLObject[]> matching = new ArrayList<OWLObject[]>();
+        final Map<OWLObject, List<OWLObject[]>> byKey = new HashMap<OWLObject, List<OWLObject[]>>();
+        for( final OWLObject[] pair : pairs ) {
+            if( edge.fixedSubject != null ? !edge.fixedSubject.equals(pair[0]) : (subjects != null && !subjects.contains(pair[0])) )
+                continue;
+            if( (objects != null && !objects.contains(pair[1])) || (edge.subject == edge.object && !pair[0].equals(pair[1])) )
+                continue;
+            if( subjectBound || objectBound )
+                byKey.computeIfAbsent(pair[subjectBound ? 0 : 1], k -> new ArrayList<OWLObject[]>()).add(pair);
+            else
+                matching.add(pair);
+        }
+        final List<OWLObject[]> ret = new ArrayList<OWLObject[]>();
+        for( final OWLObject[] binding : bindings ) {
+            final List<OWLObject[]> joined = subjectBound ? byKey.get(binding[edge.subject])
+                : objectBound ? byKey.get(binding[edge.object]) : matching;
+            if( joined == null )
+                continue;
+            for( final OWLObject[] pair : joined ) {
+                if( subjectBound && objectBound && !binding[edge.object].equals(pair[1]) )
+                    continue;
+                final OWLObject[] extended = binding.clone();
+                if( edge.subject >= 0 ) extended[edge.subject] = pair[0];
+                extended[edge.object] = pair[1];
+                ret.add(extended);
+            }
+        }
+        return ret;
+    }
+
+    // answers on the current state of oc (the caller holds its lock), one list of individuals and literals per answer
+    public List<List<OWLObject>> evaluate(final IOntologyContext oc) {
+        final List<List<OWLObject>> ret = new ArrayList<List<OWLObject>>();
+        if( this == INVALID )
+            return ret;
+        for( final OWLAxiom check : checks ) {
+            if( !isEntailed(oc, check) )
+                return ret;
+        }
+        final int n = variables.size();
+        final List<Set<OWLObject>> candidates = new ArrayList<Set<OWLObject>>(n);
+        for( final List<OWLClassExpression> classes : constraints ) {
+            if( classes.isEmpty() ) {
+                candidates.add(null);
+                continue;
+            }
+            final OWLClassExpression ce = classes.size() == 1 ? classes.get(0) : oc.df().getOWLObjectIntersectionOf(classes);
+            final Set<OWLObject> instances = instances(oc, ce);
+            if( instances.isEmpty() )
+                return ret;
+            candidates.add(instances);
+        }
+
+        List<OWLObject[]> bindings = new ArrayList<OWLObject[]>();
+        bindings.add(new OWLObject[n]);
+        final boolean[] bound = new boolean[n];
+        final List<Edge> pending = new ArrayList<Edge>(edges);
+        final Map<OWLObject, List<OWLObject[]>> extensions = new HashMap<OWLObject, List<OWLObject[]>>();
+        while( !pending.isEmpty() && !bindings.isEmpty() ) {
+            // edges connected to bound variables first, so that intermediate results stay small
+            Edge next = pending.get(0);
+            for( final Edge edge : pending ) {
+                if( (edge.subject >= 0 && bound[edge.subject]) || bound[edge.object] ) {
+                    next = edge;
+                    break;
+                }
+            }
+            pending.remove(next);
+            final Edge edge = next;
+            // a property that occurs in several atoms is retrieved once
+            final List<OWLObject[]> nextPairs = extensions.computeIfAbsent(edge.op != null ? edge.op : edge.dp, p -> pairs(oc, edge));
+            bindings = join(bindings, bound, next, nextPairs, candidates);
+            if( next.subject >= 0 ) bound[next.subject] = true;
+            bound[next.object] = true;
+        }
+        // variables that only occur in class atoms
+        for( int v = 0; v < n && !bindings.isEmpty(); v++ ) {
+            if( bound[v] )
+                continue;
+            final List<OWLObject[]> extended = new ArrayList<OWLObject[]>(bindings.size() * candidates.get(v).size());
+            for( final OWLObject[] binding : bindings ) {
+                for( final OWLObject instance : candidates.get(v) ) {
+                    final OWLObject[] b = binding.clone();
+                    b[v] = instance;
+                    extended.add(b);
+                }
+            }
+            bindings = extended;
+            bound[v] = true;
+        }
+        for( final OWLObject[] binding : bindings ) ret.add(Arrays.asList(binding));
+        return ret;
+    }
+}
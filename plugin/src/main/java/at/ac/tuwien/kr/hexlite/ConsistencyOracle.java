@@ -0,0 +1,145 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+// known consistency of the base ontology extended by sets of added axioms
+//
+// adding axioms is monotone: supersets of an inconsistent set of added axioms are inconsistent,
+// subsets of a consistent set are consistent
+// so it suffices to keep the minimal known inconsistent sets and the maximal known consistent sets
+// (only valid if no axioms are removed from the base ontology)
+// shared by all copies of an ontology, therefore synchronized
+class ConsistencyOracle {
+    public static final int DEFAULT_MAX_SETS = 4096;
+
+    private final int maxSets;
+    private final SetStore inconsistent;
+    private final SetStore consistent;
+    private long queries;
+    private long inconsistentHits;
+    private long consistentHits;
+
+    // sets of axioms with an index from axioms to the sets containing them
+    private static class SetStore {
+        final List<Set<OWLAxiom>> sets = new ArrayList<Set<OWLAxiom>>();
+        final Map<OWLAxiom, List<Set<OWLAxiom>>> index = new HashMap<OWLAxiom, List<Set<OWLAxiom>>>();
+        // number of stored sets without axioms (at most 1)
+        int empty = 0;
+
+        void add(final Set<OWLAxiom> set) {
+            sets.add(set);
+            if( set.isEmpty() ) empty++;
+            for( final OWLAxiom a : set ) {
+                index.computeIfAbsent(a, k -> new ArrayList<Set<OWLAxiom>>()).add(set);
+            }
+        }
+
+        void remove(final Set<OWLAxiom> set) {
+            // stored sets are compared by identity, equal sets are never stored twice
+            for( final Iterator<Set<OWLAxiom>> it = sets.iterator(); it.hasNext(); ) {
+                if( it.next() == set ) { it.remove(); break; }
+            }
+            if( set.isEmpty() ) empty--;
+            for( final OWLAxiom a : set ) {
+                final List<Set<OWLAxiom>> containing = index.get(a);
+                containing.removeIf(s -> s == set);
+                if( containing.isEmpty() ) index.remove(a);
+            }
+        }
+
+        // some stored set is a subset of query
+        boolean hasSubsetOf(final Set<OWLAxiom> query) {
+            if( empty > 0 )
+                return true;
+            final Map<Set<OWLAxiom>, Integer> counts = new IdentityHashMap<Set<OWLAxiom>, Integer>();
+            for( final OWLAxiom a : query ) {
+                final List<Set<OWLAxiom>> containing = index.get(a);
+                if( containing == null ) continue;
+                for( final Set<OWLAxiom> s : containing ) {
+                    final int c = counts.merge(s, 1, Integer::sum);
+                    if( c == s.size() ) return true;
+                }
+            }
+            return false;
+        }
+
+        // some stored set is a superset of query
+        boolean hasSupersetOf(final Set<OWLAxiom> query) {
+            if( query.isEmpty() )
+                return !sets.isEmpty();
+            // only sets containing the rarest axiom of the query can be supersets
+            List<Set<OWLAxiom>> candidates = null;
+            for( final OWLAxiom a : query ) {
+                final List<Set<OWLAxiom>> containing = index.get(a);
+                if( containing == null ) return false;
+                if( candidates == null || containing.size() < candidates.size() ) candidates = containing;
+            }
+            for( final Set<OWLAxiom> s : candidates ) {
+                if( s.size() >= query.size() && s.containsAll(query) ) return true;
+            }
+            return false;
+        }
+
+        // stored sets that are supersets (resp. subsets) of set
+        List<Set<OWLAxiom>> comparable(final Set<OWLAxiom> set, final boolean supersets) {
+            final List<Set<OWLAxiom>> ret = new ArrayList<Set<OWLAxiom>>();
+            for( final Set<OWLAxiom> s : sets ) {
+                if( supersets ? s.containsAll(set) : set.containsAll(s) ) ret.add(s);
+            }
+            return ret;
+        }
+    }
+
+    public ConsistencyOracle(final int _maxSets) {
+        maxSets = _maxSets;
+        inconsistent = new SetStore();
+        consistent = new SetStore();
+        queries = 0;
+        inconsistentHits = 0;
+        consistentHits = 0;
+    }
+
+    // TRUE/FALSE if the consistency of the base ontology plus added is known, null otherwise
+    public synchronized Boolean lookup(final Set<OWLAxiom> added) {
+        queries++;
+        if( inconsistent.hasSubsetOf(added) ) {
+            inconsistentHits++;
+            return Boolean.FALSE;
+        }
+        if( consistent.hasSupersetOf(added) ) {
+            consistentHits++;
+            return Boolean.TRUE;
+        }
+        return null;
+    }
+
+    public synchronized void record(final Set<OWLAxiom> added, final boolean isConsistent) {
+        final SetStore store = isConsistent ? consistent : inconsistent;
+        if( store.sets.size() >= maxSets ) {
+            // bounded store: drop the oldest set
+            store.remove(store.sets.get(0));
+        }
+        // keep only maximal consistent and minimal inconsistent sets
+        for( final Set<OWLAxiom> dominated : store.comparable(added, !isConsistent) ) {
+            store.remove(dominated);
+        }
+        store.add(new HashSet<OWLAxiom>(added));
+    }
+
+    public synchronized String statistics() {
+        return String.format("%d lookups, %d answered inconsistent, %d answered consistent (%.1f%% hit rate), "
+            + "%d minimal inconsistent and %d maximal consistent sets stored",
+            queries, inconsistentHits, consistentHits,
+            queries == 0 ? 0.0 : 100.0 * (inconsistentHits + consistentHits) / queries,
+            inconsistent.sets.size(), consistent.sets.size());
+    }
+}
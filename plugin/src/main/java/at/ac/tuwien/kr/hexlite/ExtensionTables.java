@@ -0,0 +1,207 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+// extensions of all classes and properties of the unmodified ontology, computed once
+//
+// individuals and literals are stored once in dictionaries, extensions are primitive int arrays of dictionary ids
+// (pairs are stored interleaved: subject, object, subject, object, ...)
+class ExtensionTables {
+    private static final Logger LOGGER = LogManager.getLogger("Hexlite-OWLAPIPlugin");
+
+    private final OWLNamedIndividual[] individuals;
+    private final OWLLiteral[] literals;
+    private final Map<OWLClass, int[]> classes;
+    private final Map<OWLObjectProperty, int[]> objectProperties;
+    private final Map<OWLDataProperty, int[]> dataProperties;
+
+    ExtensionTables(final OWLNamedIndividual[] _individuals, final OWLLiteral[] _literals, final Map<OWLClass, int[]> _classes,
+            final Map<OWLObjectProperty, int[]> _objectProperties, final Map<OWLDataProperty, int[]> _dataProperties) {
+        individuals = _individuals;
+        literals = _literals;
+        classes = _classes;
+        objectProperties = _objectProperties;
+        dataProperties = _dataProperties;
+    }
+
+    // growable int array
+    static class IntList {
+        int[] data = new int[8];
+        int size = 0;
+
+        void add(final int v) {
+            if( size == data.length ) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    // classify the unmodified ontology and retrieve all extensions
+    public static ExtensionTables build(final IOntologyContext oc) {
+        final long start = System.currentTimeMillis();
+        oc.restoreBaseOntology();
+        final OWLOntology ontology = oc.ontology();
+        final RLMaterializer materializer = oc.materializer();
+
+        final OWLNamedIndividual[] individuals = ontology.individualsInSignature(Imports.INCLUDED).toArray(OWLNamedIndividual[]::new);
+        final Map<OWLNamedIndividual, Integer> individualIds = new HashMap<OWLNamedIndividual, Integer>(individuals.length * 2);
+        for( int i = 0; i < individuals.length; i++ ) {
+            individualIds.put(individuals[i], i);
+        }
+        final List<OWLLiteral> literals = new ArrayList<OWLLiteral>();
+        final Map<OWLLiteral, Integer> literalIds = new HashMap<OWLLiteral, Integer>();
+
+        final Map<OWLClass, int[]> classes = new HashMap<OWLClass, int[]>();
+        final List<OWLClass> classList = ontology.classesInSignature(Imports.INCLUDED).collect(Collectors.toList());
+        classList.add(oc.df().getOWLThing());
+        for( final OWLClass c : classList ) {
+            final IntList ext = new IntList();
+            final Stream<OWLNamedIndividual> instances = materializer != null
+                ? materializer.instances(c).stream()
+                : oc.baseReasonerFor(c).getInstances(c, false).entities();
+            instances.forEach(i -> {
+                final Integer id = individualIds.get(i);
+                if( id != null ) ext.add(id);
+            });
+            if( ext.size > 0 ) classes.put(c, ext.toArray());
+        }
+
+        final Map<OWLObjectProperty, int[]> objectProperties = new HashMap<OWLObjectProperty, int[]>();
+        for( final OWLObjectProperty op : ontology.objectPropertiesInSignature(Imports.INCLUDED).collect(Collectors.toList()) ) {
+            final IntList ext = new IntList();
+            if( materializer != null ) {
+                materializer.forEachPair(op, (s, o) -> {
+                    final Integer sid = individualIds.get(s);
+                    final Integer oid = individualIds.get(o);
+                    if( sid != null && oid != null ) { ext.add(sid); ext.add(oid); }
+                });
+            } else {
+                oc.propertyExtensions().objectPropertyExtension(ontology, () -> oc.baseReasonerFor(op), op, (s, o) -> {
+                    final Integer sid = individualIds.get(s);
+                    final Integer oid = individualIds.get(o);
+                    if( sid != null && oid != null ) { ext.add(sid); ext.add(oid); }
+                });
+            }
+            if( ext.size > 0 ) objectProperties.put(op, ext.toArray());
+        }
+
+        final Map<OWLDataProperty, int[]> dataProperties = new HashMap<OWLDataProperty, int[]>();
+        for( final OWLDataProperty dp : ontology.dataPropertiesInSignature(Imports.INCLUDED).collect(Collectors.toList()) ) {
+            final IntList ext = new IntList();
+            oc.propertyExtensions().dataPropertyExtension(ontology, () -> oc.baseReasonerFor(dp), dp, (s, l) -> {
+                final Integer sid = individualIds.get(s);
+                if( sid == null ) return;
+                Integer lid = literalIds.get(l);
+                if( lid == null ) {
+                    lid = literals.size();
+                    literals.add(l);
+                    literalIds.put(l, lid);
+                }
+                ext.add(sid);
+                ext.add(lid);
+            });
+            if( ext.size > 0 ) dataProperties.put(dp, ext.toArray());
+        }
+
+        final ExtensionTables tables = new ExtensionTables(individuals, literals.toArray(new OWLLiteral[literals.size()]),
+            classes, objectProperties, dataProperties);
+        final long duration = System.currentTimeMillis() - start;
+        LOGGER.info("extension tables built in {} ms: {}", () -> duration, () -> tables.heapReport());
+        return tables;
+    }
+
+    // raw tables (for OntologySnapshot)
+    OWLNamedIndividual[] individuals() {
+        return individuals;
+    }
+
+    OWLLiteral[] literals() {
+        return literals;
+    }
+
+    Map<OWLClass, int[]> classExtensions() {
+        return classes;
+    }
+
+    Map<OWLObjectProperty, int[]> objectPropertyExtensions() {
+        return objectProperties;
+    }
+
+    Map<OWLDataProperty, int[]> dataPropertyExtensions() {
+        return dataProperties;
+    }
+
+    public void forEachInstance(final OWLClass c, final Consumer<OWLNamedIndividual> consumer) {
+        final int[] ext = classes.get(c);
+        if( ext == null )
+            return;
+        for( final int id : ext ) {
+            consumer.accept(individuals[id]);
+        }
+    }
+
+    public void forEachObjectPropertyPair(final OWLObjectProperty op, final BiConsumer<OWLNamedIndividual, OWLNamedIndividual> consumer) {
+        final int[] ext = objectProperties.get(op);
+        if( ext == null )
+            return;
+        for( int i = 0; i < ext.length; i += 2 ) {
+            consumer.accept(individuals[ext[i]], individuals[ext[i + 1]]);
+        }
+    }
+
+    public void forEachDataPropertyValue(final OWLDataProperty dp, final BiConsumer<OWLNamedIndividual, OWLLiteral> consumer) {
+        final int[] ext = dataProperties.get(dp);
+        if( ext == null )
+            return;
+        for( int i = 0; i < ext.length; i += 2 ) {
+            consumer.accept(individuals[ext[i]], literals[ext[i + 1]]);
+        }
+    }
+
+    // estimated heap usage of the tables (the OWL objects themselves are shared with the ontology)
+    public long estimatedBytes() {
+        // array header 16 bytes, references 8 bytes, map entries about 48 bytes
+        long bytes = 16 + 8L * individuals.length + 16 + 8L * literals.length;
+        for( final int[] ext : classes.values() ) bytes += 48 + 16 + 4L * ext.length;
+        for( final int[] ext : objectProperties.values() ) bytes += 48 + 16 + 4L * ext.length;
+        for( final int[] ext : dataProperties.values() ) bytes += 48 + 16 + 4L * ext.length;
+        return bytes;
+    }
+
+    public String heapReport() {
+        long classTuples = 0;
+        for( final int[] ext : classes.values() ) classTuples += ext.length;
+        long opTuples = 0;
+        for( final int[] ext : objectProperties.values() ) opTuples += ext.length / 2;
+        long dpTuples = 0;
+        for( final int[] ext : dataProperties.values() ) dpTuples += ext.length / 2;
+        final long bytes = estimatedBytes();
+        return String.format("%d individuals, %d literals, %d classes with %d instances, "
+            + "%d object properties with %d pairs, %d data properties with %d values, "
+            + "about %d bytes (%.1f bytes per individual)",
+            individuals.length, literals.length, classes.size(), classTuples,
+            objectProperties.size(), opTuples, dataProperties.size(), dpTuples,
+            bytes, individuals.length == 0 ? 0.0 : (double)bytes / individuals.length);
+    }
+}
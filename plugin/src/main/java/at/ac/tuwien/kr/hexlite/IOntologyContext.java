@@ -1,22 +1,94 @@
 package at.ac.tuwien.kr.hexlite;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassExpression;
 import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
 
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+// methods that read or change the current modification of the ontology (reasoners, switchToModification, ...)
+// must only be called while holding lock(); readOnly, extensionTables, and the namespace and query methods
+// can be called concurrently
 interface IOntologyContext {
+   public Lock lock();
+   // exclusive context for one modified-ontology call (this context under its lock, or an idle copy from the pool)
+   // must be returned with checkin
+   public IOntologyContext checkout();
+   public void checkin(IOntologyContext checkedOut);
+   // result of compute on the unmodified ontology, computed once per key (an entity, class expression, or compiled query)
+   // and then shared; compute gets an exclusive context (see checkout) that it must restore to the unmodified ontology
+   public <T> T readOnly(Object key, Function<IOntologyContext, T> compute);
    public OWLDataFactory df();
    public OWLOntologyManager manager();
+   // reasoner for the ontology in its current (possibly modified) state
    public OWLReasoner reasoner();
+   // reasoner for the unmodified ontology (reverts the current modification if necessary)
+   public OWLReasoner baseReasoner();
+   // cheapest reasoner that is complete for queries about the given entity or class expression, or for the entailment
+   // of the given axiom (null: consistency only)
+   public OWLReasoner reasonerFor(OWLObject queried);
+   // cheapest reasoner that is complete for all of queried (one reasoner for a batch of queries)
+   public OWLReasoner reasonerForAll(Collection<? extends OWLObject> queried);
+   public OWLReasoner baseReasonerFor(OWLObject queried);
+   // extensions of the unmodified ontology (null if not enabled), built on first use
+   public ExtensionTables extensionTables();
+   // incremental RL materializer (null if not configured or not applicable to the ontology)
+   public RLMaterializer materializer();
+   // bulk retrieval of property extensions from asserted property assertions
+   public PropertyExtensions propertyExtensions();
+   // conversion between data property values and solver symbols
+   public LiteralCodec literalCodec();
    public OWLOntology ontology();
+   // learn nogoods over minimal sets of modifications (enabled in the meta file)
+   public boolean minimalNogoods();
+   // consistency of the ontology in its current (possibly modified) state
+   // (answered from known consistent/inconsistent modifications if possible)
+   public boolean isConsistent();
+   // no modification of the ABox can make the ontology inconsistent
+   public boolean isClashFree();
    public String expandNamespace(String value);
    public String simplifyNamespaceIfPossible(String value);
-   public void applyChanges(List<? extends OWLOntologyChange> changes);
-   public void revertChanges(List<? extends OWLOntologyChange> changes);
+   // entity named by a query constant (quoted or not, possibly with namespace prefix), resolved once per constant
+   public OWLClass compileClass(String constant);
+   public OWLObjectProperty compileObjectProperty(String constant);
+   public OWLDataProperty compileDataProperty(String constant);
+   // classes resp. object properties named in a list constant ("koala:Koala, koala:Person"),
+   // "*" stands for all classes resp. object properties of the ontology (except owl:Thing and owl:topObjectProperty)
+   public List<OWLClass> compileClasses(String constant);
+   public List<OWLObjectProperty> compileObjectProperties(String constant);
+   // class name or Manchester syntax class expression ("koala:hasChild some koala:Koala"), parsed once per constant
+   // (owl:Nothing if it cannot be parsed)
+   public OWLClassExpression compileClassExpression(String constant);
+   // conjunctive query ("koala:Koala(?X), koala:hasChild(?X,?Y)"), parsed once per constant
+   // (ConjunctiveQuery.INVALID if it cannot be parsed)
+   public ConjunctiveQuery compileConjunctiveQuery(String constant);
+   // changes of a delta modifier (addc(...), delop(...), ...), computed by compile once per modifier value
+   public List<OWLOntologyChange> compileModifier(ISymbol modifier, Function<ISymbol, List<OWLOntologyChange>> compile);
+   // make the ontology equal to the base ontology modified by changes
+   // (only the difference to the currently applied modification is applied)
+   public void switchToModification(List<? extends OWLOntologyChange> changes);
+   public void restoreBaseOntology();
+   // until releaseModuleSignature, modules are chosen for the added axioms of the current modification,
+   // so that switching to subsets of it reuses its modules (e.g., while explaining an answer)
+   public void pinModuleSignature();
+   public void releaseModuleSignature();
+   // precompute all inferences on the unmodified ontology that read-only queries need
+   // (in stages that each hold lock(), so that calls in between wait only for the current stage)
+   public void warmUp();
+   // reasoner flushes so far (including those of copies)
+   public long flushes();
    public void teardown();
 }
 
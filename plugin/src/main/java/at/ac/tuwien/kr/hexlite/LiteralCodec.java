@@ -0,0 +1,169 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLDatatype;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
+
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+// conversion between data property values and solver symbols, without parsing by exceptions
+//
+// solver -> ontology: if the property has a (told, unique) datatype range, the value is a literal of that datatype;
+// otherwise integers are xsd:integer, true/false are xsd:boolean, and quoted strings and other constants are xsd:string
+// (a value that is not in the lexical space or the value range of that datatype is logged once per property and
+// converted as if the property had no range, so no ill-typed literal is added to the ontology)
+// ontology -> solver: literals of integer datatypes that fit into an int are integer symbols, xsd:boolean literals
+// are the constants true/false, everything else (strings, decimals, ...) is a string with the lexical form
+class LiteralCodec {
+    private static final Logger LOGGER = LogManager.getLogger("Hexlite-OWLAPIPlugin");
+
+    private static final Set<IRI> INTEGER_DATATYPES = new HashSet<IRI>();
+    // inclusive bounds of the integer datatypes with a bounded value space (null: unbounded)
+    private static final Map<IRI, BigInteger[]> INTEGER_BOUNDS = new HashMap<IRI, BigInteger[]>();
+    static {
+        for( final OWL2Datatype dt : new OWL2Datatype[] { OWL2Datatype.XSD_INTEGER, OWL2Datatype.XSD_INT, OWL2Datatype.XSD_LONG,
+                OWL2Datatype.XSD_SHORT, OWL2Datatype.XSD_BYTE, OWL2Datatype.XSD_NON_NEGATIVE_INTEGER, OWL2Datatype.XSD_POSITIVE_INTEGER,
+                OWL2Datatype.XSD_NON_POSITIVE_INTEGER, OWL2Datatype.XSD_NEGATIVE_INTEGER, OWL2Datatype.XSD_UNSIGNED_LONG,
+                OWL2Datatype.XSD_UNSIGNED_INT, OWL2Datatype.XSD_UNSIGNED_SHORT, OWL2Datatype.XSD_UNSIGNED_BYTE } ) {
+            INTEGER_DATATYPES.add(dt.getIRI());
+        }
+        bound(OWL2Datatype.XSD_LONG, BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE));
+        bound(OWL2Datatype.XSD_INT, BigInteger.valueOf(Integer.MIN_VALUE), BigInteger.valueOf(Integer.MAX_VALUE));
+        bound(OWL2Datatype.XSD_SHORT, BigInteger.valueOf(Short.MIN_VALUE), BigInteger.valueOf(Short.MAX_VALUE));
+        bound(OWL2Datatype.XSD_BYTE, BigInteger.valueOf(Byte.MIN_VALUE), BigInteger.valueOf(Byte.MAX_VALUE));
+        bound(OWL2Datatype.XSD_NON_NEGATIVE_INTEGER, BigInteger.ZERO, null);
+        bound(OWL2Datatype.XSD_POSITIVE_INTEGER, BigInteger.ONE, null);
+        bound(OWL2Datatype.XSD_NON_POSITIVE_INTEGER, null, BigInteger.ZERO);
+        bound(OWL2Datatype.XSD_NEGATIVE_INTEGER, null, BigInteger.ONE.negate());
+        bound(OWL2Datatype.XSD_UNSIGNED_LONG, BigInteger.ZERO, BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE));
+        bound(OWL2Datatype.XSD_UNSIGNED_INT, BigInteger.ZERO, BigInteger.valueOf(0xffffffffL));
+        bound(OWL2Datatype.XSD_UNSIGNED_SHORT, BigInteger.ZERO, BigInteger.valueOf(0xffff));
+        bound(OWL2Datatype.XSD_UNSIGNED_BYTE, BigInteger.ZERO, BigInteger.valueOf(0xff));
+    }
+
+    private static void bound(final OWL2Datatype dt, final BigInteger min, final BigInteger max) {
+        INTEGER_BOUNDS.put(dt.getIRI(), new BigInteger[] { min, max });
+    }
+
+    private final OWLDataFactory df;
+    // datatype range of each data property that has exactly one
+    private final Map<OWLDataProperty, OWLDatatype> ranges;
+    // properties for which an ill-typed value has been reported
+    private final Set<OWLDataProperty> reported = ConcurrentHashMap.newKeySet();
+
+    private LiteralCodec(final OWLDataFactory _df, final Map<OWLDataProperty, OWLDatatype> _ranges) {
+        df = _df;
+        ranges = _ranges;
+    }
+
+    // codec with the datatype ranges of ontology (and its imports)
+    public static LiteralCodec create(final OWLOntology ontology, final OWLDataFactory df) {
+        final Map<OWLDataProperty, OWLDatatype> ranges = new HashMap<OWLDataProperty, OWLDatatype>();
+        final Set<OWLDataProperty> ambiguous = new HashSet<OWLDataProperty>();
+        ontology.axioms(AxiomType.DATA_PROPERTY_RANGE, Imports.INCLUDED).forEach(range -> {
+            if( range.getProperty().isAnonymous() || !range.getRange().isOWLDatatype() )
+                return;
+            final OWLDataProperty dp = range.getProperty().asOWLDataProperty();
+            final OWLDatatype previous = ranges.put(dp, range.getRange().asOWLDatatype());
+            if( previous != null && !previous.equals(range.getRange()) )
+                ambiguous.add(dp);
+        });
+        ranges.keySet().removeAll(ambiguous);
+        return new LiteralCodec(df, ranges);
+    }
+
+    // value of s as int, null if s is not an integer in the range of int
+    public static Integer parseInt(final String s) {
+        final int n = s.length();
+        final boolean negative = n > 0 && s.charAt(0) == '-';
+        int i = n > 0 && (negative || s.charAt(0) == '+') ? 1 : 0;
+        // more than 10 digits never fit
+        if( i == n || n - i > 10 )
+            return null;
+        long value = 0;
+        for( ; i < n; i++ ) {
+            final char c = s.charAt(i);
+            if( c < '0' || c > '9' )
+                return null;
+            value = 10 * value + (c - '0');
+        }
+        if( negative )
+            value = -value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? null : (int) value;
+    }
+
+    // literal for the value symbol of a modifier of property (adddp, deldp) or an output tuple
+    public OWLLiteral decode(final OWLDataProperty property, final ISymbol symbol) {
+        final String value = symbol.value();
+        final boolean quoted = value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"");
+        final String lexical = quoted ? value.substring(1, value.length() - 1) : value;
+        final OWLDatatype range = ranges.get(property);
+        if( range != null ) {
+            if( isWellTyped(lexical, range) )
+                return df.getOWLLiteral(lexical, range);
+            if( reported.add(property) )
+                LOGGER.warn("value {} is not a valid {} (range of {}), converting it without the range",
+                    () -> value, () -> range.getIRI(), () -> property.getIRI());
+        }
+        if( !quoted ) {
+            final Integer i = parseInt(lexical);
+            if( i != null )
+                return df.getOWLLiteral(i.intValue());
+            if( lexical.equals("true") || lexical.equals("false") )
+                return df.getOWLLiteral(lexical.equals("true"));
+        }
+        return df.getOWLLiteral(lexical);
+    }
+
+    // true if lexical is in the lexical space and the value range of the built-in datatype
+    // (datatypes that are not built into OWL 2 are not checked)
+    static boolean isWellTyped(final String lexical, final OWLDatatype datatype) {
+        final IRI iri = datatype.getIRI();
+        if( !OWL2Datatype.isBuiltIn(iri) )
+            return true;
+        final OWL2Datatype builtIn = OWL2Datatype.getDatatype(iri);
+        if( builtIn.getPattern() != null && !builtIn.isInLexicalSpace(lexical) )
+            return false;
+        final BigInteger[] bounds = INTEGER_BOUNDS.get(iri);
+        if( bounds == null )
+            return true;
+        final BigInteger v;
+        try {
+            v = new BigInteger(lexical.trim().startsWith("+") ? lexical.trim().substring(1) : lexical.trim());
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return (bounds[0] == null || v.compareTo(bounds[0]) >= 0) && (bounds[1] == null || v.compareTo(bounds[1]) <= 0);
+    }
+
+    // the value of literal if it is output as an integer symbol, otherwise null
+    public static Integer asInteger(final OWLLiteral literal) {
+        if( !INTEGER_DATATYPES.contains(literal.getDatatype().getIRI()) )
+            return null;
+        return parseInt(literal.getLiteral().trim());
+    }
+
+    // the value of literal if it is output as the constant true or false, otherwise null
+    public static Boolean asBoolean(final OWLLiteral literal) {
+        if( !literal.isBoolean() )
+            return null;
+        final String lexical = literal.getLiteral().trim();
+        return lexical.equals("true") || lexical.equals("1");
+    }
+}
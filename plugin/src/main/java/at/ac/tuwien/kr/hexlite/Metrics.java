@@ -0,0 +1,231 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import at.ac.tuwien.kr.hexlite.api.Answer;
+import at.ac.tuwien.kr.hexlite.api.ExtSourceProperties;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.ISolverContext;
+
+// per-atom performance metrics, enabled with -Dhexlite.owlapi.metrics=report.json
+//
+// if disabled, all recording methods return immediately and atoms are not wrapped
+// phases are recorded for the atom whose call is running on the current thread
+class Metrics {
+    private static final Logger LOGGER = LogManager.getLogger("Hexlite-OWLAPIPlugin");
+    static final String REPORT = System.getProperty("hexlite.owlapi.metrics");
+    static final boolean ENABLED = REPORT != null && !REPORT.isEmpty();
+
+    enum Phase {
+        // the whole retrieve call
+        CALL,
+        // ontology changes from the true modifiers
+        EXTRACT,
+        // switching the ontology to the modification (applyChanges, materializer update)
+        APPLY,
+        // computing the answer (reasoner queries, including FLUSH and STORE)
+        RETRIEVE,
+        // flushing the reasoner after a modification
+        FLUSH,
+        // ctx.storeString
+        STORE,
+        // generating and learning nogoods
+        NOGOODS
+    }
+
+    // log2 histogram (bucket b counts values in [2^b, 2^(b+1)), bucket 0 also counts 0)
+    static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void add(final long value) {
+            final long v = Math.max(0, value);
+            buckets.incrementAndGet(v == 0 ? 0 : 63 - Long.numberOfLeadingZeros(v));
+            count.increment();
+            sum.add(v);
+            max.accumulateAndGet(v, Math::max);
+        }
+
+        // upper bound of the bucket containing the given quantile
+        private long quantile(final double q, final long n) {
+            final long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for( int b = 0; b < 64; b++ ) {
+                seen += buckets.get(b);
+                if( seen >= rank ) return b >= 62 ? Long.MAX_VALUE : (1L << (b + 1)) - 1;
+            }
+            return max.get();
+        }
+
+        @SuppressWarnings("unchecked")
+        JSONObject toJSON() {
+            final long n = count.sum();
+            final JSONObject ret = new JSONObject();
+            ret.put("count", n);
+            ret.put("sum", sum.sum());
+            ret.put("max", max.get());
+            ret.put("p50", n == 0 ? 0 : Math.min(max.get(), quantile(0.5, n)));
+            ret.put("p90", n == 0 ? 0 : Math.min(max.get(), quantile(0.9, n)));
+            ret.put("p99", n == 0 ? 0 : Math.min(max.get(), quantile(0.99, n)));
+            final JSONArray nonEmpty = new JSONArray();
+            for( int b = 0; b < 64; b++ ) {
+                final long c = buckets.get(b);
+                if( c == 0 ) continue;
+                final JSONArray bucket = new JSONArray();
+                bucket.add(b == 0 ? 0L : 1L << b);
+                bucket.add(c);
+                nonEmpty.add(bucket);
+            }
+            ret.put("buckets", nonEmpty);
+            return ret;
+        }
+    }
+
+    static class AtomMetrics {
+        final EnumMap<Phase, Histogram> phases = new EnumMap<Phase, Histogram>(Phase.class);
+        final LongAdder cacheHits = new LongAdder();
+        final Histogram deltaSizes = new Histogram();
+        final Histogram answerTuples = new Histogram();
+        final Histogram nogoodSizes = new Histogram();
+
+        AtomMetrics() {
+            for( final Phase p : Phase.values() ) phases.put(p, new Histogram());
+        }
+
+        @SuppressWarnings("unchecked")
+        JSONObject toJSON() {
+            final JSONObject ret = new JSONObject();
+            ret.put("calls", phases.get(Phase.CALL).count.sum());
+            ret.put("answer-cache-hits", cacheHits.sum());
+            final JSONObject ns = new JSONObject();
+            for( final Map.Entry<Phase, Histogram> e : phases.entrySet() ) {
+                if( e.getValue().count.sum() > 0 ) ns.put(e.getKey().name().toLowerCase(), e.getValue().toJSON());
+            }
+            ret.put("phases-ns", ns);
+            ret.put("delta-changes", deltaSizes.toJSON());
+            ret.put("answer-tuples", answerTuples.toJSON());
+            ret.put("nogood-sizes", nogoodSizes.toJSON());
+            return ret;
+        }
+    }
+
+    private static final Map<String, AtomMetrics> ATOMS = new ConcurrentHashMap<String, AtomMetrics>();
+    // recorded outside of any atom call (for example flushes of the warm-up)
+    private static final AtomMetrics OTHER = new AtomMetrics();
+    private static final ThreadLocal<AtomMetrics> CURRENT = new ThreadLocal<AtomMetrics>();
+
+    private static AtomMetrics current() {
+        final AtomMetrics m = CURRENT.get();
+        return m != null ? m : OTHER;
+    }
+
+    // start time for record (0 if disabled)
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    // record the time since start for the current atom, returns the current time (start of the next phase)
+    static long record(final Phase phase, final long start) {
+        if( !ENABLED )
+            return 0L;
+        final long now = System.nanoTime();
+        current().phases.get(phase).add(now - start);
+        return now;
+    }
+
+    static void cacheHit() {
+        if( ENABLED ) current().cacheHits.increment();
+    }
+
+    static void delta(final int changes) {
+        if( ENABLED ) current().deltaSizes.add(changes);
+    }
+
+    static void nogood(final int size) {
+        if( ENABLED ) current().nogoodSizes.add(size);
+    }
+
+    // atom that records calls, latency and answer sizes of atom (atom itself if disabled)
+    static IPluginAtom measured(final IPluginAtom atom) {
+        if( !ENABLED )
+            return atom;
+        final AtomMetrics m = ATOMS.computeIfAbsent(atom.getPredicate(), k -> new AtomMetrics());
+        return new IPluginAtom() {
+            public String getPredicate() {
+                return atom.getPredicate();
+            }
+
+            public ArrayList<InputType> getInputArguments() {
+                return atom.getInputArguments();
+            }
+
+            public int getOutputArguments() {
+                return atom.getOutputArguments();
+            }
+
+            public ExtSourceProperties getExtSourceProperties() {
+                return atom.getExtSourceProperties();
+            }
+
+            public IAnswer retrieve(final ISolverContext ctx, final IQuery query) {
+                final AtomMetrics outer = CURRENT.get();
+                CURRENT.set(m);
+                final long start = System.nanoTime();
+                try {
+                    final IAnswer answer = atom.retrieve(ctx, query);
+                    if( answer instanceof Answer )
+                        m.answerTuples.add(((Answer) answer).getTrueTuples().size());
+                    return answer;
+                } finally {
+                    m.phases.get(Phase.CALL).add(System.nanoTime() - start);
+                    CURRENT.set(outer);
+                }
+            }
+        };
+    }
+
+    // write the report (ontologies: name -> reasoner flushes) to the file given by -Dhexlite.owlapi.metrics
+    @SuppressWarnings("unchecked")
+    static void writeReport(final Map<String, Long> flushes) {
+        if( !ENABLED )
+            return;
+        final JSONObject report = new JSONObject();
+        report.put("version", 1);
+        final JSONObject atoms = new JSONObject();
+        for( final Map.Entry<String, AtomMetrics> e : new TreeMap<String, AtomMetrics>(ATOMS).entrySet() ) {
+            if( e.getValue().phases.get(Phase.CALL).count.sum() > 0 ) atoms.put(e.getKey(), e.getValue().toJSON());
+        }
+        report.put("atoms", atoms);
+        report.put("outside-calls", OTHER.toJSON());
+        final JSONObject ontologies = new JSONObject();
+        for( final Map.Entry<String, Long> e : flushes.entrySet() ) {
+            final JSONObject o = new JSONObject();
+            o.put("reasoner-flushes", e.getValue());
+            ontologies.put(e.getKey(), o);
+        }
+        report.put("ontologies", ontologies);
+        try( Writer out = new FileWriter(REPORT) ) {
+            report.writeJSONString(out);
+            LOGGER.info("metrics written to {}", () -> REPORT);
+        } catch (final IOException e) {
+            LOGGER.warn("could not write metrics to " + REPORT, e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// character trie over namespace IRIs, finds the longest namespace that is a prefix of an IRI
+class NamespaceTrie {
+    private static final class Node {
+        final HashMap<Character, Node> children = new HashMap<Character, Node>(4);
+        // key of the namespace ending at this node (null if no namespace ends here)
+        String key = null;
+    }
+
+    private final Node root;
+
+    public NamespaceTrie(final Map<String, String> namespaces) {
+        root = new Node();
+        for (final Map.Entry<String, String> entry : namespaces.entrySet()) {
+            Node node = root;
+            final String iri = entry.getValue();
+            for (int i = 0; i < iri.length(); i++) {
+                node = node.children.computeIfAbsent(iri.charAt(i), c -> new Node());
+            }
+            node.key = entry.getKey();
+        }
+    }
+
+    public static final class Match {
+        public final String key;
+        // length of the matched namespace IRI
+        public final int length;
+
+        Match(final String _key, final int _length) {
+            key = _key;
+            length = _length;
+        }
+    }
+
+    // longest namespace that is a prefix of value (null if there is none)
+    public Match longestPrefix(final String value) {
+        Node node = root;
+        Match match = root.key != null ? new Match(root.key, 0) : null;
+        for (int i = 0; i < value.length(); i++) {
+            node = node.children.get(value.charAt(i));
+            if (node == null)
+                break;
+            if (node.key != null)
+                match = new Match(node.key, i + 1);
+        }
+        return match;
+    }
+}
@@ -3,23 +3,47 @@ package at.ac.tuwien.kr.hexlite;
 import java.util.AbstractCollection;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.semanticweb.owlapi.model.AxiomType;
 import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLClassExpression;
 import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObject;
 import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLObjectPropertyAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.AddAxiom;
 import org.semanticweb.owlapi.model.RemoveAxiom;
 import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.InferenceType;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
 
 import at.ac.tuwien.kr.hexlite.api.Answer;
@@ -37,17 +61,177 @@ public class OWLAPIPlugin implements IPlugin {
     private static final Logger LOGGER = LogManager.getLogger("HexOWLAPI");
 
     private final Map<String, IOntologyContext> cachedContexts;
+    // answers of modified-ontology atoms per solver context (answers consist of symbols of that context)
+    private final Map<ISolverContext, AnswerCache> answerCaches;
+    private final int answerCacheEntries;
+    private final int answerCacheTuples;
+    // strings, integers and constants already stored as symbols, per solver context (symbols are only valid within their context)
+    // keys are String for strings, Integer for integers, and Boolean for the constants true/false
+    private final Map<ISolverContext, Map<Object, ISymbol>> symbolTables;
+    private final boolean preintern;
+    private final LongAdder storedStrings;
+    private final LongAdder avoidedStoreStrings;
+    // replacement atoms per solver context, for nogood generation of modified-ontology atoms
+    private final Map<ISolverContext, ReplacementAtomIndex> replacementIndexes;
+    // modified-ontology atoms by predicate
+    private final Map<String, IPluginAtom> modifiedAtoms;
+    // nogoods over minimal sets of modifications: number learned, their total size, total size of the full modifications
+    private final LongAdder minimalNogoods;
+    private final LongAdder minimalNogoodModifiers;
+    private final LongAdder fullNogoodModifiers;
+    private final LongAdder explanationChecks;
+    // contexts that are loaded and precomputed in the background (until the first call asks for them)
+    private final Map<String, CompletableFuture<IOntologyContext>> warmups;
+    // modifier types that were reported as unknown
+    private final Set<String> unknownModifierTypes;
+    private final ExecutorService warmupExecutor;
 
     public OWLAPIPlugin() {
-        cachedContexts = new HashMap<String, IOntologyContext>();
+        cachedContexts = new ConcurrentHashMap<String, IOntologyContext>();
+        warmups = new ConcurrentHashMap<String, CompletableFuture<IOntologyContext>>();
+        unknownModifierTypes = ConcurrentHashMap.newKeySet();
+        warmupExecutor = startWarmup();
+        // all plugin caches below may be used by concurrent retrieve calls
+        symbolTables = new WeakHashMap<ISolverContext, Map<Object, ISymbol>>();
+        // -Dhexlite.owlapi.preintern=false disables storing all individuals when an ontology is loaded
+        preintern = !"false".equals(System.getProperty("hexlite.owlapi.preintern"));
+        storedStrings = new LongAdder();
+        avoidedStoreStrings = new LongAdder();
+        replacementIndexes = Collections.synchronizedMap(new WeakHashMap<ISolverContext, ReplacementAtomIndex>());
+        modifiedAtoms = new ConcurrentHashMap<String, IPluginAtom>();
+        minimalNogoods = new LongAdder();
+        minimalNogoodModifiers = new LongAdder();
+        fullNogoodModifiers = new LongAdder();
+        explanationChecks = new LongAdder();
+        // size the answer cache with -Dhexlite.owlapi.answercache.entries=N (0 disables it)
+        answerCaches = Collections.synchronizedMap(new WeakHashMap<ISolverContext, AnswerCache>());
+        answerCacheEntries = Integer.getInteger("hexlite.owlapi.answercache.entries", AnswerCache.DEFAULT_MAX_ENTRIES);
+        answerCacheTuples = Integer.getInteger("hexlite.owlapi.answercache.tuples", AnswerCache.DEFAULT_MAX_TUPLES);
+    }
+
+    // -Dhexlite.owlapi.preload=meta1.json,meta2.json loads these ontologies and precomputes their inferences
+    // on background threads (-Dhexlite.owlapi.preload.threads=N, default one per core) while hexlite is grounding
+    private ExecutorService startWarmup() {
+        final String preload = System.getProperty("hexlite.owlapi.preload", "").trim();
+        if( preload.isEmpty() )
+            return null;
+        final List<String> locations = Arrays.stream(preload.split(",")).map(String::trim).filter(l -> !l.isEmpty())
+            .distinct().collect(Collectors.toList());
+        final int threads = Math.max(1, Math.min(locations.size(),
+            Integer.getInteger("hexlite.owlapi.preload.threads", Runtime.getRuntime().availableProcessors())));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = new Thread(r, "hexlite-owlapi-warmup");
+            t.setDaemon(true);
+            return t;
+        });
+        for( final String location : locations ) {
+            final CompletableFuture<IOntologyContext> loaded = new CompletableFuture<IOntologyContext>();
+            warmups.put(location, loaded);
+            executor.execute(() -> {
+                final long start = System.currentTimeMillis();
+                final IOntologyContext oc;
+                try {
+                    oc = new OntologyContext(location);
+                } catch (final RuntimeException e) {
+                    loaded.completeExceptionally(e);
+                    return;
+                }
+                // calls can use the context right away; warmUp releases its lock between stages,
+                // so a call waits at most for the stage in progress and computes what is still missing itself
+                loaded.complete(oc);
+                LOGGER.info("preloaded {} in {} ms", () -> location, () -> System.currentTimeMillis() - start);
+                try {
+                    oc.warmUp();
+                } catch (final RuntimeException e) {
+                    LOGGER.warn("precomputing inferences for " + location + " failed", e);
+                }
+            });
+        }
+        LOGGER.info("preloading {} ontologies on {} threads", () -> locations.size(), () -> threads);
+        return executor;
+    }
+
+    // the preloaded context (waiting for it to be loaded if necessary) or a newly loaded one
+    private IOntologyContext loadContext(final String location) {
+        final CompletableFuture<IOntologyContext> warmup = warmups.remove(location);
+        if( warmup != null ) {
+            try {
+                return warmup.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final ExecutionException e) {
+                LOGGER.warn("preloading " + location + " failed, loading it again", e.getCause());
+            }
+        }
+        return new OntologyContext(location);
     }
 
     // @Override
     public IOntologyContext ontologyContext(final String ontolocation) {
-        if (!cachedContexts.containsKey(ontolocation)) {
-            cachedContexts.put(ontolocation, new OntologyContext(ontolocation));
+        // each ontology is loaded exactly once, also if several threads ask for it at the same time
+        return cachedContexts.computeIfAbsent(ontolocation, location -> loadContext(location));
+    }
+
+    // like ontologyContext(ontolocation), stores the IRIs of all individuals in ctx when the ontology is loaded
+    public IOntologyContext ontologyContext(final ISolverContext ctx, final String ontolocation) {
+        final boolean[] loaded = new boolean[] { false };
+        final IOntologyContext oc = cachedContexts.computeIfAbsent(ontolocation, location -> {
+            loaded[0] = true;
+            return loadContext(location);
+        });
+        if( loaded[0] && preintern && oc.ontology() != null ) {
+            oc.lock().lock();
+            try {
+                oc.ontology().individualsInSignature(Imports.INCLUDED).forEach(i -> storeIRI(ctx, i));
+            } finally {
+                oc.lock().unlock();
+            }
         }
-        return cachedContexts.get(ontolocation);
+        return oc;
+    }
+
+    // symbol stored by store, but each key is stored only once per solver context
+    private ISymbol intern(final ISolverContext ctx, final Object key, final Function<ISolverContext, ISymbol> store) {
+        final Map<Object, ISymbol> symbols;
+        synchronized( symbolTables ) {
+            symbols = symbolTables.computeIfAbsent(ctx, k -> new ConcurrentHashMap<Object, ISymbol>());
+        }
+        ISymbol symbol = symbols.get(key);
+        if( symbol == null ) {
+            // concurrent calls may store the same symbol twice, which is harmless
+            final long start = Metrics.start();
+            symbol = store.apply(ctx);
+            Metrics.record(Metrics.Phase.STORE, start);
+            symbols.put(key, symbol);
+            storedStrings.increment();
+        } else {
+            avoidedStoreStrings.increment();
+        }
+        return symbol;
+    }
+
+    // ctx.storeString, but each string is stored only once per solver context
+    public ISymbol storeString(final ISolverContext ctx, final String s) {
+        return intern(ctx, s, c -> c.storeString(s));
+    }
+
+    public ISymbol storeInteger(final ISolverContext ctx, final int i) {
+        return intern(ctx, Integer.valueOf(i), c -> c.storeInteger(i));
+    }
+
+    // data property value as integer symbol, constant true/false, or string (see LiteralCodec)
+    public ISymbol storeLiteral(final ISolverContext ctx, final OWLLiteral literal) {
+        final Integer i = LiteralCodec.asInteger(literal);
+        if( i != null )
+            return storeInteger(ctx, i);
+        final Boolean b = LiteralCodec.asBoolean(literal);
+        if( b != null )
+            return intern(ctx, b, c -> c.storeConstant(b ? "true" : "false"));
+        return storeString(ctx, literal.getLiteral());
+    }
+
+    public ISymbol storeIRI(final ISolverContext ctx, final OWLNamedIndividual individual) {
+        return storeString(ctx, individual.getIRI().toString());
     }
 
     public static List<InputType> prepareArguments(final List<InputType> _extraArgumentTypes) {
@@ -71,7 +255,8 @@ public class OWLAPIPlugin implements IPlugin {
         public boolean equals(Object o) {
             if( o instanceof DeltaSel ) {
                 final DeltaSel ds = (DeltaSel)o;
-                return (delta == ds.delta) && (sel == ds.sel);
+                // symbols are compared by value, equal symbols need not be the same object
+                return delta.equals(ds.delta) && sel.equals(ds.sel);
             } else {
                 return false;
             }
@@ -83,11 +268,19 @@ public class OWLAPIPlugin implements IPlugin {
         private final ArrayList<InputType> inputArguments;
         private final int outputArguments;
         private final ExtSourceProperties properties;
+        // output individuals with namespace prefixes (like dlSimplifyIRI) instead of full IRIs
+        protected final boolean simplifyOutput;
 
         public BaseAtom(final String _predicate, final List<InputType> _extraArgumentTypes,
                 final int _outputArguments) {
+            this(_predicate, _extraArgumentTypes, _outputArguments, false);
+        }
+
+        public BaseAtom(final String _predicate, final List<InputType> _extraArgumentTypes,
+                final int _outputArguments, final boolean _simplifyOutput) {
             // first argument = ontology meta file location
             predicate = _predicate;
+            simplifyOutput = _simplifyOutput;
             inputArguments = new ArrayList<InputType>();
             inputArguments.add(InputType.CONSTANT);
             for (final InputType arg : _extraArgumentTypes) {
@@ -116,129 +309,265 @@ public class OWLAPIPlugin implements IPlugin {
             return properties;
         }
 
+        protected ISymbol storeIndividual(final ISolverContext ctx, final IOntologyContext oc, final OWLNamedIndividual individual) {
+            if( simplifyOutput )
+                return storeString(ctx, oc.simplifyNamespaceIfPossible(individual.getIRI().toString()));
+            else
+                return storeIRI(ctx, individual);
+        }
+
         protected String withoutQuotes(final String s) {
             if (s.startsWith("\"") && s.endsWith("\""))
                 return s.substring(1, s.length() - 1);
             else
                 return s;
         }
+
+        // individual given as (quoted, possibly prefixed) IRI
+        protected OWLNamedIndividual individual(final IOntologyContext oc, final ISymbol symbol) {
+            return oc.df().getOWLNamedIndividual(IRI.create(oc.expandNamespace(withoutQuotes(symbol.value()))));
+        }
+
+        // whether the current state of oc entails individual:cls, with one entailment check instead of retrieving all instances
+        protected boolean entailsClassAssertion(final IOntologyContext oc, final OWLClassExpression cls, final OWLNamedIndividual individual) {
+            if( oc.materializer() != null && cls.isOWLClass() )
+                return oc.materializer().instances(cls.asOWLClass()).contains(individual);
+            final OWLClassAssertionAxiom axiom = oc.df().getOWLClassAssertionAxiom(cls, individual);
+            final OWLReasoner reasoner = oc.reasonerFor(axiom);
+            // StructuralReasoner only checks for asserted axioms
+            if( reasoner.isEntailmentCheckingSupported(AxiomType.CLASS_ASSERTION) )
+                return reasoner.isEntailed(axiom);
+            return reasoner.getInstances(cls, false).containsEntity(individual);
+        }
+
+        // whether the current state of oc entails op(subject, object)
+        protected boolean entailsObjectPropertyAssertion(final IOntologyContext oc, final OWLObjectProperty op,
+                final OWLNamedIndividual subject, final OWLNamedIndividual object) {
+            if( oc.materializer() != null )
+                return oc.materializer().hasPair(op, subject, object);
+            final OWLObjectPropertyAssertionAxiom axiom = oc.df().getOWLObjectPropertyAssertionAxiom(op, subject, object);
+            final OWLReasoner reasoner = oc.reasonerFor(axiom);
+            if( reasoner.isEntailmentCheckingSupported(AxiomType.OBJECT_PROPERTY_ASSERTION) )
+                return reasoner.isEntailed(axiom);
+            return reasoner.getObjectPropertyValues(subject, op).containsEntity(object);
+        }
+
+        // class or property in the output (like storeIndividual)
+        protected ISymbol storeEntity(final ISolverContext ctx, final IOntologyContext oc, final OWLEntity entity) {
+            final String iri = entity.getIRI().toString();
+            return storeString(ctx, simplifyOutput ? oc.simplifyNamespaceIfPossible(iri) : iri);
+        }
+
+        // reasoner with the given inferences precomputed if it supports that (HermiT), otherwise unchanged
+        private OWLReasoner precomputed(final OWLReasoner reasoner, final InferenceType inferences) {
+            if( reasoner.getPrecomputableInferenceTypes().contains(inferences) && !reasoner.isPrecomputed(inferences) )
+                reasoner.precomputeInferences(inferences);
+            return reasoner;
+        }
+
+        // instances of each of the classes in the current state of oc, with one flush of the reasoner;
+        // for more than one class HermiT realizes all individuals once instead of retrieving instances class by class
+        protected void forEachClassAssertion(final IOntologyContext oc, final List<OWLClass> classes,
+                final BiConsumer<OWLClass, OWLNamedIndividual> consumer) {
+            final RLMaterializer materializer = oc.materializer();
+            if( materializer != null ) {
+                for( final OWLClass cls : classes ) {
+                    materializer.instances(cls).forEach(instance -> consumer.accept(cls, instance));
+                }
+                return;
+            }
+            final OWLReasoner reasoner = classes.size() > 1
+                ? precomputed(oc.reasonerForAll(classes), InferenceType.CLASS_ASSERTIONS) : oc.reasonerForAll(classes);
+            for( final OWLClass cls : classes ) {
+                reasoner.getInstances(cls, false).entities().forEach(instance -> consumer.accept(cls, instance));
+            }
+        }
+
+        // pairs of each of the object properties in the current state of oc (see forEachClassAssertion);
+        // HermiT only realizes property assertions if some property is not answered from the told assertions
+        protected void forEachObjectPropertyAssertion(final IOntologyContext oc, final List<OWLObjectProperty> properties,
+                final TriConsumer<OWLObjectProperty, OWLNamedIndividual, OWLNamedIndividual> consumer) {
+            final RLMaterializer materializer = oc.materializer();
+            for( final OWLObjectProperty op : properties ) {
+                if( materializer != null ) {
+                    materializer.forEachPair(op, (subject, object) -> consumer.accept(op, subject, object));
+                    continue;
+                }
+                oc.propertyExtensions().objectPropertyExtension(oc.ontology(),
+                    () -> properties.size() > 1 ? precomputed(oc.reasonerForAll(properties), InferenceType.OBJECT_PROPERTY_ASSERTIONS) : oc.reasonerFor(op),
+                    op, (subject, object) -> consumer.accept(op, subject, object));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    protected interface TriConsumer<A, B, C> {
+        void accept(A a, B b, C c);
     }
 
     public class ClassQueryReadOnlyAtom extends BaseAtom {
-        public ClassQueryReadOnlyAtom() {
-            super("dlCro", Arrays.asList(new InputType[] { InputType.CONSTANT }), 1);
+        public ClassQueryReadOnlyAtom(final boolean _simplifyOutput) {
+            super(_simplifyOutput ? "dlCroS" : "dlCro", Arrays.asList(new InputType[] { InputType.CONSTANT }), 1, _simplifyOutput);
         }
 
         @Override
         public IAnswer retrieve(final ISolverContext ctx, final IQuery query) {
             //LOGGER.debug("retrieve of {}", () -> getPredicate());
             final String location = withoutQuotes(query.getInput().get(0).value());
-            final String conceptQuery = withoutQuotes(query.getInput().get(1).value());
-            //LOGGER.info("{} retrieving with ontoURI={} and query {}", () -> getPredicate(), () -> location, () -> conceptQuery);
-            final IOntologyContext oc = ontologyContext(location);
-            final String expandedQuery = oc.expandNamespace(conceptQuery);
-            //LOGGER.debug("expanded query to {}", () -> expandedQuery);
+            //LOGGER.info("{} retrieving with ontoURI={} and query {}", () -> getPredicate(), () -> location, () -> query.getInput().get(1).value());
+            final IOntologyContext oc = ontologyContext(ctx, location);
+            final OWLClassExpression owlquery = oc.compileClassExpression(query.getInput().get(1).value());
 
             final Answer answer = new Answer();
-            final OWLClassExpression owlquery = oc.df().getOWLClass(IRI.create(expandedQuery));
             //LOGGER.info("querying unmodified ontology with expression {}", () -> owlquery);
-            oc.reasoner().getInstances(owlquery, false).entities().forEach(instance -> {
+            // extension tables and the materializer only know class names, complex class expressions are evaluated by the reasoner
+            final ExtensionTables tables = owlquery.isOWLClass() ? oc.extensionTables() : null;
+            if( tables != null ) {
+                tables.forEachInstance(owlquery.asOWLClass(), instance -> {
+                    final ArrayList<ISymbol> t = new ArrayList<ISymbol>(1);
+                    t.add(storeIndividual(ctx, oc, instance));
+                    answer.output(t);
+                });
+                return answer;
+            }
+            // computed once on the unmodified ontology, afterwards answered without locking the context
+            final List<OWLNamedIndividual> instances = oc.readOnly(owlquery, base -> {
+                final Stream<OWLNamedIndividual> s;
+                if( base.materializer() != null && owlquery.isOWLClass() ) {
+                    base.restoreBaseOntology();
+                    s = base.materializer().instances(owlquery.asOWLClass()).stream();
+                } else {
+                    s = base.baseReasonerFor(owlquery).getInstances(owlquery, false).entities();
+                }
+                return s.collect(Collectors.toList());
+            });
+            for( final OWLNamedIndividual instance : instances ) {
                 //LOGGER.info("found instance {}", () -> instance);
                 final ArrayList<ISymbol> t = new ArrayList<ISymbol>(1);
-                t.add(ctx.storeString(instance.getIRI().toString()));
+                t.add(storeIndividual(ctx, oc, instance));
                 answer.output(t);
-            });
+            }
 
             return answer;
         }
     }
 
     public class ObjectPropertyReadOnlyQueryAtom extends BaseAtom {
-        public ObjectPropertyReadOnlyQueryAtom() {
-            super("dlOPro", Arrays.asList(new InputType[] { InputType.CONSTANT }), 2);
+        public ObjectPropertyReadOnlyQueryAtom(final boolean _simplifyOutput) {
+            super(_simplifyOutput ? "dlOProS" : "dlOPro", Arrays.asList(new InputType[] { InputType.CONSTANT }), 2, _simplifyOutput);
         }
 
         @Override
         public IAnswer retrieve(final ISolverContext ctx, final IQuery query) {
             //LOGGER.debug("retrieve of {}", () -> getPredicate());
             final String location = withoutQuotes(query.getInput().get(0).value());
-            final String opQuery = withoutQuotes(query.getInput().get(1).value());
-            //LOGGER.info("{} retrieving with ontoURI={} and query {}", () -> getPredicate(), () -> location, () -> opQuery);
-            final IOntologyContext oc = ontologyContext(location);
-            final String expandedQuery = oc.expandNamespace(opQuery);
-            //LOGGER.debug("expanded query to {}", () -> expandedQuery);
+            //LOGGER.info("{} retrieving with ontoURI={} and query {}", () -> getPredicate(), () -> location, () -> query.getInput().get(1).value());
+            final IOntologyContext oc = ontologyContext(ctx, location);
+            final OWLObjectProperty op = oc.compileObjectProperty(query.getInput().get(1).value());
 
             final Answer answer = new Answer();
-            final OWLObjectProperty op = oc.df().getOWLObjectProperty(IRI.create(expandedQuery));
             //LOGGER.debug("querying ontology with expression {}", () -> op);
-            oc.reasoner().objectPropertyDomains(op)
-                .flatMap( domainclass -> oc.reasoner().instances(domainclass, false) )
-                .distinct()
-                .forEach( domainindividual -> {
-                    oc.reasoner().objectPropertyValues(domainindividual, op).forEach( value -> {
-                        //LOGGER.debug("found individual {} related via {} to individual {}", () -> domainindividual, () -> op, () -> value);
-                        final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
-                        t.add(ctx.storeString(domainindividual.getIRI().toString())); // maybe getShortForm()
-                        t.add(ctx.storeString(value.getIRI().toString())); // maybe getShortForm()
-                        answer.output(t);
-                    });
+            final ExtensionTables tables = oc.extensionTables();
+            if( tables != null ) {
+                tables.forEachObjectPropertyPair(op, (subject, object) -> {
+                    final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                    t.add(storeIndividual(ctx, oc, subject));
+                    t.add(storeIndividual(ctx, oc, object));
+                    answer.output(t);
                 });
+                return answer;
+            }
+            final List<Map.Entry<OWLNamedIndividual, OWLNamedIndividual>> pairs = oc.readOnly(op, base -> {
+                final List<Map.Entry<OWLNamedIndividual, OWLNamedIndividual>> ret = new ArrayList<Map.Entry<OWLNamedIndividual, OWLNamedIndividual>>();
+                base.restoreBaseOntology();
+                if( base.materializer() != null ) {
+                    base.materializer().forEachPair(op, (subject, object) -> ret.add(new SimpleImmutableEntry<OWLNamedIndividual, OWLNamedIndividual>(subject, object)));
+                } else {
+                    base.propertyExtensions().objectPropertyExtension(base.ontology(), () -> base.reasonerFor(op), op,
+                        (subject, object) -> ret.add(new SimpleImmutableEntry<OWLNamedIndividual, OWLNamedIndividual>(subject, object)));
+                }
+                return ret;
+            });
+            for( final Map.Entry<OWLNamedIndividual, OWLNamedIndividual> pair : pairs ) {
+                final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                t.add(storeIndividual(ctx, oc, pair.getKey())); // maybe getShortForm()
+                t.add(storeIndividual(ctx, oc, pair.getValue())); // maybe getShortForm()
+                answer.output(t);
+            }
 
             return answer;
         }
     }
 
     public class DataPropertyReadOnlyQueryAtom extends BaseAtom {
-        public DataPropertyReadOnlyQueryAtom() {
-            super("dlDPro", Arrays.asList(new InputType[] { InputType.CONSTANT }), 2);
+        public DataPropertyReadOnlyQueryAtom(final boolean _simplifyOutput) {
+            super(_simplifyOutput ? "dlDProS" : "dlDPro", Arrays.asList(new InputType[] { InputType.CONSTANT }), 2, _simplifyOutput);
         }
 
         @Override
         public IAnswer retrieve(final ISolverContext ctx, final IQuery query) {
             //LOGGER.debug("retrieve of {}", () -> getPredicate());
             final String location = withoutQuotes(query.getInput().get(0).value());
-            final String dpQuery = withoutQuotes(query.getInput().get(1).value());
-            //LOGGER.info("{} retrieving with ontoURI={} and query {}", () -> getPredicate(), () -> location, () -> dpQuery);
-            final IOntologyContext oc = ontologyContext(location);
-            final String expandedQuery = oc.expandNamespace(dpQuery);
-            //LOGGER.debug("expanded query to {}", () -> expandedQuery);
+            //LOGGER.info("{} retrieving with ontoURI={} and query {}", () -> getPredicate(), () -> location, () -> query.getInput().get(1).value());
+            final IOntologyContext oc = ontologyContext(ctx, location);
+            final OWLDataProperty dp = oc.compileDataProperty(query.getInput().get(1).value());
 
             final Answer answer = new Answer();
-            final OWLDataProperty dp = oc.df().getOWLDataProperty(IRI.create(expandedQuery));
             //LOGGER.debug("querying ontology with expression {}", () -> dp);
-            oc.reasoner().dataPropertyDomains(dp)
-                .flatMap( domainclass -> oc.reasoner().instances(domainclass, false) )
-                .distinct()
-                .forEach( domainindividual -> {
-                    oc.reasoner().dataPropertyValues(domainindividual, dp).forEach( value -> {
-                        //LOGGER.debug("found individual {} related via data property {} to value {}", () -> domainindividual, () -> dp, () -> value);
-                        final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
-                        t.add(ctx.storeString(domainindividual.getIRI().toString())); // maybe getShortForm()
-                        t.add(ctx.storeString(value.getLiteral())); // maybe deal with integers/types differently: value.isBoolean value.isInteger
-                        answer.output(t);
-                    });
+            final ExtensionTables tables = oc.extensionTables();
+            if( tables != null ) {
+                tables.forEachDataPropertyValue(dp, (subject, value) -> {
+                    final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                    t.add(storeIndividual(ctx, oc, subject));
+                    t.add(storeLiteral(ctx, value));
+                    answer.output(t);
                 });
-            
+                return answer;
+            }
+            final List<Map.Entry<OWLNamedIndividual, OWLLiteral>> values = oc.readOnly(dp, base -> {
+                final List<Map.Entry<OWLNamedIndividual, OWLLiteral>> ret = new ArrayList<Map.Entry<OWLNamedIndividual, OWLLiteral>>();
+                base.restoreBaseOntology();
+                base.propertyExtensions().dataPropertyExtension(base.ontology(), () -> base.reasonerFor(dp), dp,
+                    (subject, value) -> ret.add(new SimpleImmutableEntry<OWLNamedIndividual, OWLLiteral>(subject, value)));
+                return ret;
+            });
+            for( final Map.Entry<OWLNamedIndividual, OWLLiteral> value : values ) {
+                final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                t.add(storeIndividual(ctx, oc, value.getKey())); // maybe getShortForm()
+                t.add(storeLiteral(ctx, value.getValue()));
+                answer.output(t);
+            }
+
             return answer;
         }
     }
 
+    // modified-ontology atoms that can test single output tuples (for support nogoods in generateMinimalNogoods)
+    interface EntailmentTest {
+        // whether output is in the answer of the atom on the current (consistent) modification of moc
+        public boolean entails(IOntologyContext moc, IPluginAtom.IQuery query, List<ISymbol> output);
+    }
+
     public abstract class ModifiedOntologyBaseAtom extends BaseAtom {
         protected class ModificationsContainer {
             // the tuple of the called external atom
             public ArrayList<ISymbol> primaryQuery;
             // changes extracted from the input predicate using the primary Query
-            public List<OWLOntologyChange> changes;
+            public ArrayList<OWLOntologyChange> changes;
             // the ISymbols extracted from the current delta/selector literal assignment
             public HashSet<ISymbol> positiveModifiers;
             // the nogood of the current delta/selector literal assignments
             public HashSet<ISymbol> primaryModificationNogood;
+            // input atoms of the interpretation, grouped by delta predicate and selector
+            public HashMap<DeltaSel, List<ISymbol>> inputAtoms;
 
             public ModificationsContainer(ArrayList<ISymbol> _primaryQuery) {
                 primaryQuery = _primaryQuery;
-                changes = new LinkedList<OWLOntologyChange>();
+                // sized in extractChanges (one change per positive modifier)
+                changes = new ArrayList<OWLOntologyChange>(0);
                 positiveModifiers = new HashSet<ISymbol>();
                 primaryModificationNogood = new HashSet<ISymbol>();
+                inputAtoms = new HashMap<DeltaSel, List<ISymbol>>();
                 //nogoodBySelector = new HashMap<ISymbol, HashSet<ISymbol> >();
                 //LOGGER.info("ModificationsContainer with onto {} and predicate {}", onto.toString(), predicate.toString());
             }
@@ -266,33 +595,34 @@ public class OWLAPIPlugin implements IPlugin {
                 final int oarity = eatom.getOutputArguments();
                 final ISymbol primaryOnto = primaryQuery.get(0);
                 final List<? extends ISymbol> primaryRestQuery = primaryQuery.subList(3,primaryQuery.size());
-                LOGGER.info("generateNogoodsForAnswer having oarity {} primaryOnto {} primaryRestQuery {}", () -> oarity, () -> primaryOnto.toString(), () -> primaryRestQuery.toString());
-                for( final ISymbol replacementAtom : ctx.getInstantiatedOutputAtoms() ) {
-                    final ArrayList<ISymbol> replacementTuple = replacementAtom.tuple(); // (aux, onto, delta, sel, <query>*, <output>*)
-                    final boolean ontomatch = replacementTuple.get(1).equals(primaryOnto);
-                    final boolean querymatch = replacementTuple.subList(4,replacementTuple.size()-oarity).equals(primaryRestQuery);
-                    //LOGGER.info(" ... replacement atom {} matches onto:{} query:{}", replacementAtom.toString(), ontomatch, querymatch);
-                    if( !ontomatch || !querymatch )
-                        continue;
+                LOGGER.debug("generateNogoodsForAnswer having oarity {} primaryOnto {} primaryRestQuery {}", () -> oarity, () -> primaryOnto.toString(), () -> primaryRestQuery.toString());
+
+                // output tuples of the answer, for constant time membership tests
+                final HashSet<List<ISymbol>> trueTuples = new HashSet<List<ISymbol>>();
+                for( final List<ISymbol> t : answer.getTrueTuples() ) {
+                    trueTuples.add(t);
+                }
 
+                final List<ISymbol> replacementAtoms = replacementIndexes
+                    .computeIfAbsent(ctx, k -> new ReplacementAtomIndex(modifiedAtoms))
+                    .lookup(ctx.getInstantiatedOutputAtoms(), eatom.getPredicate(), primaryOnto, primaryRestQuery);
+                for( final ISymbol replacementAtom : replacementAtoms ) {
+                    final ArrayList<ISymbol> replacementTuple = replacementAtom.tuple(); // (aux, onto, delta, sel, <query>*, <output>*)
                     final ISymbol delta = replacementTuple.get(2);
                     final ISymbol sel = replacementTuple.get(3);
 
-                    // go over all potential input atoms and collect true and false ones for replacement atom
-                    HashSet<ISymbol> relevantModInPrimaryQuery = new HashSet<ISymbol>();
-                    HashSet<ISymbol> relevantModOther = new HashSet<ISymbol>();
-                    for(final ISymbol atm : query.getInterpretation().getInputAtoms()) {
-                        final ArrayList<ISymbol> atuple = atm.tuple(); // (deltapred, selector, modification)
-
-                        if( !atuple.get(0).equals(delta) || !atuple.get(1).equals(sel) )
-                            continue;
-
-                        // we found a delta(sel,<mod>) that is relevant for the truth of replacementAtom
-                        final ISymbol mod = atuple.get(2);
-                        if( positiveModifiers.contains(mod) ) {
-                            relevantModInPrimaryQuery.add(atm);
-                        } else {
-                            relevantModOther.add(atm);
+                    // collect true and false potential input atoms delta(sel,<mod>) that are relevant for the truth of replacementAtom
+                    final HashSet<ISymbol> relevantModInPrimaryQuery = new HashSet<ISymbol>();
+                    final HashSet<ISymbol> relevantModOther = new HashSet<ISymbol>();
+                    final List<ISymbol> relevant = inputAtoms.get(new DeltaSel(delta, sel));
+                    if( relevant != null ) {
+                        for(final ISymbol atm : relevant) {
+                            final ISymbol mod = atm.tuple().get(2);
+                            if( positiveModifiers.contains(mod) ) {
+                                relevantModInPrimaryQuery.add(atm);
+                            } else {
+                                relevantModOther.add(atm);
+                            }
                         }
                     }
 
@@ -302,15 +632,13 @@ public class OWLAPIPlugin implements IPlugin {
                     // if not, this replacement atom can never be made true by the same primary query -> we cannot make a nogood
                     if( relevantModInPrimaryQuery.size() == positiveModifiers.size() ) {
                         // checking size is sufficient
-                        LOGGER.info("... we found all required positive atoms: {} plus others {}", () -> relevantModInPrimaryQuery.toString(), () -> relevantModOther.toString());
-                        LOGGER.info("   (original positiveModifiers was {})", () -> positiveModifiers.toString());
+                        LOGGER.debug("... we found all required positive atoms: {} plus others {}", () -> relevantModInPrimaryQuery.toString(), () -> relevantModOther.toString());
 
-                        final List<? extends ISymbol> replacementOutputTuple = replacementTuple.subList(replacementTuple.size()-oarity, replacementTuple.size());
-                        final boolean outputIsTrue = answer.getTrueTuples().contains(replacementOutputTuple);
-                        LOGGER.info("... ouptut is () - replacementOutputTuple {}", () -> outputIsTrue, () -> replacementOutputTuple.toString());
+                        final List<ISymbol> replacementOutputTuple = replacementTuple.subList(replacementTuple.size()-oarity, replacementTuple.size());
+                        final boolean outputIsTrue = trueTuples.contains(replacementOutputTuple);
 
                         // generate nogood
-                        HashSet<ISymbol> nogood = new HashSet<ISymbol>();
+                        final HashSet<ISymbol> nogood = new HashSet<ISymbol>();
 
                         // relevant input
                         for( final ISymbol s : relevantModInPrimaryQuery ) {
@@ -327,13 +655,56 @@ public class OWLAPIPlugin implements IPlugin {
                             nogood.add(replacementAtom);
                         }
                         ctx.learn(nogood);
+                        Metrics.nogood(nogood.size());
+                    }
+                }
+            }
+
+            // learn nogoods for the replacement atoms with the given output tuple (null: all replacement atoms):
+            // if all required modifiers are true and no delete modifier outside allowedDeletes is true,
+            // then the replacement atom has the given truth value
+            // (sound if the answer is monotone in the added axioms and anti-monotone in the deleted axioms)
+            public void generateSupportNogoods(final ISolverContext ctx, final IPluginAtom eatom, final Set<ISymbol> required,
+                    final Set<ISymbol> allowedDeletes, final List<ISymbol> output, final boolean outputIsTrue) {
+                final int oarity = eatom.getOutputArguments();
+                final List<ISymbol> replacementAtoms = replacementIndexes
+                    .computeIfAbsent(ctx, k -> new ReplacementAtomIndex(modifiedAtoms))
+                    .lookup(ctx.getInstantiatedOutputAtoms(), eatom.getPredicate(), primaryQuery.get(0), primaryQuery.subList(3, primaryQuery.size()));
+                for( final ISymbol replacementAtom : replacementAtoms ) {
+                    final ArrayList<ISymbol> replacementTuple = replacementAtom.tuple(); // (aux, onto, delta, sel, <query>*, <output>*)
+                    if( output != null && !replacementTuple.subList(replacementTuple.size()-oarity, replacementTuple.size()).equals(output) )
+                        continue;
+                    final List<ISymbol> relevant = inputAtoms.get(new DeltaSel(replacementTuple.get(2), replacementTuple.get(3)));
+                    final HashSet<ISymbol> nogood = new HashSet<ISymbol>();
+                    int found = 0;
+                    if( relevant != null ) {
+                        for( final ISymbol atm : relevant ) {
+                            final ISymbol mod = atm.tuple().get(2);
+                            if( required.contains(mod) ) {
+                                nogood.add(atm);
+                                found++;
+                            } else if( isDeleteModifier(mod) && !allowedDeletes.contains(mod) ) {
+                                nogood.add(atm.negate());
+                            }
+                        }
                     }
+                    // this replacement atom cannot be made true by the required modifiers
+                    if( found != required.size() )
+                        continue;
+                    nogood.add(outputIsTrue ? replacementAtom.negate() : replacementAtom);
+                    ctx.learn(nogood);
+                    Metrics.nogood(nogood.size());
                 }
             }
         }
 
         public ModifiedOntologyBaseAtom(final String _predicate, final List<InputType> _extraArgumentTypes, final int output_arguments) {
-            super(_predicate, prepareArguments(_extraArgumentTypes), output_arguments);
+            this(_predicate, _extraArgumentTypes, output_arguments, false);
+        }
+
+        public ModifiedOntologyBaseAtom(final String _predicate, final List<InputType> _extraArgumentTypes, final int output_arguments,
+                final boolean _simplifyOutput) {
+            super(_predicate, prepareArguments(_extraArgumentTypes), output_arguments, _simplifyOutput);
             // first argument = ontology meta file location (from BaseAtom)
             // second argument = delta predicate
             // third argument = delta selector
@@ -346,21 +717,142 @@ public class OWLAPIPlugin implements IPlugin {
             final ISymbol onto = query.getInput().get(0);
             final String location = withoutQuotes(onto.value());
             //LOGGER.info("{} retrieving with ontoURI={}", () -> getPredicate(), () -> location);
-            final IOntologyContext oc = ontologyContext(location);
-            final ISymbol delta_pred = query.getInput().get(1);
-            final ISymbol delta_sel = query.getInput().get(2);
+            final IOntologyContext oc = ontologyContext(ctx, location);
             final ModificationsContainer ontology_mods = extractModifications(
                 oc, query.getInput(), query.getInterpretation());
-            //LOGGER.info("applying changes ",ontology_mods.changes.toString());
-            oc.applyChanges(ontology_mods.changes);
+
+            // the answer only depends on the true modifiers, not on the delta predicate and selector
+            final AnswerCache.Key cacheKey = new AnswerCache.Key(oc, getPredicate(),
+                query.getInput().subList(3, query.getInput().size()), ontology_mods.positiveModifiers);
+            final AnswerCache answerCache = answerCache(ctx);
+            Answer answer = answerCache.get(cacheKey);
+            if( answer == null ) {
+                boolean minimal = false;
+                // the ontology is modified in place: each modified-ontology call gets exclusive use of a copy
+                final IOntologyContext moc = oc.checkout();
+                try {
+                    long t = Metrics.start();
+                    extractChanges(moc, ontology_mods);
+                    Metrics.delta(ontology_mods.changes.size());
+                    t = Metrics.record(Metrics.Phase.EXTRACT, t);
+                    //LOGGER.info("switching to changes ",ontology_mods.changes.toString());
+                    // the modification stays applied until the next call needs a different one
+                    moc.switchToModification(ontology_mods.changes);
+                    t = Metrics.record(Metrics.Phase.APPLY, t);
+                    answer = retrieveDetail(ctx, query, moc, ontology_mods);
+                    t = Metrics.record(Metrics.Phase.RETRIEVE, t);
+                    answerCache.put(cacheKey, answer);
+                    minimal = moc.minimalNogoods() && generateMinimalNogoods(ctx, query, moc, ontology_mods, answer);
+                    Metrics.record(Metrics.Phase.NOGOODS, t);
+                } finally {
+                    oc.checkin(moc);
+                }
+                if( minimal )
+                    return answer;
+            } else {
+                Metrics.cacheHit();
+            }
+            // nogoods depend on the instantiated atoms of the solver, so they are generated also for cached answers
+            final long t = Metrics.start();
+            ontology_mods.generateNogoodsForAnswer(ctx, this, query, answer);
+            Metrics.record(Metrics.Phase.NOGOODS, t);
+            return answer;
+        }
+
+        protected boolean isDeleteModifier(final ISymbol modifier) {
+            return modifier.tuple().get(0).value().startsWith("del");
+        }
+
+        protected boolean isConsistent(final IOntologyContext moc) {
+            return moc.isConsistent();
+        }
+
+        // some instantiated modifier adds an axiom that may cause a clash (e.g. an instance of owl:Nothing),
+        // which can make even a clash-free ontology inconsistent
+        private boolean mayAddClash(final IOntologyContext oc, final ModificationsContainer mods) {
+            for( final List<ISymbol> atoms : mods.inputAtoms.values() ) {
+                for( final ISymbol atm : atoms ) {
+                    for( final OWLOntologyChange change : compileModifier(oc, atm.tuple().get(2)) ) {
+                        if( change.isAddAxiom() && ReasonerRouting.mayClash(change.getAxiom()) )
+                            return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // learn nogoods over minimal sets of added modifiers, found by QuickXplain (delete modifiers stay applied):
+        // * if the modified ontology is inconsistent: a minimal subset of the adds that is inconsistent makes all outputs false
+        // * if the ontology is clash-free: a minimal subset of the adds that entails an output tuple makes it true
+        // (the modification of a consistent answer can become inconsistent by more adds, so support sets are only used if that is impossible)
+        // returns true if these nogoods replace the nogoods of generateNogoodsForAnswer
+        protected boolean generateMinimalNogoods(final ISolverContext ctx, final IQuery query, final IOntologyContext oc,
+                final ModificationsContainer mods, final Answer answer) {
+            final List<ISymbol> adds = new ArrayList<ISymbol>();
+            final HashSet<ISymbol> deletes = new HashSet<ISymbol>();
+            final Map<ISymbol, List<OWLOntologyChange>> changes = new HashMap<ISymbol, List<OWLOntologyChange>>();
+            for( final ISymbol modifier : mods.positiveModifiers ) {
+                if( isDeleteModifier(modifier) ) {
+                    deletes.add(modifier);
+                } else {
+                    adds.add(modifier);
+                }
+                changes.put(modifier, compileModifier(oc, modifier));
+            }
+            // base ontology with all deletes and the given adds
+            final Consumer<List<ISymbol>> switchTo = subset -> {
+                final List<OWLOntologyChange> c = new ArrayList<OWLOntologyChange>();
+                for( final ISymbol d : deletes ) c.addAll(changes.get(d));
+                for( final ISymbol a : subset ) c.addAll(changes.get(a));
+                oc.switchToModification(c);
+            };
+
+            // the subsets tried below use the modules of the whole modification instead of extracting one per subset
+            oc.pinModuleSignature();
             try {
-                return retrieveDetail(ctx, query, oc, ontology_mods);
+                if( !isConsistent(oc) ) {
+                    final QuickXplain<ISymbol> qx = new QuickXplain<ISymbol>(subset -> {
+                        switchTo.accept(subset);
+                        return !isConsistent(oc);
+                    });
+                    final List<ISymbol> conflict = qx.explain(adds);
+                    explanationChecks.add(qx.checks());
+                    if( conflict == null )
+                        return false;
+                    minimalNogoods.increment();
+                    minimalNogoodModifiers.add(conflict.size());
+                    fullNogoodModifiers.add(mods.primaryModificationNogood.size());
+                    LOGGER.debug("minimal inconsistent modification {} of {}", () -> conflict, () -> mods.positiveModifiers);
+                    mods.generateSupportNogoods(ctx, this, new HashSet<ISymbol>(conflict), deletes, null, false);
+                    return true;
+                }
+
+                if( this instanceof EntailmentTest && oc.isClashFree() && !mayAddClash(oc, mods) ) {
+                    final EntailmentTest test = (EntailmentTest) this;
+                    for( final List<ISymbol> t : answer.getTrueTuples() ) {
+                        final List<ISymbol> output = new ArrayList<ISymbol>(t);
+                        final QuickXplain<ISymbol> qx = new QuickXplain<ISymbol>(subset -> {
+                            switchTo.accept(subset);
+                            return test.entails(oc, query, output);
+                        });
+                        final List<ISymbol> support = qx.explain(adds);
+                        explanationChecks.add(qx.checks());
+                        if( support == null )
+                            continue;
+                        minimalNogoods.increment();
+                        minimalNogoodModifiers.add(support.size());
+                        fullNogoodModifiers.add(mods.primaryModificationNogood.size());
+                        mods.generateSupportNogoods(ctx, this, new HashSet<ISymbol>(support), deletes, output, true);
+                    }
+                }
             } finally {
-                //LOGGER.info("reverting changes");
-                oc.revertChanges(ontology_mods.changes);
+                oc.releaseModuleSignature();
             }
+            // false outputs still need the nogoods over the whole modification
+            return false;
         }
 
+        // compute the answer on the modified ontology (nogoods are generated by the caller)
         public abstract Answer retrieveDetail(final ISolverContext ctx, final IQuery query, final IOntologyContext moc, final ModificationsContainer modcontainer);
 
         // the currently relevant modification would be:
@@ -380,110 +872,106 @@ public class OWLAPIPlugin implements IPlugin {
             final ISymbol delta_pred = primaryQuery.get(1);
             final ISymbol delta_sel = primaryQuery.get(2);
 
-            // pass 1: record positive/negative tuples and extract modification
+            // pass 1: group all instantiated input atoms (also false ones) by delta predicate and selector, once per query
             for(final ISymbol atm : interpretation.getInputAtoms()) {
-                // going over all instantiated relevant input atoms, also those that are false
+                final ArrayList<ISymbol> atuple = atm.tuple(); // (deltapred, selector, modification)
+                if( atuple.size() < 3 )
+                    continue;
+                ret.inputAtoms.computeIfAbsent(new DeltaSel(atuple.get(0), atuple.get(1)), k -> new ArrayList<ISymbol>()).add(atm);
+            }
 
-                final ArrayList<ISymbol> atuple = atm.tuple();
-                //LOGGER.info("pass 1 input atom {} with tuple {}", () -> atm.toString(), () -> atuple.toString());
-                if( atuple.get(0).equals(delta_pred) && atuple.get(1).equals(delta_sel) ) {
-                    //LOGGER.info("..is relevant with truth value {}", () -> atm.isTrue());
-                    final ISymbol modifier = atuple.get(2);
-                    final ArrayList<ISymbol> modifiertuple = modifier.tuple();
+            // record positive/negative tuples of the primary delta and selector (modifications are extracted only if the answer is not cached)
+            final List<ISymbol> primary = ret.inputAtoms.get(new DeltaSel(delta_pred, delta_sel));
+            if( primary != null ) {
+                for(final ISymbol atm : primary) {
+                    final ISymbol modifier = atm.tuple().get(2);
 
                     // atm is always represented as positive, so if the truth value is negative we must add its negated literal
                     if( atm.isTrue() ) {
-                        extractSingleModification(ctx, modifiertuple, ret);
                         ret.positiveModifiers.add(modifier);
                         ret.primaryModificationNogood.add(atm);
                     } else {
                         // no modification, but the result we compute still depends on the falsity of atm
                         ret.primaryModificationNogood.add(atm.negate());
                     }
-                } else {
-                    //LOGGER.info("..is irrelevant for delta_pred {} and delta_sel {}", () -> delta_pred.toString(), () -> delta_sel.toString());
                 }
             }
 
             return ret;
         }
 
-        protected void extractSingleModification(final IOntologyContext ctx, final List<? extends ISymbol> child, final ModificationsContainer out) {
+        // pass 2: extract the ontology changes of the positive modifiers
+        protected void extractChanges(final IOntologyContext ctx, final ModificationsContainer mods) {
+            mods.changes.ensureCapacity(mods.positiveModifiers.size());
+            for( final ISymbol modifier : mods.positiveModifiers ) {
+                mods.changes.addAll(compileModifier(ctx, modifier));
+            }
+        }
+
+        // changes of one modifier, compiled once per context (the same modifiers recur in many calls)
+        protected List<OWLOntologyChange> compileModifier(final IOntologyContext ctx, final ISymbol modifier) {
+            return ctx.compileModifier(modifier, m -> compileSingleModification(ctx, m.tuple()));
+        }
+
+        private List<OWLOntologyChange> compileSingleModification(final IOntologyContext ctx, final List<? extends ISymbol> child) {
             final String mtype = child.get(0).value();
-            final List<IRI> argumentIRIs = new ArrayList<IRI>(child.size()-1);
-            for( final ISymbol arg : child.subList(1,child.size()) ) {
+            final int arity;
+            switch (mtype) {
+            case "addc":
+            case "delc":
+                arity = 2;
+                break;
+            case "addop":
+            case "delop":
+            case "adddp":
+            case "deldp":
+                arity = 3;
+                break;
+            default:
+                // reported once per type, the modifier is compiled to no change
+                if( unknownModifierTypes.add(mtype) )
+                    LOGGER.error("delta modification of ontology got unknown type '" + mtype
+                            + "' (can be {add,del}{c,op,dp}) - ignoring");
+                return Collections.emptyList();
+            }
+            if( child.size() != arity + 1 ) {
+                LOGGER.error("delta modification {} needs {} arguments - ignoring", () -> child, () -> arity);
+                return Collections.emptyList();
+            }
+            // the value of a data property is not an IRI
+            final int iris = mtype.endsWith("dp") ? 2 : arity;
+            final List<IRI> argumentIRIs = new ArrayList<IRI>(iris);
+            for( final ISymbol arg : child.subList(1, iris + 1) ) {
                 argumentIRIs.add(IRI.create(ctx.expandNamespace(withoutQuotes(arg.value()))));
             }
             //LOGGER.info(" argumentIRIs = "+argumentIRIs);
-            final List<OWLOntologyChange> deletes = new ArrayList<OWLOntologyChange>();
-            final List<OWLOntologyChange> adds = new ArrayList<OWLOntologyChange>();
+            final OWLAxiom axiom;
             switch (mtype) {
             case "addc":
-                adds.add(new AddAxiom(ctx.ontology(),
-                        ctx.df().getOWLClassAssertionAxiom(
-                            ctx.df().getOWLClass(argumentIRIs.get(0)),
-                            ctx.df().getOWLNamedIndividual(argumentIRIs.get(1)))));
-                break;
             case "delc":
-                deletes.add(new RemoveAxiom(ctx.ontology(),
-                        ctx.df().getOWLClassAssertionAxiom(
-                            ctx.df().getOWLClass(argumentIRIs.get(0)),
-                            ctx.df().getOWLNamedIndividual(argumentIRIs.get(1)))));
+                axiom = ctx.df().getOWLClassAssertionAxiom(
+                    ctx.df().getOWLClass(argumentIRIs.get(0)),
+                    ctx.df().getOWLNamedIndividual(argumentIRIs.get(1)));
                 break;
             case "addop":
-                adds.add(new AddAxiom(ctx.ontology(),
-                        ctx.df().getOWLObjectPropertyAssertionAxiom(
-                            ctx.df().getOWLObjectProperty(argumentIRIs.get(0)),
-                            ctx.df().getOWLNamedIndividual(argumentIRIs.get(1)),
-                            ctx.df().getOWLNamedIndividual(argumentIRIs.get(2)))));
-                break;
             case "delop":
-                deletes.add(new RemoveAxiom(ctx.ontology(),
-                        ctx.df().getOWLObjectPropertyAssertionAxiom(
-                            ctx.df().getOWLObjectProperty(argumentIRIs.get(0)),
-                            ctx.df().getOWLNamedIndividual(argumentIRIs.get(1)),
-                            ctx.df().getOWLNamedIndividual(argumentIRIs.get(2)))));
+                axiom = ctx.df().getOWLObjectPropertyAssertionAxiom(
+                    ctx.df().getOWLObjectProperty(argumentIRIs.get(0)),
+                    ctx.df().getOWLNamedIndividual(argumentIRIs.get(1)),
+                    ctx.df().getOWLNamedIndividual(argumentIRIs.get(2)));
                 break;
-            case "adddp":
+            default:
                 {
-                    // TODO implement other literal types besides string
-                    final ISymbol symvalue = child.get(3);
-                    final String svalue = symvalue.value();
-                    OWLLiteral literal = null;
-                    //LOGGER.info("processing adddp value "+svalue);
-                    if( svalue.startsWith("\"") ) {
-                        //LOGGER.info("  IT IS string");
-                        literal = ctx.df().getOWLLiteral(svalue.substring(1,svalue.length()-1));
-                    } else if( svalue.equals("true") ) {
-                        //LOGGER.info("  IT IS true");
-                        literal = ctx.df().getOWLLiteral(true);
-                    } else if( svalue.equals("false") ) {
-                        //LOGGER.info("  IT IS false");
-                        literal = ctx.df().getOWLLiteral(false);
-                    } else {
-                        try {
-                            literal = ctx.df().getOWLLiteral(symvalue.intValue());
-                            //LOGGER.info("  IT IS integer");
-                        }
-                        catch(final RuntimeException e) {
-                            //LOGGER.info("  IT IS stringsymbol");
-                            literal = ctx.df().getOWLLiteral(svalue);
-                        }
-                    }                            
-                    adds.add(new AddAxiom(ctx.ontology(),
-                            ctx.df().getOWLDataPropertyAssertionAxiom(
-                                ctx.df().getOWLDataProperty(argumentIRIs.get(0)),
-                                ctx.df().getOWLNamedIndividual(argumentIRIs.get(1)),
-                                literal)));
+                    final OWLDataProperty dp = ctx.df().getOWLDataProperty(argumentIRIs.get(0));
+                    axiom = ctx.df().getOWLDataPropertyAssertionAxiom(dp,
+                        ctx.df().getOWLNamedIndividual(argumentIRIs.get(1)),
+                        ctx.literalCodec().decode(dp, child.get(3)));
                 }
-                break;
-            default:
-                LOGGER.error("delta modification of ontology got unknown type '" + mtype
-                        + "' (can be {add,del}{c,op,dp}) - ignoring");
             }
-            out.changes.addAll(deletes);
-            out.changes.addAll(adds);
-        }        
+            final OWLOntologyChange change = mtype.startsWith("add")
+                ? new AddAxiom(ctx.ontology(), axiom) : new RemoveAxiom(ctx.ontology(), axiom);
+            return Collections.singletonList(change);
+        }
     }
 
     public class ModifiedOntologyConsistentAtom extends ModifiedOntologyBaseAtom {
@@ -497,105 +985,426 @@ public class OWLAPIPlugin implements IPlugin {
 
         @Override
         public Answer retrieveDetail(final ISolverContext ctx, final IQuery query, final IOntologyContext moc, final ModificationsContainer modcon) {
-            final OWLReasoner reasoner = moc.reasoner();
             //LOGGER.info("result: consistent={}", () -> reasoner.isConsistent());
             final ArrayList<ISymbol> emptytuple = new ArrayList<ISymbol>();
 
             final Answer answer = new Answer();
-            boolean consistent = reasoner.isConsistent();
-            if( consistent ) {
+            if( isConsistent(moc) ) {
                 answer.output(emptytuple);
             }
-            modcon.generateNogoodsForAnswer(ctx, this, query, answer);
 
             return answer;
         }
     }
 
-    public class ModifiedOntologyClassQueryAtom extends ModifiedOntologyBaseAtom {
-        public ModifiedOntologyClassQueryAtom() {
-            super("dlC", Arrays.asList(new InputType[] { InputType.CONSTANT }), 1);
+    public class ModifiedOntologyClassQueryAtom extends ModifiedOntologyBaseAtom implements EntailmentTest {
+        public ModifiedOntologyClassQueryAtom(final boolean _simplifyOutput) {
+            super(_simplifyOutput ? "dlCS" : "dlC", Arrays.asList(new InputType[] { InputType.CONSTANT }), 1, _simplifyOutput);
+        }
+
+        @Override
+        public boolean entails(final IOntologyContext moc, final IQuery query, final List<ISymbol> output) {
+            final OWLClassExpression cquery = moc.compileClassExpression(query.getInput().get(3).value());
+            return entailsClassAssertion(moc, cquery, individual(moc, output.get(0)));
         }
 
         //@Override
         public Answer retrieveDetail(final ISolverContext ctx, final IQuery query, final IOntologyContext moc, final ModificationsContainer modcon) {
-            final OWLReasoner reasoner = moc.reasoner();
-            final ArrayList<ISymbol> emptytuple = new ArrayList<ISymbol>();
+            final OWLClassExpression cquery = moc.compileClassExpression(query.getInput().get(3).value());
+            final RLMaterializer materializer = cquery.isOWLClass() ? moc.materializer() : null;
+            final OWLReasoner reasoner = materializer == null ? moc.reasonerFor(cquery) : null;
 
             final Answer answer = new Answer();
-            if( !moc.reasoner().isConsistent() ) {
+            if( !moc.isConsistent() ) {
                 // make this atom false
                 // XXX is this a good idea? logic would say it is true
                 // cannot learn because do not know potential output tuples of this external atom
                 //LOGGER.info("result (dlC): inconsistent!");
-                modcon.generateNogoodsForAnswer(ctx, this, query, answer);
                 return answer;
             }
 
-            final String cQuery = withoutQuotes(query.getInput().get(3).value());
-            final String expandedQuery = moc.expandNamespace(cQuery);
-            //LOGGER.debug("expanded class query to {}", () -> expandedQuery);
-            final OWLClassExpression cquery = moc.df().getOWLClass(IRI.create(expandedQuery));
             //LOGGER.debug("querying ontology with expression {}", () -> cquery);
-            moc.reasoner()
-                .getInstances(cquery, false /*get also direct instances*/)
-                .entities()
+            final Stream<OWLNamedIndividual> instances = materializer != null
+                ? materializer.instances(cquery.asOWLClass()).stream()
+                : reasoner.getInstances(cquery, false /*get also direct instances*/).entities();
+            instances
                 .forEach(domainindividual -> {
                     // LOGGER.debug("found individual {} in query {}", () -> domainindividual, () -> cquery);
 
-                    final ISymbol trueOutput = ctx.storeString(domainindividual.getIRI().toString());
+                    final ISymbol trueOutput = storeIndividual(ctx, moc, domainindividual);
                     // LOGGER.info("result (dlC): consistent and found {}", () -> domainindividual.getIRI().toString());
 
                     final ArrayList<ISymbol> t = new ArrayList<ISymbol>(1);
                     t.add(trueOutput);
                     answer.output(t);
                 });
-            modcon.generateNogoodsForAnswer(ctx, this, query, answer);
             return answer;
         }
     }
 
-    public class ModifiedOntologyObjectPropertyQueryAtom extends ModifiedOntologyBaseAtom {
-        public ModifiedOntologyObjectPropertyQueryAtom() {
-            super("dlOP", Arrays.asList(new InputType[] { InputType.CONSTANT }), 2);
+    public class ModifiedOntologyObjectPropertyQueryAtom extends ModifiedOntologyBaseAtom implements EntailmentTest {
+        public ModifiedOntologyObjectPropertyQueryAtom(final boolean _simplifyOutput) {
+            super(_simplifyOutput ? "dlOPS" : "dlOP", Arrays.asList(new InputType[] { InputType.CONSTANT }), 2, _simplifyOutput);
+        }
+
+        @Override
+        public boolean entails(final IOntologyContext moc, final IQuery query, final List<ISymbol> output) {
+            final OWLObjectProperty op = moc.compileObjectProperty(query.getInput().get(3).value());
+            return entailsObjectPropertyAssertion(moc, op, individual(moc, output.get(0)), individual(moc, output.get(1)));
         }
 
         public Answer retrieveDetail(final ISolverContext ctx, final IQuery query, final IOntologyContext moc, final ModificationsContainer modcon) {
-            final OWLReasoner reasoner = moc.reasoner();
-            final ArrayList<ISymbol> emptytuple = new ArrayList<ISymbol>();
+            final RLMaterializer materializer = moc.materializer();
+            final OWLObjectProperty op = moc.compileObjectProperty(query.getInput().get(3).value());
+            final OWLReasoner reasoner = materializer == null ? moc.reasonerFor(op) : null;
 
             final Answer answer = new Answer();
-            if( !moc.reasoner().isConsistent() ) {
+            if( !moc.isConsistent() ) {
                 // make this atom false
                 // XXX is this a good idea? logic would say it is true
                 // cannot learn because do not know potential output tuples of this external atom
                 // LOGGER.info("result (dlOP): inconsistent");
-                modcon.generateNogoodsForAnswer(ctx, this, query, answer);
                 return answer;
             }
 
-            final String opQuery = withoutQuotes(query.getInput().get(3).value());
-            final String expandedQuery = moc.expandNamespace(opQuery);
-            // LOGGER.debug("expanded object property query to {}", () -> expandedQuery);
-            final OWLObjectProperty op = moc.df().getOWLObjectProperty(IRI.create(expandedQuery));
             // LOGGER.debug("querying ontology with expression {}", () -> op);
-            moc.reasoner()
-                .objectPropertyDomains(op)
-                .flatMap(domainclass -> moc.reasoner().instances(domainclass, false))
-                .distinct().forEach(domainindividual -> {
-                    moc.reasoner()
-                        .objectPropertyValues(domainindividual, op)
-                        .forEach(value -> {
-                            // LOGGER.debug("found individual {} related via {} to individual {}", () -> domainindividual, () -> op, () -> value);
-                            final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
-                            t.add(ctx.storeString(domainindividual.getIRI().toString()));
-                            t.add(ctx.storeString(value.getIRI().toString()));
-                            
-                            // LOGGER.info("result (dlOP): consistent and found {}/{}", () -> domainindividual.getIRI().toString(), () -> value.getIRI().toString());
-                            answer.output(t);
-                        });
+            if( materializer != null ) {
+                materializer.forEachPair(op, (subject, object) -> {
+                    final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                    t.add(storeIndividual(ctx, moc, subject));
+                    t.add(storeIndividual(ctx, moc, object));
+                    answer.output(t);
                 });
-            modcon.generateNogoodsForAnswer(ctx, this, query, answer);
+                return answer;
+            }
+            moc.propertyExtensions().objectPropertyExtension(moc.ontology(), () -> reasoner, op, (subject, object) -> {
+                final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                t.add(storeIndividual(ctx, moc, subject));
+                t.add(storeIndividual(ctx, moc, object));
+                // LOGGER.info("result (dlOP): consistent and found {}/{}", () -> subject.getIRI().toString(), () -> object.getIRI().toString());
+                answer.output(t);
+            });
+            return answer;
+        }
+    }
+
+    public class ModifiedOntologyDataPropertyQueryAtom extends ModifiedOntologyBaseAtom implements EntailmentTest {
+        public ModifiedOntologyDataPropertyQueryAtom(final boolean _simplifyOutput) {
+            super(_simplifyOutput ? "dlDPS" : "dlDP", Arrays.asList(new InputType[] { InputType.CONSTANT }), 2, _simplifyOutput);
+        }
+
+        @Override
+        public boolean entails(final IOntologyContext moc, final IQuery query, final List<ISymbol> output) {
+            final OWLDataProperty dp = moc.compileDataProperty(query.getInput().get(3).value());
+            final OWLNamedIndividual subject = individual(moc, output.get(0));
+            final OWLLiteral value = moc.literalCodec().decode(dp, output.get(1));
+            final OWLReasoner reasoner = moc.reasonerFor(dp);
+            if( reasoner.isEntailmentCheckingSupported(AxiomType.DATA_PROPERTY_ASSERTION) )
+                return reasoner.isEntailed(moc.df().getOWLDataPropertyAssertionAxiom(dp, subject, value));
+            return reasoner.getDataPropertyValues(subject, dp).contains(value);
+        }
+
+        public Answer retrieveDetail(final ISolverContext ctx, final IQuery query, final IOntologyContext moc, final ModificationsContainer modcon) {
+            final OWLDataProperty dp = moc.compileDataProperty(query.getInput().get(3).value());
+
+            final Answer answer = new Answer();
+            // false if inconsistent, like dlC and dlOP
+            if( !moc.isConsistent() )
+                return answer;
+
+            moc.propertyExtensions().dataPropertyExtension(moc.ontology(), () -> moc.reasonerFor(dp), dp, (subject, value) -> {
+                final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                t.add(storeIndividual(ctx, moc, subject));
+                t.add(storeLiteral(ctx, value));
+                answer.output(t);
+            });
+            return answer;
+        }
+    }
+
+    public class ClassEntailmentReadOnlyAtom extends BaseAtom {
+        public ClassEntailmentReadOnlyAtom() {
+            // dlCEro[ontospec,class,individual]
+            // true iff the unmodified ontology entails that individual is an instance of class
+            super("dlCEro", Arrays.asList(new InputType[] { InputType.CONSTANT, InputType.CONSTANT }), 0);
+        }
+
+        @Override
+        public IAnswer retrieve(final ISolverContext ctx, final IQuery query) {
+            final String location = withoutQuotes(query.getInput().get(0).value());
+            final IOntologyContext oc = ontologyContext(ctx, location);
+            final OWLClassExpression cquery = oc.compileClassExpression(query.getInput().get(1).value());
+            final OWLNamedIndividual individual = individual(oc, query.getInput().get(2));
+
+            final Answer answer = new Answer();
+            // computed once on the unmodified ontology, afterwards answered without locking the context
+            final boolean entailed = oc.<Boolean>readOnly(new SimpleImmutableEntry<Object, Object>(ClassEntailmentReadOnlyAtom.class,
+                    Arrays.asList(cquery, individual)), base -> {
+                base.restoreBaseOntology();
+                return entailsClassAssertion(base, cquery, individual);
+            });
+            if( entailed )
+                answer.output(new ArrayList<ISymbol>());
+            return answer;
+        }
+    }
+
+    public class ObjectPropertyEntailmentReadOnlyAtom extends BaseAtom {
+        public ObjectPropertyEntailmentReadOnlyAtom() {
+            // dlOPEro[ontospec,property,subject,object]
+            // true iff the unmodified ontology entails property(subject,object)
+            super("dlOPEro", Arrays.asList(new InputType[] { InputType.CONSTANT, InputType.CONSTANT, InputType.CONSTANT }), 0);
+        }
+
+        @Override
+        public IAnswer retrieve(final ISolverContext ctx, final IQuery query) {
+            final String location = withoutQuotes(query.getInput().get(0).value());
+            final IOntologyContext oc = ontologyContext(ctx, location);
+            final OWLObjectProperty op = oc.compileObjectProperty(query.getInput().get(1).value());
+            final OWLNamedIndividual subject = individual(oc, query.getInput().get(2));
+            final OWLNamedIndividual object = individual(oc, query.getInput().get(3));
+
+            final Answer answer = new Answer();
+            // computed once on the unmodified ontology, afterwards answered without locking the context
+            final boolean entailed = oc.<Boolean>readOnly(new SimpleImmutableEntry<Object, Object>(ObjectPropertyEntailmentReadOnlyAtom.class,
+                    Arrays.asList(op, subject, object)), base -> {
+                base.restoreBaseOntology();
+                return entailsObjectPropertyAssertion(base, op, subject, object);
+            });
+            if( entailed )
+                answer.output(new ArrayList<ISymbol>());
+            return answer;
+        }
+    }
+
+    public class ModifiedOntologyClassEntailmentAtom extends ModifiedOntologyBaseAtom implements EntailmentTest {
+        public ModifiedOntologyClassEntailmentAtom() {
+            // dlCE[ontospec,deltapredicate,selector,class,individual]
+            // true iff the modified ontology is consistent and entails that individual is an instance of class
+            super("dlCE", Arrays.asList(new InputType[] { InputType.CONSTANT, InputType.CONSTANT }), 0);
+        }
+
+        @Override
+        public boolean entails(final IOntologyContext moc, final IQuery query, final List<ISymbol> output) {
+            final OWLClassExpression cquery = moc.compileClassExpression(query.getInput().get(3).value());
+            return entailsClassAssertion(moc, cquery, individual(moc, query.getInput().get(4)));
+        }
+
+        public Answer retrieveDetail(final ISolverContext ctx, final IQuery query, final IOntologyContext moc, final ModificationsContainer modcon) {
+            final Answer answer = new Answer();
+            // false if inconsistent, like dlC
+            if( moc.isConsistent() && entails(moc, query, null) )
+                answer.output(new ArrayList<ISymbol>());
+            return answer;
+        }
+    }
+
+    public class ModifiedOntologyObjectPropertyEntailmentAtom extends ModifiedOntologyBaseAtom implements EntailmentTest {
+        public ModifiedOntologyObjectPropertyEntailmentAtom() {
+            // dlOPE[ontospec,deltapredicate,selector,property,subject,object]
+            // true iff the modified ontology is consistent and entails property(subject,object)
+            super("dlOPE", Arrays.asList(new InputType[] { InputType.CONSTANT, InputType.CONSTANT, InputType.CONSTANT }), 0);
+        }
+
+        @Override
+        public boolean entails(final IOntologyContext moc, final IQuery query, final List<ISymbol> output) {
+            final OWLObjectProperty op = moc.compileObjectProperty(query.getInput().get(3).value());
+            return entailsObjectPropertyAssertion(moc, op, individual(moc, query.getInput().get(4)), individual(moc, query.getInput().get(5)));
+        }
+
+        public Answer retrieveDetail(final ISolverContext ctx, final IQuery query, final IOntologyContext moc, final ModificationsContainer modcon) {
+            final Answer answer = new Answer();
+            // false if inconsistent, like dlOP
+            if( moc.isConsistent() && entails(moc, query, null) )
+                answer.output(new ArrayList<ISymbol>());
+            return answer;
+        }
+    }
+
+    public class ClassBatchReadOnlyAtom extends BaseAtom {
+        public ClassBatchReadOnlyAtom(final boolean _simplifyOutput) {
+            // dlCBro[ontospec,classes](Class,Individual)
+            // instances of all given classes ("*": all classes) in the unmodified ontology
+            super(_simplifyOutput ? "dlCBroS" : "dlCBro", Arrays.asList(new InputType[] { InputType.CONSTANT }), 2, _simplifyOutput);
+        }
+
+        @Override
+        public IAnswer retrieve(final ISolverContext ctx, final IQuery query) {
+            final String location = withoutQuotes(query.getInput().get(0).value());
+            final IOntologyContext oc = ontologyContext(ctx, location);
+            final List<OWLClass> classes = oc.compileClasses(query.getInput().get(1).value());
+
+            final Answer answer = new Answer();
+            final ExtensionTables tables = oc.extensionTables();
+            if( tables != null ) {
+                for( final OWLClass cls : classes ) {
+                    final ISymbol c = storeEntity(ctx, oc, cls);
+                    tables.forEachInstance(cls, instance -> {
+                        final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                        t.add(c);
+                        t.add(storeIndividual(ctx, oc, instance));
+                        answer.output(t);
+                    });
+                }
+                return answer;
+            }
+            final List<OWLObject[]> assertions = oc.readOnly(new SimpleImmutableEntry<Object, Object>(ClassBatchReadOnlyAtom.class, classes), base -> {
+                final List<OWLObject[]> ret = new ArrayList<OWLObject[]>();
+                base.restoreBaseOntology();
+                forEachClassAssertion(base, classes, (cls, instance) -> ret.add(new OWLObject[] { cls, instance }));
+                return ret;
+            });
+            for( final OWLObject[] assertion : assertions ) {
+                final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                t.add(storeEntity(ctx, oc, (OWLClass) assertion[0]));
+                t.add(storeIndividual(ctx, oc, (OWLNamedIndividual) assertion[1]));
+                answer.output(t);
+            }
+            return answer;
+        }
+    }
+
+    public class ObjectPropertyBatchReadOnlyAtom extends BaseAtom {
+        public ObjectPropertyBatchReadOnlyAtom(final boolean _simplifyOutput) {
+            // dlOPBro[ontospec,properties](Property,Subject,Object)
+            // pairs of all given object properties ("*": all object properties) in the unmodified ontology
+            super(_simplifyOutput ? "dlOPBroS" : "dlOPBro", Arrays.asList(new InputType[] { InputType.CONSTANT }), 3, _simplifyOutput);
+        }
+
+        @Override
+        public IAnswer retrieve(final ISolverContext ctx, final IQuery query) {
+            final String location = withoutQuotes(query.getInput().get(0).value());
+            final IOntologyContext oc = ontologyContext(ctx, location);
+            final List<OWLObjectProperty> properties = oc.compileObjectProperties(query.getInput().get(1).value());
+
+            final Answer answer = new Answer();
+            final ExtensionTables tables = oc.extensionTables();
+            if( tables != null ) {
+                for( final OWLObjectProperty op : properties ) {
+                    final ISymbol p = storeEntity(ctx, oc, op);
+                    tables.forEachObjectPropertyPair(op, (subject, object) -> {
+                        final ArrayList<ISymbol> t = new ArrayList<ISymbol>(3);
+                        t.add(p);
+                        t.add(storeIndividual(ctx, oc, subject));
+                        t.add(storeIndividual(ctx, oc, object));
+                        answer.output(t);
+                    });
+                }
+                return answer;
+            }
+            final List<OWLObject[]> assertions = oc.readOnly(new SimpleImmutableEntry<Object, Object>(ObjectPropertyBatchReadOnlyAtom.class, properties), base -> {
+                final List<OWLObject[]> ret = new ArrayList<OWLObject[]>();
+                base.restoreBaseOntology();
+                forEachObjectPropertyAssertion(base, properties, (op, subject, object) -> ret.add(new OWLObject[] { op, subject, object }));
+                return ret;
+            });
+            for( final OWLObject[] assertion : assertions ) {
+                final ArrayList<ISymbol> t = new ArrayList<ISymbol>(3);
+                t.add(storeEntity(ctx, oc, (OWLObjectProperty) assertion[0]));
+                t.add(storeIndividual(ctx, oc, (OWLNamedIndividual) assertion[1]));
+                t.add(storeIndividual(ctx, oc, (OWLNamedIndividual) assertion[2]));
+                answer.output(t);
+            }
+            return answer;
+        }
+    }
+
+    public class ModifiedOntologyClassBatchAtom extends ModifiedOntologyBaseAtom implements EntailmentTest {
+        public ModifiedOntologyClassBatchAtom(final boolean _simplifyOutput) {
+            // dlCB[ontospec,deltapredicate,selector,classes](Class,Individual)
+            // instances of all given classes in the modified ontology, with one modification for all classes
+            super(_simplifyOutput ? "dlCBS" : "dlCB", Arrays.asList(new InputType[] { InputType.CONSTANT }), 2, _simplifyOutput);
+        }
+
+        @Override
+        public boolean entails(final IOntologyContext moc, final IQuery query, final List<ISymbol> output) {
+            return entailsClassAssertion(moc, moc.compileClass(output.get(0).value()), individual(moc, output.get(1)));
+        }
+
+        public Answer retrieveDetail(final ISolverContext ctx, final IQuery query, final IOntologyContext moc, final ModificationsContainer modcon) {
+            final List<OWLClass> classes = moc.compileClasses(query.getInput().get(3).value());
+            final Answer answer = new Answer();
+            // false if inconsistent, like dlC
+            if( !moc.isConsistent() )
+                return answer;
+            final Map<OWLClass, ISymbol> classSymbols = new HashMap<OWLClass, ISymbol>();
+            forEachClassAssertion(moc, classes, (cls, instance) -> {
+                final ArrayList<ISymbol> t = new ArrayList<ISymbol>(2);
+                t.add(classSymbols.computeIfAbsent(cls, c -> storeEntity(ctx, moc, c)));
+                t.add(storeIndividual(ctx, moc, instance));
+                answer.output(t);
+            });
+            return answer;
+        }
+    }
+
+    public class ModifiedOntologyObjectPropertyBatchAtom extends ModifiedOntologyBaseAtom implements EntailmentTest {
+        public ModifiedOntologyObjectPropertyBatchAtom(final boolean _simplifyOutput) {
+            // dlOPB[ontospec,deltapredicate,selector,properties](Property,Subject,Object)
+            // pairs of all given object properties in the modified ontology, with one modification for all properties
+            super(_simplifyOutput ? "dlOPBS" : "dlOPB", Arrays.asList(new InputType[] { InputType.CONSTANT }), 3, _simplifyOutput);
+        }
+
+        @Override
+        public boolean entails(final IOntologyContext moc, final IQuery query, final List<ISymbol> output) {
+            return entailsObjectPropertyAssertion(moc, moc.compileObjectProperty(output.get(0).value()),
+                individual(moc, output.get(1)), individual(moc, output.get(2)));
+        }
+
+        public Answer retrieveDetail(final ISolverContext ctx, final IQuery query, final IOntologyContext moc, final ModificationsContainer modcon) {
+            final List<OWLObjectProperty> properties = moc.compileObjectProperties(query.getInput().get(3).value());
+            final Answer answer = new Answer();
+            // false if inconsistent, like dlOP
+            if( !moc.isConsistent() )
+                return answer;
+            final Map<OWLObjectProperty, ISymbol> propertySymbols = new HashMap<OWLObjectProperty, ISymbol>();
+            forEachObjectPropertyAssertion(moc, properties, (op, subject, object) -> {
+                final ArrayList<ISymbol> t = new ArrayList<ISymbol>(3);
+                t.add(propertySymbols.computeIfAbsent(op, p -> storeEntity(ctx, moc, p)));
+                t.add(storeIndividual(ctx, moc, subject));
+                t.add(storeIndividual(ctx, moc, object));
+                answer.output(t);
+            });
+            return answer;
+        }
+    }
+
+    public class ConjunctiveQueryReadOnlyAtom extends BaseAtom {
+        public ConjunctiveQueryReadOnlyAtom(final int arity) {
+            // dlCQro<arity>[ontospec,query](X1,...,Xarity)
+            // answers of a conjunctive query with arity variables on the unmodified ontology
+            super("dlCQro" + arity, Arrays.asList(new InputType[] { InputType.CONSTANT }), arity);
+        }
+
+        @Override
+        public IAnswer retrieve(final ISolverContext ctx, final IQuery query) {
+            final String location = withoutQuotes(query.getInput().get(0).value());
+            final IOntologyContext oc = ontologyContext(ctx, location);
+            final ConjunctiveQuery cq = oc.compileConjunctiveQuery(query.getInput().get(1).value());
+
+            final Answer answer = new Answer();
+            if( cq == ConjunctiveQuery.INVALID )
+                return answer;
+            if( cq.arity() != getOutputArguments() ) {
+                LOGGER.error("{} needs a query with {} variables, but {} has variables {}",
+                    () -> getPredicate(), () -> getOutputArguments(), () -> query.getInput().get(1).value(), () -> cq.variables());
+                return answer;
+            }
+            // joined inside the plugin, only the answers are stored in the solver
+            final List<List<OWLObject>> answers = oc.readOnly(cq, base -> {
+                base.restoreBaseOntology();
+                return cq.evaluate(base);
+            });
+            for( final List<OWLObject> tuple : answers ) {
+                final ArrayList<ISymbol> t = new ArrayList<ISymbol>(tuple.size());
+                for( final OWLObject o : tuple ) {
+                    if( o instanceof OWLNamedIndividual )
+                        t.add(storeIndividual(ctx, oc, (OWLNamedIndividual) o));
+                    else
+                        t.add(storeLiteral(ctx, (OWLLiteral) o));
+                }
+                answer.output(t);
+            }
             return answer;
         }
     }
@@ -611,13 +1420,13 @@ public class OWLAPIPlugin implements IPlugin {
             final String location = withoutQuotes(query.getInput().get(0).value());
             final String iri = withoutQuotes(query.getInput().get(1).value());
             // LOGGER.info("{} retrieving with ontoURI={} and query {}", () -> getPredicate(), () -> location, () -> iri);
-            final IOntologyContext oc = ontologyContext(location);
+            final IOntologyContext oc = ontologyContext(ctx, location);
             final String simplified = oc.simplifyNamespaceIfPossible(iri);
             // LOGGER.debug("simplified to {}", () -> simplified);
 
             final Answer answer = new Answer();
             final ArrayList<ISymbol> t = new ArrayList<ISymbol>(1);
-            t.add(ctx.storeString(simplified));
+            t.add(storeString(ctx, simplified));
             answer.output(t);
             
             return answer;
@@ -630,17 +1439,69 @@ public class OWLAPIPlugin implements IPlugin {
 
     public AbstractCollection<IPluginAtom> createAtoms() {
         final LinkedList<IPluginAtom> atoms = new LinkedList<IPluginAtom>();
-        atoms.add(new ClassQueryReadOnlyAtom());
-        atoms.add(new ObjectPropertyReadOnlyQueryAtom());
-        atoms.add(new DataPropertyReadOnlyQueryAtom());
+        modifiedAtoms.clear();
+        for( final boolean simplify : new boolean[] { false, true } ) {
+            atoms.add(new ClassQueryReadOnlyAtom(simplify));
+            atoms.add(new ObjectPropertyReadOnlyQueryAtom(simplify));
+            atoms.add(new DataPropertyReadOnlyQueryAtom(simplify));
+            atoms.add(new ModifiedOntologyClassQueryAtom(simplify));
+            atoms.add(new ModifiedOntologyObjectPropertyQueryAtom(simplify));
+            atoms.add(new ModifiedOntologyDataPropertyQueryAtom(simplify));
+            atoms.add(new ClassBatchReadOnlyAtom(simplify));
+            atoms.add(new ObjectPropertyBatchReadOnlyAtom(simplify));
+            atoms.add(new ModifiedOntologyClassBatchAtom(simplify));
+            atoms.add(new ModifiedOntologyObjectPropertyBatchAtom(simplify));
+        }
         atoms.add(new ModifiedOntologyConsistentAtom());
-        atoms.add(new ModifiedOntologyClassQueryAtom());
-        atoms.add(new ModifiedOntologyObjectPropertyQueryAtom());
+        atoms.add(new ClassEntailmentReadOnlyAtom());
+        atoms.add(new ObjectPropertyEntailmentReadOnlyAtom());
+        atoms.add(new ModifiedOntologyClassEntailmentAtom());
+        atoms.add(new ModifiedOntologyObjectPropertyEntailmentAtom());
+        for( int arity = 1; arity <= 3; arity++ ) {
+            atoms.add(new ConjunctiveQueryReadOnlyAtom(arity));
+        }
+        for( final IPluginAtom atom : atoms ) {
+            if( atom instanceof ModifiedOntologyBaseAtom )
+                modifiedAtoms.put(atom.getPredicate(), atom);
+        }
         atoms.add(new SimplifyIRIAtom());
+        // with -Dhexlite.owlapi.metrics each atom records its calls
+        atoms.replaceAll(Metrics::measured);
         return atoms;        
     }
 
+    public AnswerCache answerCache(final ISolverContext ctx) {
+        return answerCaches.computeIfAbsent(ctx, k -> new AnswerCache(answerCacheEntries, answerCacheTuples));
+    }
+
     public void teardown() {
+        final List<AnswerCache> caches;
+        synchronized( answerCaches ) {
+            caches = new ArrayList<AnswerCache>(answerCaches.values());
+        }
+        LOGGER.info("answer cache: {} hits, {} misses, {} evictions, {} entries in {} solver contexts",
+            () -> caches.stream().mapToLong(AnswerCache::hits).sum(), () -> caches.stream().mapToLong(AnswerCache::misses).sum(),
+            () -> caches.stream().mapToLong(AnswerCache::evictions).sum(), () -> caches.stream().mapToInt(AnswerCache::size).sum(),
+            () -> caches.size());
+        LOGGER.info("symbol interning: {} strings stored, {} storeString calls avoided", () -> storedStrings.sum(), () -> avoidedStoreStrings.sum());
+        final long minimal = minimalNogoods.sum();
+        if( minimal > 0 )
+            LOGGER.info("minimal nogoods: {} learned with {} modifiers on average instead of {}, {} reasoner checks",
+                () -> minimal, () -> (double)minimalNogoodModifiers.sum() / minimal,
+                () -> (double)fullNogoodModifiers.sum() / minimal, () -> explanationChecks.sum());
+        if( warmupExecutor != null ) {
+            warmupExecutor.shutdownNow();
+            // preloaded ontologies that were never used
+            for( final CompletableFuture<IOntologyContext> warmup : warmups.values() ) {
+                if( warmup.isDone() && !warmup.isCompletedExceptionally() )
+                    warmup.join().teardown();
+            }
+        }
+        if( Metrics.ENABLED ) {
+            final Map<String, Long> flushes = new HashMap<String, Long>();
+            cachedContexts.forEach((location, oc) -> flushes.put(location, oc.flushes()));
+            Metrics.writeReport(flushes);
+        }
         for(IOntologyContext ctx : cachedContexts.values()) {
             ctx.teardown();
         }
@@ -3,10 +3,26 @@ package at.ac.tuwien.kr.hexlite;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,25 +32,119 @@ import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.EntityType;
 import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.io.OWLParserException;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLClassExpression;
 import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLDataPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
-import org.semanticweb.owlapi.model.parameters.ChangeApplied;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.profiles.OWL2RLProfile;
+import org.semanticweb.owlapi.profiles.OWLProfileReport;
+import org.semanticweb.owlapi.reasoner.InferenceType;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
 import org.semanticweb.owlapi.util.AutoIRIMapper;
+import org.semanticweb.owlapi.util.mansyntax.ManchesterOWLSyntaxParser;
+
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import uk.ac.manchester.cs.owlapi.modularity.SyntacticLocalityModuleExtractor;
+
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
 
 class OntologyContext implements IOntologyContext {
     private static final Logger LOGGER = LogManager.getLogger("Hexlite-OWLAPIPlugin");
+    // bound for each memo table (values beyond that are computed on every call)
+    private static final int MAX_MEMOIZED = 1 << 18;
+    // bound for the number of memoized read-only results (each can be as large as an extension)
+    static final int MAX_READ_ONLY = 1 << 12;
+    // bound for the number of cached module copies, and the largest module (relative to the ontology) that is used
+    private static final int MAX_MODULES = 16;
+    private static final double MAX_MODULE_FRACTION = 0.5;
     
     String _uri;
     HashMap<String, String> _namespaces;
+    NamespaceTrie _namespaceTrie;
+    // memoized results of expandNamespace and simplifyNamespaceIfPossible
+    ConcurrentHashMap<String, String> _expanded;
+    ConcurrentHashMap<String, String> _simplified;
+    // compiled query constants
+    ConcurrentHashMap<String, OWLClass> _classQueries;
+    ConcurrentHashMap<String, OWLObjectProperty> _objectPropertyQueries;
+    ConcurrentHashMap<String, OWLDataProperty> _dataPropertyQueries;
+    // compiled Manchester syntax class expressions and conjunctive queries
+    ConcurrentHashMap<String, OWLClassExpression> _classExpressionQueries;
+    ConcurrentHashMap<String, ConjunctiveQuery> _conjunctiveQueries;
+    // compiled lists of classes and object properties for batch queries
+    ConcurrentHashMap<String, List<OWLClass>> _classListQueries;
+    ConcurrentHashMap<String, List<OWLObjectProperty>> _objectPropertyListQueries;
+    // compiled delta modifiers by their value (shared with forks, switchToModification only uses the axioms of the changes)
+    ConcurrentHashMap<String, List<OWLOntologyChange>> _modifiers;
+    // the ontology is modified in place, all accesses to its current state are serialized
+    ReentrantLock _lock;
+    // results of read-only queries on the unmodified ontology (each computed by the first caller, the others wait for it)
+    ConcurrentHashMap<Object, FutureTask<Object>> _readOnly;
     OWLDataFactory _df;
     OWLOntologyManager _manager;
     OWLOntology _ontology;
     OWLReasoner _reasoner;
+    OWLReasoner _structuralReasoner;
+    RLMaterializer _materializer;
+    // which queries can be answered by the structural reasoner (only in auto mode)
+    ReasonerRouting _routing;
+    boolean _structuralOnly;
+    // precomputed extensions for read-only queries (only if enabled in the meta file)
+    boolean _useExtensionTables;
+    volatile ExtensionTables _extensionTables;
+    // told property hierarchy (modifications never change it)
+    volatile PropertyExtensions _propertyExtensions;
+    // conversion of data property values (datatype ranges are part of the TBox, which modifications never change)
+    volatile LiteralCodec _literalCodec;
+    // nogoods over minimal sets of modifications (only if enabled in the meta file)
+    boolean _minimalNogoods;
+    ReasonerRouting _clashAnalysis;
+    // known consistency of sets of added axioms
+    ConsistencyOracle _consistencyOracle;
+    // the currently applied modification: axioms added to resp. removed from the base ontology
+    Set<OWLAxiom> _addedAxioms;
+    // some added axiom may cause a clash (then the routing to StructuralReasoner is not complete)
+    boolean _addedMayClash;
+    Set<OWLAxiom> _removedAxioms;
+    // the reasoner is flushed lazily on the next query after a modification
+    boolean _reasonerDirty;
+    long _flushes;
+    // snapshot of the loaded ontology (only if configured in the meta file)
+    OntologySnapshot _snapshot;
+    boolean _snapshotOutdated;
+    // forks for modified-ontology calls (only if "pool-size" > 1 in the meta file)
+    // each fork has its own copy of the ontology and its own reasoner
+    OntologyContext _parent;
+    int _poolSize;
+    LinkedBlockingQueue<OntologyContext> _idleForks;
+    List<OntologyContext> _forks;
+    // locality-based modules (only if "modules": true in the meta file): copies of the modules of the base ontology
+    // by signature of the queried entailment and the added axioms (with their individuals), least recently used first;
+    // this context itself stands for modules that are too large to be worth a copy
+    boolean _useModules;
+    SyntacticLocalityModuleExtractor _moduleExtractor;
+    long _baseLogicalAxioms;
+    LinkedHashMap<Set<OWLEntity>, OntologyContext> _modules;
+    long _moduleQueries;
+    // module signature of the added axioms while pinned (see pinModuleSignature), null otherwise
+    Set<OWLEntity> _pinnedSignature;
     
     private String extendURI(final String uri) {
         if (uri.indexOf("://") == -1) {
@@ -61,6 +171,29 @@ class OntologyContext implements IOntologyContext {
         return null;
     }
     
+    // send each query to the cheapest reasoner that is complete for it (decided once at load time)
+    private void configureAutomaticRouting() {
+        _routing = ReasonerRouting.analyze(_ontology);
+        if( _routing.isTrivial() ) {
+            LOGGER.info("reasoner routing for {}: no inferences beyond the told hierarchy, "
+                + "class queries and consistency checks use StructuralReasoner, property queries use HermiT", () -> _uri);
+        } else if( (_materializer = createMaterializerIfInProfile()) != null ) {
+            _routing = null;
+            LOGGER.info("reasoner routing for {}: ontology is in OWL 2 RL, "
+                + "class and object property queries and consistency checks use the RL materializer, data property queries use HermiT", () -> _uri);
+        } else {
+            LOGGER.info("reasoner routing for {}: consistency checks use {}, queries for {} classes use HermiT, "
+                + "other class queries use StructuralReasoner, property queries use HermiT",
+                () -> _uri, () -> _routing.isClashFree() ? "StructuralReasoner" : "HermiT", () -> _routing.inferredClassCount() < 0 ? "all" : _routing.inferredClassCount());
+        }
+    }
+
+    // RL materializer if the ontology is in the OWL 2 RL profile (the profile is only checked once)
+    private RLMaterializer createMaterializerIfInProfile() {
+        final OWLProfileReport report = new OWL2RLProfile().checkOntology(_ontology);
+        return report.isInProfile() ? RLMaterializer.create(_ontology, _df, report) : null;
+    }
+
     public OntologyContext(final String metafile) {
         final JSONObject meta = loadMetaFile(metafile);
         
@@ -82,20 +215,244 @@ class OntologyContext implements IOntologyContext {
                 }
             }
         }
+        _namespaceTrie = new NamespaceTrie(_namespaces);
+        _expanded = new ConcurrentHashMap<String, String>();
+        _simplified = new ConcurrentHashMap<String, String>();
+        _classQueries = new ConcurrentHashMap<String, OWLClass>();
+        _objectPropertyQueries = new ConcurrentHashMap<String, OWLObjectProperty>();
+        _dataPropertyQueries = new ConcurrentHashMap<String, OWLDataProperty>();
+        _classExpressionQueries = new ConcurrentHashMap<String, OWLClassExpression>();
+        _conjunctiveQueries = new ConcurrentHashMap<String, ConjunctiveQuery>();
+        _classListQueries = new ConcurrentHashMap<String, List<OWLClass>>();
+        _objectPropertyListQueries = new ConcurrentHashMap<String, List<OWLObjectProperty>>();
+        _modifiers = new ConcurrentHashMap<String, List<OWLOntologyChange>>();
+        _lock = new ReentrantLock();
+        _readOnly = new ConcurrentHashMap<Object, FutureTask<Object>>();
         _df = OWLManager.getOWLDataFactory();
         _manager = OWLManager.createOWLOntologyManager();
+        // "reasoner" selects how queries are answered: hermit (default), structural, rl, or auto
+        final String reasonerMode = meta.containsKey("reasoner") ? (String) meta.get("reasoner") : "hermit";
+
+        // "snapshot": path of a binary snapshot of the ontology and its extension tables, reused while the input files are unchanged
+        _snapshot = null;
+        OntologySnapshot.Loaded snapshot = null;
+        if( meta.get("snapshot") instanceof String ) {
+            if( _uri.startsWith("file:") ) {
+                _snapshot = new OntologySnapshot(Paths.get(URI.create(extendURI((String) meta.get("snapshot")))), reasonerMode);
+                snapshot = _snapshot.load(_manager, _df, Paths.get(URI.create(_uri)));
+            } else {
+                LOGGER.warn("ignoring snapshot for {}: only ontologies loaded from files can be snapshotted", () -> _uri);
+            }
+        }
+
+        if( snapshot != null ) {
+            _ontology = snapshot.ontology;
+        } else {
+            // make dependency ontologies auto-loadable from current directory
+            final File file = new File(System.getProperty("user.dir"));
+            _manager.getIRIMappers().add(new AutoIRIMapper(file, true));
+
+            try {
+                _ontology = _manager.loadOntology(IRI.create(_uri));
+            } catch (final OWLOntologyCreationException e) {
+                System.err.println("could not load ontology " + _uri + " with exception " + e.toString());
+            }
+        }
         
-        // make dependency ontologies auto-loadable from current directory
-        final File file = new File(System.getProperty("user.dir"));
-        _manager.getIRIMappers().add(new AutoIRIMapper(file, true));
-        
+        _reasoner = null;
+        _materializer = null;
+        _structuralReasoner = null;
+        _routing = null;
+        _structuralOnly = false;
+        switch( reasonerMode ) {
+        case "hermit":
+            break;
+        case "structural":
+            LOGGER.warn("using StructuralReasoner for {}: answers are incomplete if the ontology requires inferences", () -> _uri);
+            _structuralOnly = true;
+            break;
+        case "rl":
+            _materializer = RLMaterializer.create(_ontology, _df);
+            if( _materializer == null ) LOGGER.warn("cannot use RL materializer for {}, using HermiT", () -> _uri);
+            break;
+        case "auto":
+            configureAutomaticRouting();
+            break;
+        default:
+            LOGGER.error("unknown reasoner '{}' in {} (can be auto, hermit, structural, or rl) - using HermiT", () -> reasonerMode, () -> metafile);
+        }
+        // "extension-tables": true answers read-only queries from extensions that are computed once
+        _useExtensionTables = Boolean.TRUE.equals(meta.get("extension-tables"));
+        _extensionTables = _useExtensionTables && snapshot != null ? snapshot.tables : null;
+        // the snapshot is (re)written if it is missing, outdated, or lacks the extension tables:
+        // as soon as its content is complete (see writeSnapshotIfComplete), otherwise at teardown
+        _snapshotOutdated = _snapshot != null && (snapshot == null || (_useExtensionTables && snapshot.tables == null));
+        _propertyExtensions = null;
+        _literalCodec = null;
+        // "minimal-nogoods": true explains inconsistencies and entailments by minimal sets of modifications
+        _minimalNogoods = Boolean.TRUE.equals(meta.get("minimal-nogoods"));
+        _clashAnalysis = null;
+        // size the store with -Dhexlite.owlapi.consistencysets=N (0 disables it)
+        final int consistencySets = Integer.getInteger("hexlite.owlapi.consistencysets", ConsistencyOracle.DEFAULT_MAX_SETS);
+        _consistencyOracle = consistencySets > 0 ? new ConsistencyOracle(consistencySets) : null;
+        _addedAxioms = new HashSet<OWLAxiom>();
+        _removedAxioms = new HashSet<OWLAxiom>();
+        _reasonerDirty = false;
+        _flushes = 0;
+        _parent = null;
+        // "pool-size": N evaluates up to N modified-ontology calls in parallel, each on its own copy of the ontology
+        _poolSize = meta.get("pool-size") instanceof Number ? ((Number) meta.get("pool-size")).intValue() : 1;
+        _idleForks = new LinkedBlockingQueue<OntologyContext>();
+        _forks = new ArrayList<OntologyContext>();
+        // "modules": true answers queries and consistency checks from the locality-based module of their signature
+        _useModules = Boolean.TRUE.equals(meta.get("modules"));
+        if( _useModules && (_structuralOnly || _materializer != null) ) {
+            LOGGER.warn("ignoring modules for {}: only used with HermiT", () -> _uri);
+            _useModules = false;
+        }
+        _modules = _useModules ? createModuleCache() : null;
+        _pinnedSignature = null;
+        writeSnapshotIfComplete();
+    }
+
+    // copy of the unmodified ontology of parent with its own manager and reasoner (the caller holds the lock of parent)
+    // configuration, namespaces, compiled queries, and the consistency oracle are shared with parent
+    private OntologyContext(final OntologyContext parent) throws OWLOntologyCreationException {
+        this(parent, null);
+    }
+
+    // copy of module (a module of the unmodified ontology of parent, see moduleReasoner) if it is not null;
+    // a module copy always uses HermiT and has neither forks nor modules of its own
+    private OntologyContext(final OntologyContext parent, final Set<OWLAxiom> module) throws OWLOntologyCreationException {
+        _parent = parent;
+        _uri = parent._uri;
+        _namespaces = parent._namespaces;
+        _namespaceTrie = parent._namespaceTrie;
+        _expanded = parent._expanded;
+        _simplified = parent._simplified;
+        _classQueries = parent._classQueries;
+        _objectPropertyQueries = parent._objectPropertyQueries;
+        _dataPropertyQueries = parent._dataPropertyQueries;
+        _classExpressionQueries = parent._classExpressionQueries;
+        _conjunctiveQueries = parent._conjunctiveQueries;
+        _classListQueries = parent._classListQueries;
+        _objectPropertyListQueries = parent._objectPropertyListQueries;
+        _modifiers = parent._modifiers;
+        _lock = new ReentrantLock();
+        _readOnly = parent._readOnly;
+        _df = parent._df;
+        _manager = OWLManager.createOWLOntologyManager();
+        if( module == null ) {
+            parent.restoreBaseOntology();
+            // a fork needs its own ontology: it applies its own delta while parent and the other forks apply theirs,
+            // OWLOntology is not safe for concurrent modification, and HermiT reads the ontology it reasons on;
+            // the copy is made once per fork (forks are reused, later calls only apply their delta to it),
+            // and the imports closure is copied into a single ontology
+            _ontology = _manager.createOntology(parent._ontology.axioms(Imports.INCLUDED));
+        } else {
+            _ontology = _manager.createOntology(module.stream());
+        }
+        _reasoner = null;
+        _structuralReasoner = null;
+        // the materialization of the base ontology is copied, not computed again
+        _materializer = module == null && parent._materializer != null ? parent._materializer.copy() : null;
+        _routing = module == null ? parent._routing : null;
+        _structuralOnly = module == null && parent._structuralOnly;
+        _useExtensionTables = false;
+        _extensionTables = null;
+        _propertyExtensions = parent.propertyExtensions();
+        _literalCodec = parent.literalCodec();
+        _minimalNogoods = parent._minimalNogoods;
+        _clashAnalysis = null;
+        _consistencyOracle = parent._consistencyOracle;
+        _addedAxioms = new HashSet<OWLAxiom>();
+        _removedAxioms = new HashSet<OWLAxiom>();
+        _reasonerDirty = false;
+        _flushes = 0;
+        _snapshot = null;
+        _snapshotOutdated = false;
+        _poolSize = 1;
+        _idleForks = null;
+        _forks = null;
+        _useModules = module == null && parent._useModules;
+        _modules = _useModules ? createModuleCache() : null;
+        _pinnedSignature = null;
+    }
+
+    private LinkedHashMap<Set<OWLEntity>, OntologyContext> createModuleCache() {
+        return new LinkedHashMap<Set<OWLEntity>, OntologyContext>(2 * MAX_MODULES, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Set<OWLEntity>, OntologyContext> eldest) {
+                if( size() <= MAX_MODULES )
+                    return false;
+                if( eldest.getValue() != OntologyContext.this )
+                    eldest.getValue().teardown();
+                return true;
+            }
+        };
+    }
+
+    public IOntologyContext checkout() {
+        if( _poolSize <= 1 ) {
+            _lock.lock();
+            return this;
+        }
+        OntologyContext fork = _idleForks.poll();
+        if( fork == null ) {
+            boolean create = false;
+            synchronized( _forks ) {
+                if( _forks.size() < _poolSize ) {
+                    // reserve the slot, the fork is created outside of this monitor
+                    _forks.add(null);
+                    create = true;
+                }
+            }
+            if( create ) {
+                fork = createFork();
+            } else {
+                try {
+                    fork = _idleForks.take();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for a copy of ontology " + _uri, e);
+                }
+            }
+        }
+        fork._lock.lock();
+        return fork;
+    }
+
+    private OntologyContext createFork() {
+        final long start = System.currentTimeMillis();
+        _lock.lock();
         try {
-            _ontology = _manager.loadOntology(IRI.create(_uri));
+            final OntologyContext fork = new OntologyContext(this);
+            synchronized( _forks ) {
+                _forks.set(_forks.indexOf(null), fork);
+            }
+            LOGGER.info("ontology {}: created copy {} of {} in {} ms", () -> _uri, () -> _forks.size(), () -> _poolSize,
+                () -> System.currentTimeMillis() - start);
+            return fork;
         } catch (final OWLOntologyCreationException e) {
-            System.err.println("could not load ontology " + _uri + " with exception " + e.toString());
+            synchronized( _forks ) {
+                _forks.remove(null);
+            }
+            throw new IllegalStateException("could not copy ontology " + _uri, e);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public void checkin(final IOntologyContext checkedOut) {
+        if( checkedOut == this ) {
+            _lock.unlock();
+        } else {
+            final OntologyContext fork = (OntologyContext) checkedOut;
+            fork._lock.unlock();
+            _idleForks.offer(fork);
         }
-        
-        _reasoner = null;
     }
     
     public OWLDataFactory df() {
@@ -112,69 +469,657 @@ class OntologyContext implements IOntologyContext {
             
             org.semanticweb.HermiT.Configuration cfg = new org.semanticweb.HermiT.Configuration();
             _reasoner = new org.semanticweb.HermiT.Reasoner(cfg, _ontology);
-            if( !_reasoner.isConsistent() ) LOGGER.warn("created inconsistent reasoner: check base ontology");
+            _reasonerDirty = false;
+            if( isUnmodified() && !_reasoner.isConsistent() ) LOGGER.warn("created inconsistent reasoner: check base ontology");
+        } else if( _reasonerDirty ) {
+            // synchronize reasoner
+            final long start = Metrics.start();
+            try {
+                _reasoner.flush();
+            } catch (final IllegalArgumentException e) {
+                // HermiT cannot add assertions of classes that are not in the loaded ontology (e.g. owl:Nothing)
+                // incrementally, the reasoner is created again for the modified ontology
+                LOGGER.debug("recreating reasoner for {} after failed flush: {}", () -> _uri, () -> e.getMessage());
+                _reasoner.dispose();
+                _reasoner = new org.semanticweb.HermiT.Reasoner(new org.semanticweb.HermiT.Configuration(), _ontology);
+            }
+            Metrics.record(Metrics.Phase.FLUSH, start);
+            _reasonerDirty = false;
+            _flushes++;
         }
         return _reasoner;
     }
+
+    private OWLReasoner structuralReasoner() {
+        if( _structuralReasoner == null ) {
+            // non-buffering: sees modifications without flush
+            _structuralReasoner = new StructuralReasonerFactory().createNonBufferingReasoner(_ontology);
+        }
+        return _structuralReasoner;
+    }
+
+    public OWLReasoner reasonerFor(final OWLObject queried) {
+        if( _structuralOnly )
+            return structuralReasoner();
+        if( _routing != null && !_addedMayClash ) {
+            // class expressions other than class names always go to HermiT
+            final OWLObject routed = queried instanceof OWLClassAssertionAxiom ? ((OWLClassAssertionAxiom) queried).getClassExpression() : queried;
+            final boolean structural = routed == null ? _routing.isClashFree()
+                : (routed instanceof OWLClass && _routing.isStructurallyComplete((OWLClass) routed));
+            if( structural )
+                return structuralReasoner();
+        }
+        return moduleOrFullReasoner(queried == null ? Collections.<OWLObject>emptyList() : Collections.singletonList(queried));
+    }
+
+    public OWLReasoner reasonerForAll(final Collection<? extends OWLObject> queried) {
+        if( queried.size() == 1 )
+            return reasonerFor(queried.iterator().next());
+        if( _structuralOnly )
+            return structuralReasoner();
+        if( _routing != null && !_addedMayClash && queried.stream().allMatch(q -> q instanceof OWLClass && _routing.isStructurallyComplete((OWLClass) q)) )
+            return structuralReasoner();
+        return moduleOrFullReasoner(queried);
+    }
+
+    private OWLReasoner moduleOrFullReasoner(final Collection<? extends OWLObject> queried) {
+        if( _useModules ) {
+            final OWLReasoner module = moduleReasoner(queried);
+            if( module != null )
+                return module;
+        }
+        return reasoner();
+    }
+
+    // HermiT for the module of the current modification for the entailment queried (null: use the full ontology)
+    //
+    // the seed signature S is the signature of the added axioms A (with their individuals) and of the queried axiom;
+    // the syntactic locality module M of the base ontology O for S is model-conservative: every model of M + A extends
+    // to a model of O + A (the axioms of O that are not in M stay local), so M + A is consistent iff O + A is,
+    // and M + A entails an axiom over S (such as a class or property assertion of individuals in S) iff O + A does;
+    // removing axioms only shrinks the module
+    // instances and property pairs are about individuals outside S: classes and properties (enumeration queries)
+    // and data property values (their datatypes are not in S) always use the full ontology
+    private OWLReasoner moduleReasoner(final Collection<? extends OWLObject> queried) {
+        final Set<OWLEntity> signature = new HashSet<OWLEntity>();
+        for( final OWLObject q : queried ) {
+            if( !(q instanceof OWLAxiom) || q instanceof OWLDataPropertyAssertionAxiom )
+                return null;
+            q.signature().forEach(signature::add);
+        }
+        if( _pinnedSignature != null ) {
+            // the added axioms are a subset of those when the signature was pinned
+            signature.addAll(_pinnedSignature);
+        } else {
+            addedSignature(signature);
+        }
+        OntologyContext module = _modules.get(signature);
+        if( module == null ) {
+            module = createModule(signature);
+            _modules.put(signature, module);
+        }
+        if( module == this )
+            return null;
+        final List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>(_addedAxioms.size() + _removedAxioms.size());
+        for( final OWLAxiom a : _addedAxioms ) {
+            changes.add(new AddAxiom(module._ontology, a));
+        }
+        for( final OWLAxiom r : _removedAxioms ) {
+            changes.add(new RemoveAxiom(module._ontology, r));
+        }
+        module.switchToModification(changes);
+        final long flushes = module._flushes;
+        final OWLReasoner reasoner = module.reasoner();
+        _flushes += module._flushes - flushes;
+        _moduleQueries++;
+        return reasoner;
+    }
+
+    private void addedSignature(final Set<OWLEntity> signature) {
+        for( final OWLAxiom a : _addedAxioms ) {
+            a.signature().forEach(signature::add);
+        }
+    }
+
+    public void pinModuleSignature() {
+        if( _useModules ) {
+            _pinnedSignature = new HashSet<OWLEntity>();
+            addedSignature(_pinnedSignature);
+        }
+    }
+
+    public void releaseModuleSignature() {
+        _pinnedSignature = null;
+    }
+
+    // copy of the STAR module of the base ontology for signature, or this if the module is too large
+    private OntologyContext createModule(final Set<OWLEntity> signature) {
+        final long start = System.currentTimeMillis();
+        if( _moduleExtractor == null ) {
+            // the base ontology is the current one without the added and with the removed axioms
+            final List<OWLAxiom> base = Stream.concat(
+                _ontology.axioms(Imports.INCLUDED).filter(a -> !_addedAxioms.contains(a)), _removedAxioms.stream())
+                .collect(Collectors.toList());
+            _moduleExtractor = new SyntacticLocalityModuleExtractor(_manager, base.stream(), ModuleType.STAR);
+            _baseLogicalAxioms = base.stream().filter(OWLAxiom::isLogicalAxiom).count();
+        }
+        final Set<OWLAxiom> module = new HashSet<OWLAxiom>(_moduleExtractor.extract(signature));
+        final long logicalAxioms = module.stream().filter(OWLAxiom::isLogicalAxiom).count();
+        if( logicalAxioms > MAX_MODULE_FRACTION * _baseLogicalAxioms ) {
+            LOGGER.debug("module of {} for {} has {} of {} logical axioms, using the full ontology",
+                () -> _uri, () -> signature, () -> logicalAxioms, () -> _baseLogicalAxioms);
+            return this;
+        }
+        // declarations keep entities without axioms in the module (e.g., queried individuals are instances of owl:Thing)
+        for( final OWLEntity e : signature ) {
+            if( !e.isBuiltIn() )
+                module.add(_df.getOWLDeclarationAxiom(e));
+        }
+        try {
+            final OntologyContext copy = new OntologyContext(this, module);
+            LOGGER.info("ontology {}: module with {} of {} logical axioms for {} in {} ms", () -> _uri, () -> logicalAxioms,
+                () -> _baseLogicalAxioms, () -> signature, () -> System.currentTimeMillis() - start);
+            return copy;
+        } catch (final OWLOntologyCreationException e) {
+            LOGGER.warn("could not copy module of ontology {}, using the full ontology: {}", () -> _uri, () -> e.toString());
+            return this;
+        }
+    }
+
+    public OWLReasoner baseReasonerFor(final OWLObject queried) {
+        restoreBaseOntology();
+        return reasonerFor(queried);
+    }
+
+    public Lock lock() {
+        return _lock;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T readOnly(final Object key, final Function<IOntologyContext, T> compute) {
+        FutureTask<Object> task = _readOnly.get(key);
+        if( task == null ) {
+            // computed on an exclusive context: with a pool, misses do not wait for each other or for modified-ontology calls
+            final FutureTask<Object> created = new FutureTask<Object>(() -> {
+                final IOntologyContext exclusive = checkout();
+                try {
+                    return compute.apply(exclusive);
+                } finally {
+                    checkin(exclusive);
+                }
+            });
+            task = _readOnly.size() < MAX_READ_ONLY ? _readOnly.putIfAbsent(key, created) : created;
+            if( task == null )
+                task = created;
+            // does nothing if another thread already runs or ran the task
+            task.run();
+        }
+        try {
+            return (T) task.get();
+        } catch (final ExecutionException e) {
+            // not memoized, the next call computes again
+            _readOnly.remove(key, task);
+            if( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException) e.getCause();
+            if( e.getCause() instanceof Error )
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a read-only query on ontology " + _uri, e);
+        }
+    }
+
+    public ExtensionTables extensionTables() {
+        if( _useExtensionTables && _extensionTables == null ) {
+            _lock.lock();
+            try {
+                if( _extensionTables == null ) {
+                    _extensionTables = ExtensionTables.build(this);
+                    writeSnapshotIfComplete();
+                }
+            } finally {
+                _lock.unlock();
+            }
+        }
+        return _extensionTables;
+    }
+
+    // writes a missing or outdated snapshot once everything it stores is available (the ontology, and the
+    // extension tables if enabled), so that runs that are aborted before teardown still leave a snapshot
+    private void writeSnapshotIfComplete() {
+        if( !_snapshotOutdated || _ontology == null || (_useExtensionTables && _extensionTables == null) )
+            return;
+        _lock.lock();
+        try {
+            restoreBaseOntology();
+            _snapshot.write(_manager, _ontology, _extensionTables);
+            _snapshotOutdated = false;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public RLMaterializer materializer() {
+        return _materializer;
+    }
+
+    public PropertyExtensions propertyExtensions() {
+        if( _propertyExtensions == null ) {
+            _lock.lock();
+            try {
+                if( _propertyExtensions == null ) _propertyExtensions = new PropertyExtensions(_ontology);
+            } finally {
+                _lock.unlock();
+            }
+        }
+        return _propertyExtensions;
+    }
+
+    public LiteralCodec literalCodec() {
+        if( _literalCodec == null ) {
+            _lock.lock();
+            try {
+                if( _literalCodec == null ) _literalCodec = LiteralCodec.create(_ontology, _df);
+            } finally {
+                _lock.unlock();
+            }
+        }
+        return _literalCodec;
+    }
+
+    public OWLReasoner baseReasoner() {
+        restoreBaseOntology();
+        return reasoner();
+    }
     
     public OWLOntology ontology() {
         return _ontology;
     }
+
+    public boolean minimalNogoods() {
+        return _minimalNogoods;
+    }
+
+    public boolean isConsistent() {
+        // monotonicity only holds if nothing is removed from the base ontology
+        final boolean addOnly = _removedAxioms.isEmpty() && _consistencyOracle != null;
+        if( addOnly ) {
+            final Boolean known = _consistencyOracle.lookup(_addedAxioms);
+            if( known != null )
+                return known;
+        }
+        final boolean consistent = _materializer != null ? _materializer.isConsistent() : reasonerFor(null).isConsistent();
+        if( addOnly )
+            _consistencyOracle.record(_addedAxioms, consistent);
+        return consistent;
+    }
+
+    public boolean isClashFree() {
+        if( _routing != null )
+            return _routing.isClashFree();
+        if( _parent != null )
+            return _parent.isClashFree();
+        if( _clashAnalysis == null ) {
+            _lock.lock();
+            try {
+                restoreBaseOntology();
+                _clashAnalysis = ReasonerRouting.analyze(_ontology);
+            } finally {
+                _lock.unlock();
+            }
+        }
+        return _clashAnalysis.isClashFree();
+    }
     
     public String namespace(final String key) {
         return _namespaces.get(key);
     }
     
     public String expandNamespace(final String value) {
+        String ret = _expanded.get(value);
+        if (ret == null) {
+            ret = computeExpandedNamespace(value);
+            if (_expanded.size() < MAX_MEMOIZED) _expanded.put(value, ret);
+        }
+        return ret;
+    }
+
+    private String computeExpandedNamespace(final String value) {
         final int idx = value.indexOf(":");
-        if (idx == -1 || (value.length() > idx && value.charAt(idx + 1) == '/')) {
+        if (idx == -1 || (value.length() > idx + 1 && value.charAt(idx + 1) == '/')) {
             // no namespace
             return value;
         } else {
             final String prefix = value.substring(0, idx);
-            final String suffix = value.substring(idx + 1);
-            //LOGGER.debug("expandNamespace got prefix " + prefix + " and suffix " + suffix);
-            String ret = value;
-            if (_namespaces.containsKey(prefix)) {
-                ret = namespace(prefix) + suffix;
-            } else {
+            //LOGGER.debug("expandNamespace got prefix " + prefix + " and suffix " + value.substring(idx + 1));
+            final String namespace = namespace(prefix);
+            if (namespace == null) {
+                // memoization makes sure we warn only once per value
                 LOGGER.warn("encountered unknown prefix " + prefix);
+                return value;
             }
-            //LOGGER.debug("expandNamespace changed " + value + " to " + ret);
-            return ret;
+            return namespace + value.substring(idx + 1);
         }
     }
     
     public String simplifyNamespaceIfPossible(final String value) {
-        for (final Map.Entry<String, String> entry : _namespaces.entrySet()) {
-            if (value.startsWith(entry.getValue())) {
-                return entry.getKey() + ":" + value.substring(entry.getValue().length());
-            }
+        String ret = _simplified.get(value);
+        if (ret == null) {
+            // the longest matching namespace gives the shortest name
+            final NamespaceTrie.Match match = _namespaceTrie.longestPrefix(value);
+            ret = match == null ? value : match.key + ":" + value.substring(match.length);
+            if (_simplified.size() < MAX_MEMOIZED) _simplified.put(value, ret);
         }
-        return value;
+        return ret;
     }
     
-    public void applyChanges(List<? extends OWLOntologyChange> changes) {
-        _manager.applyChanges(changes);
-        //ChangeApplied ca = _manager.applyChanges(changes);
-        //LOGGER.info("applyChange "+ca+" for "+changes.toString());
-        // synchronize reasoner
-        if( _reasoner != null ) _reasoner.flush();
+    private <T extends OWLEntity> T compile(final ConcurrentHashMap<String, T> compiled, final String constant, final EntityType<T> type) {
+        T entity = compiled.get(constant);
+        if (entity == null) {
+            final String unquoted = unquote(constant);
+            entity = _df.getOWLEntity(type, IRI.create(expandNamespace(unquoted)));
+            if (!entity.isBuiltIn() && _ontology != null && !containsEntityInSignature(entity)) {
+                // reported once per query constant because the result is cached
+                final T unknown = entity;
+                LOGGER.warn("query {} refers to {} {} which does not occur in ontology {}",
+                    () -> constant, () -> type.getPrintName().toLowerCase(), () -> unknown.getIRI(), () -> _uri);
+            }
+            compiled.put(constant, entity);
+        }
+        return entity;
     }
-    public void revertChanges(List<? extends OWLOntologyChange> changes) {
-        List<OWLOntologyChange> reversed = new ArrayList<OWLOntologyChange>(changes.size());
-        for(OWLOntologyChange c : changes) {
-            reversed.add(c.reverseChange());
+
+    private boolean containsEntityInSignature(final OWLEntity entity) {
+        _lock.lock();
+        try {
+            return _ontology.containsEntityInSignature(entity, Imports.INCLUDED);
+        } finally {
+            _lock.unlock();
         }
-        _manager.applyChanges(reversed);
-        //ChangeApplied ca = _manager.applyChanges(reversed);
-        //LOGGER.info("revertChange "+ca+" for "+changes.toString());
-        // synchronize reasoner
-        if( _reasoner != null ) _reasoner.flush();
+    }
+
+    public OWLClass compileClass(final String constant) {
+        return compile(_classQueries, constant, EntityType.CLASS);
+    }
+
+    public OWLObjectProperty compileObjectProperty(final String constant) {
+        return compile(_objectPropertyQueries, constant, EntityType.OBJECT_PROPERTY);
+    }
+
+    public OWLDataProperty compileDataProperty(final String constant) {
+        return compile(_dataPropertyQueries, constant, EntityType.DATA_PROPERTY);
+    }
+
+    // "*" or names separated by commas or whitespace
+    @SuppressWarnings("unchecked")
+    private <T extends OWLEntity> List<T> compileList(final ConcurrentHashMap<String, List<T>> compiled,
+            final ConcurrentHashMap<String, T> compiledNames, final String constant, final EntityType<T> type) {
+        List<T> entities = compiled.get(constant);
+        if (entities == null) {
+            final String unquoted = unquote(constant).trim();
+            if (unquoted.equals("*")) {
+                // all non-builtin entities of the signature (modifications do not change the vocabulary that matters)
+                _lock.lock();
+                try {
+                    entities = _ontology.signature(Imports.INCLUDED)
+                        .filter(e -> e.isType(type) && !e.isBuiltIn())
+                        .map(e -> (T) e)
+                        .distinct()
+                        .collect(Collectors.toList());
+                } finally {
+                    _lock.unlock();
+                }
+            } else {
+                entities = new ArrayList<T>();
+                for (final String name : unquoted.split("[,\\s]+")) {
+                    if (!name.isEmpty())
+                        entities.add(compile(compiledNames, name, type));
+                }
+            }
+            entities = Collections.unmodifiableList(entities);
+            compiled.put(constant, entities);
+        }
+        return entities;
+    }
+
+    public List<OWLClass> compileClasses(final String constant) {
+        return compileList(_classListQueries, _classQueries, constant, EntityType.CLASS);
+    }
+
+    public List<OWLObjectProperty> compileObjectProperties(final String constant) {
+        return compileList(_objectPropertyListQueries, _objectPropertyQueries, constant, EntityType.OBJECT_PROPERTY);
+    }
+
+    public OWLClassExpression compileClassExpression(final String constant) {
+        OWLClassExpression ce = _classExpressionQueries.get(constant);
+        if (ce == null) {
+            final String unquoted = unquote(constant);
+            if (isName(unquoted)) {
+                ce = compileClass(constant);
+            } else {
+                final ManchesterOWLSyntaxParser parser = OWLManager.createManchesterParser();
+                _lock.lock();
+                try {
+                    parser.setOWLEntityChecker(new QueryVocabulary(this));
+                    parser.setStringToParse(unquoted);
+                    ce = parser.parseClassExpression();
+                } catch (final OWLParserException e) {
+                    // reported once per query constant because the result is cached
+                    LOGGER.error("cannot parse class expression {} for ontology {}: {}, using owl:Nothing instead",
+                        () -> constant, () -> _uri, () -> e.getMessage());
+                    ce = _df.getOWLNothing();
+                } finally {
+                    _lock.unlock();
+                }
+            }
+            _classExpressionQueries.put(constant, ce);
+        }
+        return ce;
+    }
+
+    public ConjunctiveQuery compileConjunctiveQuery(final String constant) {
+        ConjunctiveQuery cq = _conjunctiveQueries.get(constant);
+        if (cq == null) {
+            _lock.lock();
+            try {
+                cq = ConjunctiveQuery.parse(unquote(constant), this);
+            } catch (final IllegalArgumentException e) {
+                LOGGER.error("cannot parse query for ontology {}: {}", () -> _uri, () -> e.getMessage());
+                cq = ConjunctiveQuery.INVALID;
+            } finally {
+                _lock.unlock();
+            }
+            _conjunctiveQueries.put(constant, cq);
+        }
+        return cq;
+    }
+
+    private static String unquote(final String constant) {
+        return constant.length() >= 2 && constant.startsWith("\"") && constant.endsWith("\"")
+            ? constant.substring(1, constant.length() - 1) : constant;
+    }
+
+    // a class name (possibly prefixed or in angle brackets), not a complex Manchester syntax expression
+    private static boolean isName(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (Character.isWhitespace(c) || "(){}[],".indexOf(c) != -1)
+                return false;
+        }
+        return true;
+    }
+
+    public List<OWLOntologyChange> compileModifier(final ISymbol modifier, final Function<ISymbol, List<OWLOntologyChange>> compile) {
+        final String key = modifier.value();
+        List<OWLOntologyChange> changes = _modifiers.get(key);
+        if (changes == null) {
+            changes = compile.apply(modifier);
+            if (_modifiers.size() < MAX_MEMOIZED) _modifiers.put(key, changes);
+        }
+        return changes;
+    }
+
+    private boolean isUnmodified() {
+        return _addedAxioms.isEmpty() && _removedAxioms.isEmpty();
+    }
+
+    // whether axiom is part of the unmodified ontology
+    private boolean isBaseAxiom(final OWLAxiom axiom) {
+        return _removedAxioms.contains(axiom) || (!_addedAxioms.contains(axiom) && _ontology.containsAxiom(axiom));
+    }
+
+    public void switchToModification(final List<? extends OWLOntologyChange> changes) {
+        final Set<OWLAxiom> adds = new HashSet<OWLAxiom>();
+        final Set<OWLAxiom> removes = new HashSet<OWLAxiom>();
+        for(final OWLOntologyChange c : changes) {
+            if( c.isAddAxiom() ) {
+                adds.add(c.getAxiom());
+            } else if( c.isRemoveAxiom() ) {
+                removes.add(c.getAxiom());
+            }
+        }
+        // additions win over removals of the same axiom
+        removes.removeAll(adds);
+
+        // only record effective modifications: adding a base axiom or removing a non-base axiom does nothing
+        final Set<OWLAxiom> nextAdded = new HashSet<OWLAxiom>();
+        for(final OWLAxiom a : adds) {
+            if( !isBaseAxiom(a) ) nextAdded.add(a);
+        }
+        final Set<OWLAxiom> nextRemoved = new HashSet<OWLAxiom>();
+        for(final OWLAxiom r : removes) {
+            if( isBaseAxiom(r) ) nextRemoved.add(r);
+        }
+
+        // symmetric difference between the current and the next modification
+        final List<OWLOntologyChange> diff = new ArrayList<OWLOntologyChange>();
+        for(final OWLAxiom a : _addedAxioms) {
+            if( !nextAdded.contains(a) ) diff.add(new RemoveAxiom(_ontology, a));
+        }
+        for(final OWLAxiom r : _removedAxioms) {
+            if( !nextRemoved.contains(r) ) diff.add(new AddAxiom(_ontology, r));
+        }
+        for(final OWLAxiom a : nextAdded) {
+            if( !_addedAxioms.contains(a) ) diff.add(new AddAxiom(_ontology, a));
+        }
+        for(final OWLAxiom r : nextRemoved) {
+            if( !_removedAxioms.contains(r) ) diff.add(new RemoveAxiom(_ontology, r));
+        }
+        _addedAxioms = nextAdded;
+        _removedAxioms = nextRemoved;
+        _addedMayClash = nextAdded.stream().anyMatch(ReasonerRouting::mayClash);
+
+        if( !diff.isEmpty() ) {
+            _manager.applyChanges(diff);
+            //LOGGER.info("switchToModification applied {} changes", () -> diff.size());
+            _reasonerDirty = true;
+            if( _materializer != null ) {
+                final List<OWLAxiom> removed = new ArrayList<OWLAxiom>();
+                final List<OWLAxiom> added = new ArrayList<OWLAxiom>();
+                for(final OWLOntologyChange c : diff) {
+                    (c.isAddAxiom() ? added : removed).add(c.getAxiom());
+                }
+                _materializer.update(removed, added);
+            }
+        }
+    }
+
+    public void restoreBaseOntology() {
+        if( !isUnmodified() ) {
+            switchToModification(Collections.<OWLOntologyChange>emptyList());
+        }
+    }
+
+    public long flushes() {
+        long flushes = _flushes;
+        if( _forks != null ) {
+            synchronized( _forks ) {
+                for( final OntologyContext fork : _forks ) {
+                    if( fork != null ) flushes += fork._flushes;
+                }
+            }
+        }
+        return flushes;
+    }
+
+    public void warmUp() {
+        final long start = System.currentTimeMillis();
+        if( _ontology == null )
+            return;
+        warmUpStage(this::propertyExtensions);
+        if( _materializer == null && !_structuralOnly ) {
+            // one inference type per stage, a query that needs one of them computes it itself if it comes first
+            for( final InferenceType type : new InferenceType[] { InferenceType.CLASS_HIERARCHY, InferenceType.CLASS_ASSERTIONS,
+                    InferenceType.OBJECT_PROPERTY_HIERARCHY, InferenceType.DATA_PROPERTY_HIERARCHY,
+                    InferenceType.OBJECT_PROPERTY_ASSERTIONS } ) {
+                warmUpStage(() -> reasoner().precomputeInferences(type));
+            }
+        }
+        warmUpStage(this::extensionTables);
+        if( _minimalNogoods )
+            warmUpStage(this::isClashFree);
+        LOGGER.info("ontology {}: inferences precomputed in {} ms", () -> _uri, () -> System.currentTimeMillis() - start);
+    }
+
+    // one step of warmUp on the unmodified ontology, under the lock;
+    // calls that wait for the lock go first (the lock is not fair, so without this the next stage could overtake them)
+    private void warmUpStage(final Runnable stage) {
+        while( _lock.hasQueuedThreads() )
+            Thread.yield();
+        _lock.lock();
+        try {
+            restoreBaseOntology();
+            stage.run();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private void teardownModules() {
+        if( _modules == null )
+            return;
+        LOGGER.info("ontology {}: {} queries answered from {} modules", () -> _uri, () -> _moduleQueries,
+            () -> _modules.values().stream().filter(m -> m != this).count());
+        for( final OntologyContext module : _modules.values() ) {
+            if( module != this ) module.teardown();
+        }
+        _modules.clear();
     }
 
     public void teardown() {
+        if( _parent != null ) {
+            teardownModules();
+            LOGGER.info("ontology {} (copy): {} reasoner flushes", () -> _uri, () -> _flushes);
+            if( _reasoner != null )
+                _reasoner.dispose();
+            if( _structuralReasoner != null )
+                _structuralReasoner.dispose();
+            return;
+        }
+        teardownModules();
+        LOGGER.info("ontology {}: {} reasoner flushes", () -> _uri, () -> _flushes);
+        for( final OntologyContext fork : _forks ) {
+            if( fork != null ) fork.teardown();
+        }
+        if( _materializer != null )
+            LOGGER.info("ontology {}: RL materializer {}", () -> _uri, () -> _materializer.statistics());
+        if( _consistencyOracle != null )
+            LOGGER.info("ontology {}: consistency oracle {}", () -> _uri, () -> _consistencyOracle.statistics());
+        if( _snapshotOutdated && _ontology != null ) {
+            // extension tables were enabled but never built: the snapshot gets the ontology only
+            _lock.lock();
+            try {
+                restoreBaseOntology();
+                _snapshot.write(_manager, _ontology, _extensionTables);
+                _snapshotOutdated = false;
+            } finally {
+                _lock.unlock();
+            }
+        }
         if( _reasoner != null )
             _reasoner.dispose();
+        if( _structuralReasoner != null )
+            _structuralReasoner.dispose();
     }
 }
\ No newline at end of file
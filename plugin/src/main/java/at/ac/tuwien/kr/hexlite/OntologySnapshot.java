@@ -0,0 +1,388 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.FunctionalSyntaxDocumentFormat;
+import org.semanticweb.owlapi.io.StringDocumentSource;
+import org.semanticweb.owlapi.io.StringDocumentTarget;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLDataPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLObjectPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+// binary snapshot of a loaded ontology (imports closure) and its extension tables
+//
+// the snapshot is valid as long as the SHA-256 hash over all documents of the imports closure and the reasoner mode
+// is unchanged; it is read from a memory-mapped file
+//
+// layout (big endian, strings are an int length and UTF-8 bytes):
+//   magic, version, hash, document paths, IRI dictionary, literal dictionary,
+//   named class assertions (class, individual), named object property assertions (property, subject, object),
+//   named data property assertions (property, subject, literal), remaining axioms in functional syntax,
+//   extension tables (optional)
+//
+// this is deliberately a partial snapshot:
+// * only named assertions, which make up almost all of a large ABox, have a binary form; the remaining axioms
+//   are few and can contain arbitrary expressions, functional syntax stores them exactly without a codec per axiom type
+// * the class hierarchy and the realisation are not stored: HermiT cannot be given a precomputed taxonomy, so a
+//   stored one could only answer queries that never reach the reasoner, and those are what the extension tables
+//   already answer (all class and property extensions of the unmodified ontology)
+class OntologySnapshot {
+    private static final Logger LOGGER = LogManager.getLogger("Hexlite-OWLAPIPlugin");
+    private static final int MAGIC = 0x48584f53; // "HXOS"
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final String reasonerMode;
+    // documents of the imports closure if the ontology was loaded from the snapshot
+    private List<Path> loadedDocuments;
+
+    public OntologySnapshot(final Path _path, final String _reasonerMode) {
+        path = _path;
+        reasonerMode = _reasonerMode;
+        loadedDocuments = null;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    // ontology and extension tables (null if the snapshot has none) read from a snapshot
+    public static class Loaded {
+        public final OWLOntology ontology;
+        public final ExtensionTables tables;
+
+        Loaded(final OWLOntology _ontology, final ExtensionTables _tables) {
+            ontology = _ontology;
+            tables = _tables;
+        }
+    }
+
+    private byte[] hash(final List<Path> documents) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final byte[] buffer = new byte[1 << 16];
+        for( final Path document : documents ) {
+            digest.update(document.toString().getBytes(StandardCharsets.UTF_8));
+            try( InputStream in = Files.newInputStream(document) ) {
+                int n;
+                while( (n = in.read(buffer)) > 0 ) digest.update(buffer, 0, n);
+            }
+        }
+        digest.update(reasonerMode.getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    // local documents of the imports closure, the document of ontology first (null if some ontology was not loaded from a file)
+    private static List<Path> documents(final OWLOntologyManager manager, final OWLOntology ontology) {
+        final List<Path> ret = new ArrayList<Path>();
+        final List<OWLOntology> closure = new ArrayList<OWLOntology>();
+        closure.add(ontology);
+        ontology.imports().forEach(closure::add);
+        for( final OWLOntology o : closure ) {
+            final URI document = manager.getOntologyDocumentIRI(o).toURI();
+            if( !"file".equals(document.getScheme()) )
+                return null;
+            ret.add(Paths.get(document));
+        }
+        return ret;
+    }
+
+    private static String readString(final ByteBuffer buf) {
+        final byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // ontology with document root from the snapshot, or null if there is no valid snapshot
+    public Loaded load(final OWLOntologyManager manager, final OWLDataFactory df, final Path root) {
+        if( !Files.isReadable(path) )
+            return null;
+        final long start = System.currentTimeMillis();
+        try( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+            if( channel.size() > Integer.MAX_VALUE ) {
+                LOGGER.warn("snapshot {} is too large to be mapped, ignoring it", () -> path);
+                return null;
+            }
+            final ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if( buf.getInt() != MAGIC || buf.getInt() != VERSION ) {
+                LOGGER.info("snapshot {} has an unknown format, ignoring it", () -> path);
+                return null;
+            }
+            final byte[] storedHash = new byte[buf.getInt()];
+            buf.get(storedHash);
+            final int documentCount = buf.getInt();
+            final List<Path> documents = new ArrayList<Path>(documentCount);
+            for( int i = 0; i < documentCount; i++ ) {
+                documents.add(Paths.get(readString(buf)));
+            }
+            if( documents.isEmpty() || !documents.get(0).equals(root) || !documents.stream().allMatch(Files::isReadable) ) {
+                LOGGER.info("snapshot {} is outdated, loading {}", () -> path, () -> root);
+                return null;
+            }
+            // the documents are read completely on every start, which dominates for large ontologies
+            final long hashStart = System.currentTimeMillis();
+            final boolean unchanged = Arrays.equals(storedHash, hash(documents));
+            final long hashTime = System.currentTimeMillis() - hashStart;
+            LOGGER.info("hashed {} documents of {} in {} ms", () -> documents.size(), () -> root, () -> hashTime);
+            if( !unchanged ) {
+                LOGGER.info("snapshot {} is outdated, loading {}", () -> path, () -> root);
+                return null;
+            }
+
+            final IRI[] iris = new IRI[buf.getInt()];
+            for( int i = 0; i < iris.length; i++ ) {
+                iris[i] = IRI.create(readString(buf));
+            }
+            final OWLLiteral[] literals = new OWLLiteral[buf.getInt()];
+            for( int i = 0; i < literals.length; i++ ) {
+                final String lexical = readString(buf);
+                final String lang = readString(buf);
+                final int datatype = buf.getInt();
+                literals[i] = lang.isEmpty() ? df.getOWLLiteral(lexical, df.getOWLDatatype(iris[datatype])) : df.getOWLLiteral(lexical, lang);
+            }
+
+            final List<OWLAxiom> assertions = new ArrayList<OWLAxiom>();
+            final int classAssertions = buf.getInt();
+            for( int i = 0; i < classAssertions; i++ ) {
+                final OWLClass c = df.getOWLClass(iris[buf.getInt()]);
+                assertions.add(df.getOWLClassAssertionAxiom(c, df.getOWLNamedIndividual(iris[buf.getInt()])));
+            }
+            final int objectPropertyAssertions = buf.getInt();
+            for( int i = 0; i < objectPropertyAssertions; i++ ) {
+                final OWLObjectProperty op = df.getOWLObjectProperty(iris[buf.getInt()]);
+                final OWLNamedIndividual s = df.getOWLNamedIndividual(iris[buf.getInt()]);
+                assertions.add(df.getOWLObjectPropertyAssertionAxiom(op, s, df.getOWLNamedIndividual(iris[buf.getInt()])));
+            }
+            final int dataPropertyAssertions = buf.getInt();
+            for( int i = 0; i < dataPropertyAssertions; i++ ) {
+                final OWLDataProperty dp = df.getOWLDataProperty(iris[buf.getInt()]);
+                final OWLNamedIndividual s = df.getOWLNamedIndividual(iris[buf.getInt()]);
+                assertions.add(df.getOWLDataPropertyAssertionAxiom(dp, s, literals[buf.getInt()]));
+            }
+
+            // the remaining axioms (TBox, declarations, complex assertions) are few and parsed normally
+            final String remainder = readString(buf);
+            final OWLOntologyManager parser = OWLManager.createOWLOntologyManager();
+            final OWLOntology rest = parser.loadOntologyFromOntologyDocument(
+                new StringDocumentSource(remainder, IRI.create(path.toUri()), new FunctionalSyntaxDocumentFormat(), null));
+            final Optional<IRI> ontologyIRI = rest.getOntologyID().getOntologyIRI();
+            final Stream<OWLAxiom> axioms = Stream.concat(rest.axioms(), assertions.stream());
+            final OWLOntology ontology = ontologyIRI.isPresent()
+                ? manager.createOntology(axioms, ontologyIRI.get()) : manager.createOntology(axioms);
+
+            ExtensionTables tables = null;
+            if( buf.get() != 0 ) {
+                final OWLNamedIndividual[] tableIndividuals = new OWLNamedIndividual[buf.getInt()];
+                for( int i = 0; i < tableIndividuals.length; i++ ) {
+                    tableIndividuals[i] = df.getOWLNamedIndividual(iris[buf.getInt()]);
+                }
+                final OWLLiteral[] tableLiterals = new OWLLiteral[buf.getInt()];
+                for( int i = 0; i < tableLiterals.length; i++ ) {
+                    tableLiterals[i] = literals[buf.getInt()];
+                }
+                final Map<OWLClass, int[]> classes = readExtensions(buf, iris, df::getOWLClass);
+                final Map<OWLObjectProperty, int[]> objectProperties = readExtensions(buf, iris, df::getOWLObjectProperty);
+                final Map<OWLDataProperty, int[]> dataProperties = readExtensions(buf, iris, df::getOWLDataProperty);
+                tables = new ExtensionTables(tableIndividuals, tableLiterals, classes, objectProperties, dataProperties);
+            }
+            loadedDocuments = documents;
+            final boolean withTables = tables != null;
+            LOGGER.info("loaded {} from snapshot {} in {} ms ({} ms hashing, {} assertions{})", () -> root, () -> path,
+                () -> System.currentTimeMillis() - start, () -> hashTime, () -> assertions.size(), () -> withTables ? ", with extension tables" : "");
+            return new Loaded(ontology, tables);
+        } catch (final IOException | RuntimeException | OWLOntologyCreationException e) {
+            LOGGER.warn("could not read snapshot " + path + ", ignoring it", e);
+            return null;
+        }
+    }
+
+    private static <E> Map<E, int[]> readExtensions(final ByteBuffer buf, final IRI[] iris, final Function<IRI, E> entity) {
+        final int count = buf.getInt();
+        final Map<E, int[]> ret = new HashMap<E, int[]>(count * 2);
+        for( int i = 0; i < count; i++ ) {
+            final E e = entity.apply(iris[buf.getInt()]);
+            final int[] ext = new int[buf.getInt()];
+            buf.asIntBuffer().get(ext);
+            buf.position(buf.position() + 4 * ext.length);
+            ret.put(e, ext);
+        }
+        return ret;
+    }
+
+    // write the unmodified ontology loaded by manager and tables (may be null) to the snapshot file
+    public void write(final OWLOntologyManager manager, final OWLOntology ontology, final ExtensionTables tables) {
+        final long start = System.currentTimeMillis();
+        final List<Path> documents = loadedDocuments != null ? loadedDocuments : documents(manager, ontology);
+        if( documents == null ) {
+            LOGGER.warn("cannot write snapshot {}: the imports closure of {} is not loaded from local files", () -> path,
+                () -> ontology.getOntologyID());
+            return;
+        }
+
+        final Map<IRI, Integer> iriIds = new HashMap<IRI, Integer>();
+        final List<IRI> iris = new ArrayList<IRI>();
+        final Function<IRI, Integer> iriId = iri -> iriIds.computeIfAbsent(iri, k -> { iris.add(k); return iris.size() - 1; });
+        final Map<OWLLiteral, Integer> literalIds = new HashMap<OWLLiteral, Integer>();
+        final List<OWLLiteral> literals = new ArrayList<OWLLiteral>();
+        final Function<OWLLiteral, Integer> literalId = l -> literalIds.computeIfAbsent(l, k -> {
+            iriId.apply(k.getDatatype().getIRI());
+            literals.add(k);
+            return literals.size() - 1;
+        });
+
+        final ExtensionTables.IntList classAssertions = new ExtensionTables.IntList();
+        final ExtensionTables.IntList objectPropertyAssertions = new ExtensionTables.IntList();
+        final ExtensionTables.IntList dataPropertyAssertions = new ExtensionTables.IntList();
+        final List<OWLAxiom> remaining = new ArrayList<OWLAxiom>();
+        for( final OWLAxiom axiom : (Iterable<OWLAxiom>) ontology.axioms(Imports.INCLUDED)::iterator ) {
+            if( axiom.isAnnotated() ) {
+                remaining.add(axiom);
+            } else if( axiom instanceof OWLClassAssertionAxiom
+                    && ((OWLClassAssertionAxiom) axiom).getClassExpression().isOWLClass()
+                    && ((OWLClassAssertionAxiom) axiom).getIndividual().isNamed() ) {
+                final OWLClassAssertionAxiom ca = (OWLClassAssertionAxiom) axiom;
+                classAssertions.add(iriId.apply(ca.getClassExpression().asOWLClass().getIRI()));
+                classAssertions.add(iriId.apply(ca.getIndividual().asOWLNamedIndividual().getIRI()));
+            } else if( axiom instanceof OWLObjectPropertyAssertionAxiom
+                    && ((OWLObjectPropertyAssertionAxiom) axiom).getProperty().isNamed()
+                    && ((OWLObjectPropertyAssertionAxiom) axiom).getSubject().isNamed()
+                    && ((OWLObjectPropertyAssertionAxiom) axiom).getObject().isNamed() ) {
+                final OWLObjectPropertyAssertionAxiom opa = (OWLObjectPropertyAssertionAxiom) axiom;
+                objectPropertyAssertions.add(iriId.apply(opa.getProperty().asOWLObjectProperty().getIRI()));
+                objectPropertyAssertions.add(iriId.apply(opa.getSubject().asOWLNamedIndividual().getIRI()));
+                objectPropertyAssertions.add(iriId.apply(opa.getObject().asOWLNamedIndividual().getIRI()));
+            } else if( axiom instanceof OWLDataPropertyAssertionAxiom
+                    && ((OWLDataPropertyAssertionAxiom) axiom).getSubject().isNamed() ) {
+                final OWLDataPropertyAssertionAxiom dpa = (OWLDataPropertyAssertionAxiom) axiom;
+                dataPropertyAssertions.add(iriId.apply(dpa.getProperty().asOWLDataProperty().getIRI()));
+                dataPropertyAssertions.add(iriId.apply(dpa.getSubject().asOWLNamedIndividual().getIRI()));
+                dataPropertyAssertions.add(literalId.apply(dpa.getObject()));
+            } else {
+                remaining.add(axiom);
+            }
+        }
+
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            // imports are already contained in the closure, the remainder has no import declarations
+            final OWLOntologyManager serializer = OWLManager.createOWLOntologyManager();
+            final Optional<IRI> ontologyIRI = ontology.getOntologyID().getOntologyIRI();
+            final OWLOntology rest = ontologyIRI.isPresent()
+                ? serializer.createOntology(remaining.stream(), ontologyIRI.get()) : serializer.createOntology(remaining.stream());
+            final StringDocumentTarget remainder = new StringDocumentTarget();
+            serializer.saveOntology(rest, new FunctionalSyntaxDocumentFormat(), remainder);
+
+            if( tables != null ) {
+                for( final OWLNamedIndividual i : tables.individuals() ) iriId.apply(i.getIRI());
+                for( final OWLLiteral l : tables.literals() ) literalId.apply(l);
+                tables.classExtensions().keySet().forEach(c -> iriId.apply(c.getIRI()));
+                tables.objectPropertyExtensions().keySet().forEach(op -> iriId.apply(op.getIRI()));
+                tables.dataPropertyExtensions().keySet().forEach(dp -> iriId.apply(dp.getIRI()));
+            }
+
+            try( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) ) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                final byte[] hash = hash(documents);
+                out.writeInt(hash.length);
+                out.write(hash);
+                out.writeInt(documents.size());
+                for( final Path document : documents ) writeString(out, document.toString());
+                out.writeInt(iris.size());
+                for( final IRI iri : iris ) writeString(out, iri.toString());
+                out.writeInt(literals.size());
+                for( final OWLLiteral l : literals ) {
+                    writeString(out, l.getLiteral());
+                    writeString(out, l.getLang());
+                    out.writeInt(iriIds.get(l.getDatatype().getIRI()));
+                }
+                out.writeInt(classAssertions.size / 2);
+                for( int i = 0; i < classAssertions.size; i++ ) out.writeInt(classAssertions.data[i]);
+                out.writeInt(objectPropertyAssertions.size / 3);
+                for( int i = 0; i < objectPropertyAssertions.size; i++ ) out.writeInt(objectPropertyAssertions.data[i]);
+                out.writeInt(dataPropertyAssertions.size / 3);
+                for( int i = 0; i < dataPropertyAssertions.size; i++ ) out.writeInt(dataPropertyAssertions.data[i]);
+                writeString(out, remainder.toString());
+
+                out.writeByte(tables != null ? 1 : 0);
+                if( tables != null ) {
+                    out.writeInt(tables.individuals().length);
+                    for( final OWLNamedIndividual i : tables.individuals() ) out.writeInt(iriIds.get(i.getIRI()));
+                    out.writeInt(tables.literals().length);
+                    for( final OWLLiteral l : tables.literals() ) out.writeInt(literalIds.get(l));
+                    writeExtensions(out, tables.classExtensions(), c -> iriIds.get(c.getIRI()));
+                    writeExtensions(out, tables.objectPropertyExtensions(), op -> iriIds.get(op.getIRI()));
+                    writeExtensions(out, tables.dataPropertyExtensions(), dp -> iriIds.get(dp.getIRI()));
+                }
+            }
+            // readers never see a partially written snapshot
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("wrote snapshot {} in {} ms ({} bytes, {} documents{})", () -> path, () -> System.currentTimeMillis() - start,
+                () -> path.toFile().length(), () -> documents.size(), () -> tables != null ? ", with extension tables" : "");
+        } catch (final IOException | OWLOntologyCreationException | OWLOntologyStorageException e) {
+            LOGGER.warn("could not write snapshot " + path, e);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (final IOException ignored) {
+            }
+        }
+    }
+
+    private static <E> void writeExtensions(final DataOutputStream out, final Map<E, int[]> extensions,
+            final Function<E, Integer> id) throws IOException {
+        out.writeInt(extensions.size());
+        for( final Map.Entry<E, int[]> e : extensions.entrySet() ) {
+            out.writeInt(id.apply(e.getKey()));
+            out.writeInt(e.getValue().length);
+            for( final int v : e.getValue() ) out.writeInt(v);
+        }
+    }
+}
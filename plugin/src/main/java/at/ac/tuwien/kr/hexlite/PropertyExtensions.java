@@ -0,0 +1,281 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.ClassExpressionType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataHasValue;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLDataPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLDataPropertyExpression;
+import org.semanticweb.owlapi.model.OWLEquivalentDataPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLEquivalentObjectPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLInverseObjectPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectHasSelf;
+import org.semanticweb.owlapi.model.OWLObjectHasValue;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLObjectPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLObjectPropertyExpression;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLReflexiveObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLSubDataPropertyOfAxiom;
+import org.semanticweb.owlapi.model.OWLSubObjectPropertyOfAxiom;
+import org.semanticweb.owlapi.model.OWLSubPropertyChainOfAxiom;
+import org.semanticweb.owlapi.model.OWLSymmetricObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLTransitiveObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+// retrieval of the full extension of a property in one pass over the asserted property assertions
+//
+// the told property hierarchy (sub-properties, equivalences, inverses, symmetry) is compiled once;
+// a property is "told-complete" if its extension consists exactly of the asserted pairs of its told sub-properties,
+// which is the case unless transitivity, property chains, reflexivity, hasValue/hasSelf restrictions,
+// or equality reasoning can entail further pairs
+// for other properties the extension is retrieved from the reasoner with one call per individual
+class PropertyExtensions {
+    // a named property, possibly used inversely
+    private static final class Role {
+        final OWLObjectProperty property;
+        final boolean inverse;
+
+        Role(final OWLObjectProperty _property, final boolean _inverse) {
+            property = _property;
+            inverse = _inverse;
+        }
+
+        Role(final OWLObjectPropertyExpression e) {
+            this(e.getNamedProperty(), e.isAnonymous());
+        }
+
+        Role inverted() {
+            return new Role(property, !inverse);
+        }
+
+        public int hashCode() {
+            return property.hashCode() * 2 + (inverse ? 1 : 0);
+        }
+
+        public boolean equals(Object o) {
+            if( o instanceof Role ) {
+                final Role r = (Role)o;
+                return inverse == r.inverse && property.equals(r.property);
+            } else {
+                return false;
+            }
+        }
+    }
+
+    // told direct sub-roles
+    private final Map<Role, Set<Role>> subRoles;
+    private final Map<OWLDataProperty, Set<OWLDataProperty>> subDataProperties;
+    // properties whose extension may contain entailed pairs beyond the told hierarchy
+    private final Set<OWLObjectProperty> inferredObjectProperties;
+    private final Set<OWLDataProperty> inferredDataProperties;
+    // equality reasoning may merge individuals
+    private final boolean equality;
+    // closures are computed on demand
+    private final Map<OWLObjectProperty, Set<Role>> objectClosures;
+    private final Map<OWLDataProperty, Set<OWLDataProperty>> dataClosures;
+
+    public PropertyExtensions(final OWLOntology ontology) {
+        subRoles = new HashMap<Role, Set<Role>>();
+        subDataProperties = new HashMap<OWLDataProperty, Set<OWLDataProperty>>();
+        inferredObjectProperties = new HashSet<OWLObjectProperty>();
+        inferredDataProperties = new HashSet<OWLDataProperty>();
+        objectClosures = new HashMap<OWLObjectProperty, Set<Role>>();
+        dataClosures = new HashMap<OWLDataProperty, Set<OWLDataProperty>>();
+        boolean eq = false;
+
+        for( final OWLAxiom axiom : ontology.axioms(Imports.INCLUDED).collect(Collectors.toList()) ) {
+            if( !axiom.isLogicalAxiom() )
+                continue;
+            if( axiom instanceof OWLSubObjectPropertyOfAxiom ) {
+                final OWLSubObjectPropertyOfAxiom a = (OWLSubObjectPropertyOfAxiom)axiom;
+                addSubRole(new Role(a.getSubProperty()), new Role(a.getSuperProperty()));
+            } else if( axiom instanceof OWLEquivalentObjectPropertiesAxiom ) {
+                for( final OWLSubObjectPropertyOfAxiom a : ((OWLEquivalentObjectPropertiesAxiom)axiom).asSubObjectPropertyOfAxioms() ) {
+                    addSubRole(new Role(a.getSubProperty()), new Role(a.getSuperProperty()));
+                }
+            } else if( axiom instanceof OWLInverseObjectPropertiesAxiom ) {
+                final OWLInverseObjectPropertiesAxiom a = (OWLInverseObjectPropertiesAxiom)axiom;
+                final Role first = new Role(a.getFirstProperty());
+                final Role second = new Role(a.getSecondProperty());
+                addSubRole(first, second.inverted());
+                addSubRole(second.inverted(), first);
+            } else if( axiom instanceof OWLSymmetricObjectPropertyAxiom ) {
+                final Role r = new Role(((OWLSymmetricObjectPropertyAxiom)axiom).getProperty());
+                addSubRole(r.inverted(), r);
+            } else if( axiom instanceof OWLTransitiveObjectPropertyAxiom ) {
+                inferredObjectProperties.add(((OWLTransitiveObjectPropertyAxiom)axiom).getProperty().getNamedProperty());
+            } else if( axiom instanceof OWLReflexiveObjectPropertyAxiom ) {
+                inferredObjectProperties.add(((OWLReflexiveObjectPropertyAxiom)axiom).getProperty().getNamedProperty());
+            } else if( axiom instanceof OWLSubPropertyChainOfAxiom ) {
+                inferredObjectProperties.add(((OWLSubPropertyChainOfAxiom)axiom).getSuperProperty().getNamedProperty());
+            } else if( axiom instanceof OWLSubDataPropertyOfAxiom ) {
+                final OWLSubDataPropertyOfAxiom a = (OWLSubDataPropertyOfAxiom)axiom;
+                addSubDataProperty(a.getSubProperty(), a.getSuperProperty());
+            } else if( axiom instanceof OWLEquivalentDataPropertiesAxiom ) {
+                for( final OWLSubDataPropertyOfAxiom a : ((OWLEquivalentDataPropertiesAxiom)axiom).asSubDataPropertyOfAxioms() ) {
+                    addSubDataProperty(a.getSubProperty(), a.getSuperProperty());
+                }
+            } else if( axiom.getAxiomType() == AxiomType.FUNCTIONAL_OBJECT_PROPERTY
+                    || axiom.getAxiomType() == AxiomType.INVERSE_FUNCTIONAL_OBJECT_PROPERTY
+                    || axiom.getAxiomType() == AxiomType.SAME_INDIVIDUAL
+                    || axiom.getAxiomType() == AxiomType.HAS_KEY ) {
+                eq = true;
+            }
+            // restrictions that entail property assertions with named individuals
+            axiom.nestedClassExpressions().forEach(e -> {
+                if( e.getClassExpressionType() == ClassExpressionType.OBJECT_HAS_VALUE ) {
+                    inferredObjectProperties.add(((OWLObjectHasValue)e).getProperty().getNamedProperty());
+                } else if( e.getClassExpressionType() == ClassExpressionType.OBJECT_HAS_SELF ) {
+                    inferredObjectProperties.add(((OWLObjectHasSelf)e).getProperty().getNamedProperty());
+                } else if( e.getClassExpressionType() == ClassExpressionType.DATA_HAS_VALUE ) {
+                    inferredDataProperties.add(((OWLDataHasValue)e).getProperty().asOWLDataProperty());
+                }
+            });
+            // max cardinalities (and functionality via cardinality) may merge individuals
+            if( axiom.nestedClassExpressions().anyMatch(e ->
+                    e.getClassExpressionType() == ClassExpressionType.OBJECT_MAX_CARDINALITY
+                    || e.getClassExpressionType() == ClassExpressionType.OBJECT_EXACT_CARDINALITY
+                    || e.getClassExpressionType() == ClassExpressionType.OBJECT_ONE_OF) ) {
+                eq = true;
+            }
+        }
+        equality = eq;
+    }
+
+    private void addSubRole(final Role sub, final Role sup) {
+        subRoles.computeIfAbsent(sup, k -> new HashSet<Role>()).add(sub);
+        subRoles.computeIfAbsent(sup.inverted(), k -> new HashSet<Role>()).add(sub.inverted());
+    }
+
+    private void addSubDataProperty(final OWLDataPropertyExpression sub, final OWLDataPropertyExpression sup) {
+        subDataProperties.computeIfAbsent(sup.asOWLDataProperty(), k -> new HashSet<OWLDataProperty>()).add(sub.asOWLDataProperty());
+    }
+
+    // all told sub-roles of op (including op itself)
+    private synchronized Set<Role> closure(final OWLObjectProperty op) {
+        Set<Role> closure = objectClosures.get(op);
+        if( closure == null ) {
+            closure = new HashSet<Role>();
+            final Deque<Role> work = new ArrayDeque<Role>();
+            final Role start = new Role(op, false);
+            closure.add(start);
+            work.add(start);
+            while( !work.isEmpty() ) {
+                final Set<Role> subs = subRoles.get(work.poll());
+                if( subs == null ) continue;
+                for( final Role s : subs ) {
+                    if( closure.add(s) ) work.add(s);
+                }
+            }
+            objectClosures.put(op, closure);
+        }
+        return closure;
+    }
+
+    private synchronized Set<OWLDataProperty> closure(final OWLDataProperty dp) {
+        Set<OWLDataProperty> closure = dataClosures.get(dp);
+        if( closure == null ) {
+            closure = new HashSet<OWLDataProperty>();
+            final Deque<OWLDataProperty> work = new ArrayDeque<OWLDataProperty>();
+            closure.add(dp);
+            work.add(dp);
+            while( !work.isEmpty() ) {
+                final Set<OWLDataProperty> subs = subDataProperties.get(work.poll());
+                if( subs == null ) continue;
+                for( final OWLDataProperty s : subs ) {
+                    if( closure.add(s) ) work.add(s);
+                }
+            }
+            dataClosures.put(dp, closure);
+        }
+        return closure;
+    }
+
+    public boolean isToldComplete(final OWLObjectProperty op) {
+        if( equality )
+            return false;
+        for( final Role r : closure(op) ) {
+            if( inferredObjectProperties.contains(r.property) ) return false;
+        }
+        return true;
+    }
+
+    public boolean isToldComplete(final OWLDataProperty dp) {
+        if( equality )
+            return false;
+        for( final OWLDataProperty p : closure(dp) ) {
+            if( inferredDataProperties.contains(p) ) return false;
+        }
+        return true;
+    }
+
+    // the extension of op in the current state of ontology (which must be consistent)
+    // the reasoner is only obtained if the told closure is not complete for op
+    public void objectPropertyExtension(final OWLOntology ontology, final Supplier<OWLReasoner> reasoner, final OWLObjectProperty op,
+            final BiConsumer<OWLNamedIndividual, OWLNamedIndividual> consumer) {
+        if( !isToldComplete(op) ) {
+            // fallback: one reasoner call per individual
+            final OWLReasoner r = reasoner.get();
+            ontology.individualsInSignature(Imports.INCLUDED).forEach(s ->
+                r.objectPropertyValues(s, op).forEach(o -> consumer.accept(s, o)));
+            return;
+        }
+        final Map<OWLNamedIndividual, Set<OWLNamedIndividual>> seen = new HashMap<OWLNamedIndividual, Set<OWLNamedIndividual>>();
+        for( final Role r : closure(op) ) {
+            final List<OWLAxiom> axioms = ontology.referencingAxioms(r.property, Imports.INCLUDED).collect(Collectors.toList());
+            for( final OWLAxiom axiom : axioms ) {
+                if( !(axiom instanceof OWLObjectPropertyAssertionAxiom) )
+                    continue;
+                final OWLObjectPropertyAssertionAxiom a = (OWLObjectPropertyAssertionAxiom)axiom;
+                if( !a.getSubject().isNamed() || !a.getObject().isNamed() )
+                    continue;
+                // a states a.property(subject, object), translate into op(x, y) via role r
+                final boolean inverse = r.inverse != a.getProperty().isAnonymous();
+                final OWLNamedIndividual x = (inverse ? a.getObject() : a.getSubject()).asOWLNamedIndividual();
+                final OWLNamedIndividual y = (inverse ? a.getSubject() : a.getObject()).asOWLNamedIndividual();
+                if( seen.computeIfAbsent(x, k -> new HashSet<OWLNamedIndividual>()).add(y) )
+                    consumer.accept(x, y);
+            }
+        }
+    }
+
+    public void dataPropertyExtension(final OWLOntology ontology, final Supplier<OWLReasoner> reasoner, final OWLDataProperty dp,
+            final BiConsumer<OWLNamedIndividual, OWLLiteral> consumer) {
+        if( !isToldComplete(dp) ) {
+            final OWLReasoner r = reasoner.get();
+            ontology.individualsInSignature(Imports.INCLUDED).forEach(s ->
+                r.dataPropertyValues(s, dp).forEach(v -> consumer.accept(s, v)));
+            return;
+        }
+        final Map<OWLNamedIndividual, Set<OWLLiteral>> seen = new HashMap<OWLNamedIndividual, Set<OWLLiteral>>();
+        for( final OWLDataProperty p : closure(dp) ) {
+            final List<OWLAxiom> axioms = ontology.referencingAxioms(p, Imports.INCLUDED).collect(Collectors.toList());
+            for( final OWLAxiom axiom : axioms ) {
+                if( !(axiom instanceof OWLDataPropertyAssertionAxiom) )
+                    continue;
+                final OWLDataPropertyAssertionAxiom a = (OWLDataPropertyAssertionAxiom)axiom;
+                if( !a.getSubject().isNamed() )
+                    continue;
+                final OWLNamedIndividual x = a.getSubject().asOWLNamedIndividual();
+                if( seen.computeIfAbsent(x, k -> new HashSet<OWLLiteral>()).add(a.getObject()) )
+                    consumer.accept(x, a.getObject());
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package at.ac.tuwien.kr.hexlite;
+
+import org.semanticweb.owlapi.expression.OWLEntityChecker;
+import org.semanticweb.owlapi.model.EntityType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLDatatype;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+// resolves names in complex query constants (namespace-prefixed names or full IRIs in angle brackets)
+// to entities in the signature of the ontology of a context
+//
+// used by the Manchester syntax parser and by ConjunctiveQuery; the caller holds the lock of the context
+class QueryVocabulary implements OWLEntityChecker {
+    private final IOntologyContext oc;
+
+    QueryVocabulary(final IOntologyContext _oc) {
+        oc = _oc;
+    }
+
+    public IRI iri(final String name) {
+        if( name.length() >= 2 && name.startsWith("<") && name.endsWith(">") )
+            return IRI.create(name.substring(1, name.length() - 1));
+        return IRI.create(oc.expandNamespace(name));
+    }
+
+    // null if name does not denote an entity of this type (the parser then tries the other types)
+    private <T extends OWLEntity> T entity(final EntityType<T> type, final String name) {
+        final T entity = oc.df().getOWLEntity(type, iri(name));
+        if( entity.isBuiltIn() || oc.ontology().containsEntityInSignature(entity, Imports.INCLUDED) )
+            return entity;
+        return null;
+    }
+
+    @Override
+    public OWLClass getOWLClass(final String name) {
+        return entity(EntityType.CLASS, name);
+    }
+
+    @Override
+    public OWLObjectProperty getOWLObjectProperty(final String name) {
+        return entity(EntityType.OBJECT_PROPERTY, name);
+    }
+
+    @Override
+    public OWLDataProperty getOWLDataProperty(final String name) {
+        return entity(EntityType.DATA_PROPERTY, name);
+    }
+
+    @Override
+    public OWLNamedIndividual getOWLIndividual(final String name) {
+        // individuals outside the signature are allowed (they can be added by modifications)
+        return oc.df().getOWLNamedIndividual(iri(name));
+    }
+
+    @Override
+    public OWLDatatype getOWLDatatype(final String name) {
+        return entity(EntityType.DATATYPE, name);
+    }
+
+    @Override
+    public OWLAnnotationProperty getOWLAnnotationProperty(final String name) {
+        return entity(EntityType.ANNOTATION_PROPERTY, name);
+    }
+}
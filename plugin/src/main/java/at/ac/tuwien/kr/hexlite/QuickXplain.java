@@ -0,0 +1,61 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+// QuickXplain (Junker 2004): finds a minimal subset of candidates for which a monotone property holds
+// (monotone: if the property holds for a set, it holds for all supersets, e.g., inconsistency of added axioms)
+//
+// needs O(k log(n/k)) checks of the property for n candidates and an explanation of size k
+class QuickXplain<T> {
+    private final Predicate<List<T>> holds;
+    private long checks;
+
+    public QuickXplain(final Predicate<List<T>> _holds) {
+        holds = _holds;
+        checks = 0;
+    }
+
+    private boolean check(final List<T> set) {
+        checks++;
+        return holds.test(set);
+    }
+
+    // a minimal subset of candidates for which the property holds, null if it does not hold for all candidates
+    public List<T> explain(final List<T> candidates) {
+        if( !check(candidates) )
+            return null;
+        if( candidates.isEmpty() || check(Collections.<T>emptyList()) )
+            return Collections.<T>emptyList();
+        return explain(Collections.<T>emptyList(), false, candidates);
+    }
+
+    // background holds in all calls, added says whether something was added to the background since the last check
+    private List<T> explain(final List<T> background, final boolean added, final List<T> candidates) {
+        if( added && check(background) )
+            return Collections.<T>emptyList();
+        if( candidates.size() == 1 )
+            return candidates;
+        final int half = candidates.size() / 2;
+        final List<T> first = candidates.subList(0, half);
+        final List<T> second = candidates.subList(half, candidates.size());
+
+        final List<T> withFirst = new ArrayList<T>(background);
+        withFirst.addAll(first);
+        final List<T> fromSecond = explain(withFirst, true, second);
+
+        final List<T> withFromSecond = new ArrayList<T>(background);
+        withFromSecond.addAll(fromSecond);
+        final List<T> fromFirst = explain(withFromSecond, !fromSecond.isEmpty(), first);
+
+        final List<T> ret = new ArrayList<T>(fromFirst);
+        ret.addAll(fromSecond);
+        return ret;
+    }
+
+    public long checks() {
+        return checks;
+    }
+}
@@ -0,0 +1,1044 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAsymmetricObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDataPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLDifferentIndividualsAxiom;
+import org.semanticweb.owlapi.model.OWLDisjointClassesAxiom;
+import org.semanticweb.owlapi.model.OWLDisjointObjectPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLEquivalentClassesAxiom;
+import org.semanticweb.owlapi.model.OWLEquivalentObjectPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLIndividual;
+import org.semanticweb.owlapi.model.OWLInverseObjectPropertiesAxiom;
+import org.semanticweb.owlapi.model.OWLIrreflexiveObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLNegativeObjectPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLObjectAllValuesFrom;
+import org.semanticweb.owlapi.model.OWLObjectComplementOf;
+import org.semanticweb.owlapi.model.OWLObjectHasValue;
+import org.semanticweb.owlapi.model.OWLObjectIntersectionOf;
+import org.semanticweb.owlapi.model.OWLObjectMaxCardinality;
+import org.semanticweb.owlapi.model.OWLObjectOneOf;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLObjectPropertyAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLObjectPropertyDomainAxiom;
+import org.semanticweb.owlapi.model.OWLObjectPropertyExpression;
+import org.semanticweb.owlapi.model.OWLObjectPropertyRangeAxiom;
+import org.semanticweb.owlapi.model.OWLObjectSomeValuesFrom;
+import org.semanticweb.owlapi.model.OWLObjectUnionOf;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
+import org.semanticweb.owlapi.model.OWLSubObjectPropertyOfAxiom;
+import org.semanticweb.owlapi.model.OWLSubPropertyChainOfAxiom;
+import org.semanticweb.owlapi.model.OWLSymmetricObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.OWLTransitiveObjectPropertyAxiom;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.profiles.OWL2RLProfile;
+import org.semanticweb.owlapi.profiles.OWLProfileReport;
+
+// forward-chaining ABox materializer for ontologies in the OWL 2 RL profile
+//
+// the TBox is compiled into rules with at most two body atoms, the ABox is materialized once,
+// and afterwards modifications of class and object property assertions are processed incrementally:
+// * additions by semi-naive propagation (each new fact is joined once with the current materialization)
+// * deletions by delete-and-rederive (overdelete all consequences, then rederive what still has a derivation)
+//
+// unsupported: equality (functional properties, SameIndividual, max cardinality 1, keys), data property reasoning
+// for such ontologies create() returns null and the caller must use a tableau reasoner
+class RLMaterializer {
+    private static final Logger LOGGER = LogManager.getLogger("Hexlite-OWLAPIPlugin");
+    private static final String AUX_NAMESPACE = "urn:hexlite-owlapi-plugin:rl-auxiliary#";
+
+    // a class assertion (property == null) or an object property assertion (cls == null)
+    static final class Fact {
+        final OWLClass cls;
+        final OWLObjectProperty property;
+        final OWLNamedIndividual subject;
+        final OWLNamedIndividual object;
+        private final int hash;
+
+        Fact(final OWLClass _cls, final OWLNamedIndividual _subject) {
+            cls = _cls;
+            property = null;
+            subject = _subject;
+            object = null;
+            hash = cls.hashCode() * 31 + subject.hashCode();
+        }
+
+        Fact(final OWLObjectProperty _property, final OWLNamedIndividual _subject, final OWLNamedIndividual _object) {
+            cls = null;
+            property = _property;
+            subject = _subject;
+            object = _object;
+            hash = (property.hashCode() * 31 + subject.hashCode()) * 31 + object.hashCode();
+        }
+
+        boolean isClassFact() {
+            return cls != null;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if( o instanceof Fact ) {
+                final Fact f = (Fact)o;
+                return hash == f.hash && subject.equals(f.subject)
+                    && (cls == null ? f.cls == null : cls.equals(f.cls))
+                    && (property == null ? f.property == null : property.equals(f.property))
+                    && (object == null ? f.object == null : object.equals(f.object));
+            } else {
+                return false;
+            }
+        }
+
+        public String toString() {
+            return isClassFact() ? cls + "(" + subject + ")" : property + "(" + subject + "," + object + ")";
+        }
+    }
+
+    // a named object property, possibly used inversely
+    static final class Role {
+        final OWLObjectProperty property;
+        final boolean inverse;
+
+        Role(final OWLObjectProperty _property, final boolean _inverse) {
+            property = _property;
+            inverse = _inverse;
+        }
+
+        Role(final OWLObjectPropertyExpression e) {
+            this(e.getNamedProperty(), e.isAnonymous());
+        }
+
+        Role inverted() {
+            return new Role(property, !inverse);
+        }
+
+        // the fact stating role(x,y)
+        Fact fact(final OWLNamedIndividual x, final OWLNamedIndividual y) {
+            return inverse ? new Fact(property, y, x) : new Fact(property, x, y);
+        }
+    }
+
+    // body(x) -> head(x) for all classes in body
+    static final class ClassRule {
+        final List<OWLClass> body;
+        final OWLClass head;
+        ClassRule(final List<OWLClass> _body, final OWLClass _head) { body = _body; head = _head; }
+    }
+
+    // role(x,y), filler(y) -> head(x) (filler == null: any y; value != null: y == value)
+    static final class ExistsRule {
+        final Role role;
+        final OWLClass filler;
+        final OWLNamedIndividual value;
+        final OWLClass head;
+        ExistsRule(final Role _role, final OWLClass _filler, final OWLNamedIndividual _value, final OWLClass _head) {
+            role = _role; filler = _filler; value = _value; head = _head;
+        }
+    }
+
+    // cls(x), role(x,y) -> head(y) (cls == null: any x)
+    static final class ForallRule {
+        final OWLClass cls;
+        final Role role;
+        final OWLClass head;
+        ForallRule(final OWLClass _cls, final Role _role, final OWLClass _head) { cls = _cls; role = _role; head = _head; }
+    }
+
+    // cls(x) -> role(x,value)
+    static final class HasValueRule {
+        final OWLClass cls;
+        final Role role;
+        final OWLNamedIndividual value;
+        HasValueRule(final OWLClass _cls, final Role _role, final OWLNamedIndividual _value) { cls = _cls; role = _role; value = _value; }
+    }
+
+    // body(x,y) -> head(x,y)
+    static final class RoleRule {
+        final Role body;
+        final Role head;
+        RoleRule(final Role _body, final Role _head) { body = _body; head = _head; }
+    }
+
+    // first(x,y), second(y,z) -> head(x,z)
+    static final class ChainRule {
+        final Role first;
+        final Role second;
+        final Role head;
+        ChainRule(final Role _first, final Role _second, final Role _head) { first = _first; second = _second; head = _head; }
+    }
+
+    private final OWLDataFactory df;
+    private final OWLClass thing;
+    private final OWLClass nothing;
+    private int auxiliaryCounter;
+    private final Map<OWLClassExpression, OWLClass> bodyAuxiliaries;
+    private final Map<OWLClassExpression, OWLClass> headAuxiliaries;
+
+    // rule indices (by trigger and by head)
+    private final Map<OWLClass, List<ClassRule>> classRulesByBody;
+    private final Map<OWLClass, List<ClassRule>> classRulesByHead;
+    private final Map<OWLObjectProperty, List<ExistsRule>> existsRulesByProperty;
+    private final Map<OWLClass, List<ExistsRule>> existsRulesByFiller;
+    private final Map<OWLClass, List<ExistsRule>> existsRulesByHead;
+    private final Map<OWLObjectProperty, List<ForallRule>> forallRulesByProperty;
+    private final Map<OWLClass, List<ForallRule>> forallRulesByClass;
+    private final Map<OWLClass, List<ForallRule>> forallRulesByHead;
+    private final Map<OWLClass, List<HasValueRule>> hasValueRulesByClass;
+    private final Map<OWLObjectProperty, List<HasValueRule>> hasValueRulesByHead;
+    private final Map<OWLObjectProperty, List<RoleRule>> roleRulesByBody;
+    private final Map<OWLObjectProperty, List<RoleRule>> roleRulesByHead;
+    private final Map<OWLObjectProperty, List<ChainRule>> chainRulesByFirst;
+    private final Map<OWLObjectProperty, List<ChainRule>> chainRulesBySecond;
+    private final Map<OWLObjectProperty, List<ChainRule>> chainRulesByHead;
+    private final Set<OWLObjectProperty> irreflexiveProperties;
+    private final Set<OWLObjectProperty> asymmetricProperties;
+    private final Map<OWLObjectProperty, List<Role[]>> disjointRoles;
+    private final Set<Fact> negativeFacts;
+    // facts from nominals in the TBox (they can never be deleted)
+    private final List<Fact> tboxFacts;
+    private int ruleCount;
+
+    // explicit facts with the number of axioms (or mentions, for owl:Thing facts) that support them
+    private final Map<Fact, Integer> explicitFacts;
+
+    // the materialization
+    private final Map<OWLClass, Set<OWLNamedIndividual>> instances;
+    private final Map<OWLNamedIndividual, Set<OWLClass>> types;
+    private final Map<OWLObjectProperty, Map<OWLNamedIndividual, Set<OWLNamedIndividual>>> successors;
+    private final Map<OWLObjectProperty, Map<OWLNamedIndividual, Set<OWLNamedIndividual>>> predecessors;
+    // witnesses (body facts) of derivations of owl:Nothing
+    private final Set<List<Fact>> clashes;
+
+    private long insertions;
+    private long deletions;
+    private long rederivations;
+
+    private RLMaterializer(final OWLDataFactory _df) {
+        df = _df;
+        thing = df.getOWLThing();
+        nothing = df.getOWLNothing();
+        auxiliaryCounter = 0;
+        bodyAuxiliaries = new HashMap<OWLClassExpression, OWLClass>();
+        headAuxiliaries = new HashMap<OWLClassExpression, OWLClass>();
+        classRulesByBody = new HashMap<OWLClass, List<ClassRule>>();
+        classRulesByHead = new HashMap<OWLClass, List<ClassRule>>();
+        existsRulesByProperty = new HashMap<OWLObjectProperty, List<ExistsRule>>();
+        existsRulesByFiller = new HashMap<OWLClass, List<ExistsRule>>();
+        existsRulesByHead = new HashMap<OWLClass, List<ExistsRule>>();
+        forallRulesByProperty = new HashMap<OWLObjectProperty, List<ForallRule>>();
+        forallRulesByClass = new HashMap<OWLClass, List<ForallRule>>();
+        forallRulesByHead = new HashMap<OWLClass, List<ForallRule>>();
+        hasValueRulesByClass = new HashMap<OWLClass, List<HasValueRule>>();
+        hasValueRulesByHead = new HashMap<OWLObjectProperty, List<HasValueRule>>();
+        roleRulesByBody = new HashMap<OWLObjectProperty, List<RoleRule>>();
+        roleRulesByHead = new HashMap<OWLObjectProperty, List<RoleRule>>();
+        chainRulesByFirst = new HashMap<OWLObjectProperty, List<ChainRule>>();
+        chainRulesBySecond = new HashMap<OWLObjectProperty, List<ChainRule>>();
+        chainRulesByHead = new HashMap<OWLObjectProperty, List<ChainRule>>();
+        irreflexiveProperties = new HashSet<OWLObjectProperty>();
+        asymmetricProperties = new HashSet<OWLObjectProperty>();
+        disjointRoles = new HashMap<OWLObjectProperty, List<Role[]>>();
+        negativeFacts = new HashSet<Fact>();
+        tboxFacts = new ArrayList<Fact>();
+        ruleCount = 0;
+        explicitFacts = new HashMap<Fact, Integer>();
+        instances = new HashMap<OWLClass, Set<OWLNamedIndividual>>();
+        types = new HashMap<OWLNamedIndividual, Set<OWLClass>>();
+        successors = new HashMap<OWLObjectProperty, Map<OWLNamedIndividual, Set<OWLNamedIndividual>>>();
+        predecessors = new HashMap<OWLObjectProperty, Map<OWLNamedIndividual, Set<OWLNamedIndividual>>>();
+        clashes = new HashSet<List<Fact>>();
+        insertions = 0;
+        deletions = 0;
+        rederivations = 0;
+    }
+
+    // compile and materialize the ontology (including imports), returns null if it is not supported
+    public static RLMaterializer create(final OWLOntology ontology, final OWLDataFactory df) {
+        return create(ontology, df, new OWL2RLProfile().checkOntology(ontology));
+    }
+
+    // the same with the OWL 2 RL profile report of the ontology computed by the caller
+    public static RLMaterializer create(final OWLOntology ontology, final OWLDataFactory df, final OWLProfileReport report) {
+        if( !report.isInProfile() ) {
+            LOGGER.warn("ontology is not in the OWL 2 RL profile, cannot use RL materializer: {}", () -> report.getViolations());
+            return null;
+        }
+        return materialize(ontology, df);
+    }
+
+    // independent copy of the rules and the current materialization (for a copy of the ontology, the caller holds its lock)
+    //
+    // the fixpoint is not computed again; rules and facts are immutable and shared, the indexes are copied
+    public RLMaterializer copy() {
+        return new RLMaterializer(this);
+    }
+
+    private RLMaterializer(final RLMaterializer m) {
+        df = m.df;
+        thing = m.thing;
+        nothing = m.nothing;
+        auxiliaryCounter = m.auxiliaryCounter;
+        bodyAuxiliaries = new HashMap<OWLClassExpression, OWLClass>(m.bodyAuxiliaries);
+        headAuxiliaries = new HashMap<OWLClassExpression, OWLClass>(m.headAuxiliaries);
+        classRulesByBody = copyRules(m.classRulesByBody);
+        classRulesByHead = copyRules(m.classRulesByHead);
+        existsRulesByProperty = copyRules(m.existsRulesByProperty);
+        existsRulesByFiller = copyRules(m.existsRulesByFiller);
+        existsRulesByHead = copyRules(m.existsRulesByHead);
+        forallRulesByProperty = copyRules(m.forallRulesByProperty);
+        forallRulesByClass = copyRules(m.forallRulesByClass);
+        forallRulesByHead = copyRules(m.forallRulesByHead);
+        hasValueRulesByClass = copyRules(m.hasValueRulesByClass);
+        hasValueRulesByHead = copyRules(m.hasValueRulesByHead);
+        roleRulesByBody = copyRules(m.roleRulesByBody);
+        roleRulesByHead = copyRules(m.roleRulesByHead);
+        chainRulesByFirst = copyRules(m.chainRulesByFirst);
+        chainRulesBySecond = copyRules(m.chainRulesBySecond);
+        chainRulesByHead = copyRules(m.chainRulesByHead);
+        irreflexiveProperties = new HashSet<OWLObjectProperty>(m.irreflexiveProperties);
+        asymmetricProperties = new HashSet<OWLObjectProperty>(m.asymmetricProperties);
+        disjointRoles = copyRules(m.disjointRoles);
+        negativeFacts = new HashSet<Fact>(m.negativeFacts);
+        tboxFacts = new ArrayList<Fact>(m.tboxFacts);
+        ruleCount = m.ruleCount;
+        explicitFacts = new HashMap<Fact, Integer>(m.explicitFacts);
+        instances = copySets(m.instances);
+        types = copySets(m.types);
+        successors = new HashMap<OWLObjectProperty, Map<OWLNamedIndividual, Set<OWLNamedIndividual>>>();
+        m.successors.forEach((p, pairs) -> successors.put(p, copySets(pairs)));
+        predecessors = new HashMap<OWLObjectProperty, Map<OWLNamedIndividual, Set<OWLNamedIndividual>>>();
+        m.predecessors.forEach((p, pairs) -> predecessors.put(p, copySets(pairs)));
+        clashes = new HashSet<List<Fact>>(m.clashes);
+        insertions = 0;
+        deletions = 0;
+        rederivations = 0;
+    }
+
+    private static <K, V> Map<K, List<V>> copyRules(final Map<K, List<V>> index) {
+        final Map<K, List<V>> ret = new HashMap<K, List<V>>(index.size() * 4 / 3 + 1);
+        index.forEach((k, rules) -> ret.put(k, new ArrayList<V>(rules)));
+        return ret;
+    }
+
+    private static <K, V> Map<K, Set<V>> copySets(final Map<K, Set<V>> index) {
+        final Map<K, Set<V>> ret = new HashMap<K, Set<V>>(index.size() * 4 / 3 + 1);
+        index.forEach((k, values) -> ret.put(k, new HashSet<V>(values)));
+        return ret;
+    }
+
+    private static RLMaterializer materialize(final OWLOntology ontology, final OWLDataFactory df) {
+        final RLMaterializer m = new RLMaterializer(df);
+        final List<Fact> initial = new ArrayList<Fact>();
+        for( final OWLAxiom axiom : ontology.axioms(Imports.INCLUDED).collect(Collectors.toList()) ) {
+            if( !axiom.isLogicalAxiom() )
+                continue;
+            final List<Fact> facts = m.assertionFacts(axiom);
+            if( facts != null ) {
+                initial.addAll(facts);
+            } else if( !m.compile(axiom) ) {
+                LOGGER.warn("axiom {} is not supported by the RL materializer", () -> axiom);
+                return null;
+            }
+        }
+        initial.addAll(m.tboxFacts);
+        // individuals of the base ontology are always instances of owl:Thing
+        ontology.individualsInSignature(Imports.INCLUDED).forEach(i -> initial.add(new Fact(m.thing, i)));
+        m.update(Collections.<Fact>emptyList(), initial);
+        LOGGER.info("RL materializer compiled {} rules and materialized {} facts", () -> m.ruleCount, () -> m.insertions);
+        return m;
+    }
+
+    public boolean isConsistent() {
+        return clashes.isEmpty();
+    }
+
+    public Set<OWLNamedIndividual> instances(final OWLClass cls) {
+        final Set<OWLNamedIndividual> s = instances.get(cls);
+        return s == null ? Collections.<OWLNamedIndividual>emptySet() : Collections.unmodifiableSet(s);
+    }
+
+    public void forEachPair(final OWLObjectProperty property, final BiConsumer<OWLNamedIndividual, OWLNamedIndividual> consumer) {
+        final Map<OWLNamedIndividual, Set<OWLNamedIndividual>> m = successors.get(property);
+        if( m == null )
+            return;
+        for( final Map.Entry<OWLNamedIndividual, Set<OWLNamedIndividual>> e : m.entrySet() ) {
+            for( final OWLNamedIndividual o : e.getValue() ) {
+                consumer.accept(e.getKey(), o);
+            }
+        }
+    }
+
+    public boolean hasPair(final OWLObjectProperty property, final OWLNamedIndividual subject, final OWLNamedIndividual object) {
+        final Map<OWLNamedIndividual, Set<OWLNamedIndividual>> m = successors.get(property);
+        if( m == null )
+            return false;
+        final Set<OWLNamedIndividual> objects = m.get(subject);
+        return objects != null && objects.contains(object);
+    }
+
+    // incrementally process removed and added assertion axioms
+    // (other axioms, e.g., data property assertions, do not influence the materialization)
+    public void update(final Collection<OWLAxiom> removed, final Collection<OWLAxiom> added) {
+        final List<Fact> removedFacts = new ArrayList<Fact>();
+        for( final OWLAxiom a : removed ) {
+            final List<Fact> facts = assertionFacts(a);
+            if( facts != null ) removedFacts.addAll(facts);
+        }
+        final List<Fact> addedFacts = new ArrayList<Fact>();
+        for( final OWLAxiom a : added ) {
+            final List<Fact> facts = assertionFacts(a);
+            if( facts != null ) addedFacts.addAll(facts);
+        }
+        update(removedFacts, addedFacts);
+    }
+
+    public String statistics() {
+        return String.format("%d rules, %d clashes, %d insertions, %d deletions, %d rederivations",
+            ruleCount, clashes.size(), insertions, deletions, rederivations);
+    }
+
+    private void update(final List<Fact> removed, final List<Fact> added) {
+        // explicit facts change support counts, owl:Thing facts are supported by each explicit fact mentioning the individual
+        final Map<Fact, Integer> before = new HashMap<Fact, Integer>();
+        for( final Fact f : removed ) {
+            for( final Fact g : withMentions(f) ) changeSupport(g, -1, before);
+        }
+        for( final Fact f : added ) {
+            for( final Fact g : withMentions(f) ) changeSupport(g, 1, before);
+        }
+        final List<Fact> lost = new ArrayList<Fact>();
+        final Deque<Fact> gained = new ArrayDeque<Fact>();
+        for( final Map.Entry<Fact, Integer> e : before.entrySet() ) {
+            final boolean was = e.getValue() > 0;
+            final boolean is = explicitFacts.containsKey(e.getKey());
+            if( was && !is ) lost.add(e.getKey());
+            if( !was && is ) gained.add(e.getKey());
+        }
+        if( !lost.isEmpty() )
+            deleteAndRederive(lost, gained);
+        propagate(gained);
+    }
+
+    private List<Fact> withMentions(final Fact f) {
+        if( f.isClassFact() ) {
+            return f.cls.equals(thing) ? Arrays.asList(f) : Arrays.asList(f, new Fact(thing, f.subject));
+        } else {
+            return Arrays.asList(f, new Fact(thing, f.subject), new Fact(thing, f.object));
+        }
+    }
+
+    private void changeSupport(final Fact f, final int delta, final Map<Fact, Integer> before) {
+        final Integer old = explicitFacts.get(f);
+        final int oldCount = old == null ? 0 : old;
+        if( !before.containsKey(f) ) before.put(f, oldCount);
+        final int newCount = oldCount + delta;
+        if( newCount > 0 ) {
+            explicitFacts.put(f, newCount);
+        } else {
+            explicitFacts.remove(f);
+        }
+    }
+
+    // semi-naive propagation: each inserted fact is joined once with the materialization
+    private void propagate(final Deque<Fact> queue) {
+        while( !queue.isEmpty() ) {
+            final Fact f = queue.poll();
+            if( !insert(f) )
+                continue;
+            consequences(f, g -> { if( !contains(g) ) queue.add(g); }, clash -> clashes.add(clash));
+        }
+    }
+
+    // delete-and-rederive: rederived facts are added to the queue for propagation
+    private void deleteAndRederive(final List<Fact> lost, final Deque<Fact> queue) {
+        // overdelete everything that has a derivation using a deleted fact (joins are done on the old materialization)
+        final Set<Fact> overdeleted = new HashSet<Fact>();
+        final Deque<Fact> work = new ArrayDeque<Fact>();
+        for( final Fact f : lost ) {
+            if( contains(f) && overdeleted.add(f) ) work.add(f);
+        }
+        while( !work.isEmpty() ) {
+            final Fact f = work.poll();
+            consequences(f, g -> { if( contains(g) && overdeleted.add(g) ) work.add(g); }, clash -> {});
+        }
+        for( final Fact f : overdeleted ) {
+            remove(f);
+        }
+        clashes.removeIf(clash -> {
+            for( final Fact f : clash ) {
+                if( !contains(f) ) return true;
+            }
+            return false;
+        });
+
+        // rederive facts that are still explicit or have a derivation from the remaining facts
+        for( final Fact f : overdeleted ) {
+            if( explicitFacts.containsKey(f) || derivable(f) ) {
+                rederivations++;
+                queue.add(f);
+            }
+        }
+    }
+
+    // all one-step consequences of fact f together with the current materialization
+    private void consequences(final Fact f, final Consumer<Fact> derived, final Consumer<List<Fact>> clash) {
+        if( f.isClassFact() ) {
+            final OWLClass c = f.cls;
+            final OWLNamedIndividual a = f.subject;
+            // derivations of owl:Nothing are inconsistencies
+            if( c.equals(nothing) ) {
+                clash.accept(Collections.singletonList(f));
+            }
+            for( final ClassRule r : rules(classRulesByBody, c) ) {
+                boolean fires = true;
+                for( final OWLClass b : r.body ) {
+                    if( !hasType(b, a) ) { fires = false; break; }
+                }
+                if( fires ) derived.accept(new Fact(r.head, a));
+            }
+            for( final ExistsRule r : rules(existsRulesByFiller, c) ) {
+                for( final OWLNamedIndividual x : rolePredecessors(r.role, a) ) {
+                    derived.accept(new Fact(r.head, x));
+                }
+            }
+            for( final ForallRule r : rules(forallRulesByClass, c) ) {
+                for( final OWLNamedIndividual y : roleSuccessors(r.role, a) ) {
+                    derived.accept(new Fact(r.head, y));
+                }
+            }
+            for( final HasValueRule r : rules(hasValueRulesByClass, c) ) {
+                derived.accept(r.role.fact(a, r.value));
+            }
+        } else {
+            final OWLObjectProperty p = f.property;
+            final OWLNamedIndividual a = f.subject;
+            final OWLNamedIndividual b = f.object;
+            for( final ExistsRule r : rules(existsRulesByProperty, p) ) {
+                final OWLNamedIndividual x = r.role.inverse ? b : a;
+                final OWLNamedIndividual y = r.role.inverse ? a : b;
+                if( r.value != null ? r.value.equals(y) : (r.filler == null || hasType(r.filler, y)) )
+                    derived.accept(new Fact(r.head, x));
+            }
+            for( final ForallRule r : rules(forallRulesByProperty, p) ) {
+                final OWLNamedIndividual x = r.role.inverse ? b : a;
+                final OWLNamedIndividual y = r.role.inverse ? a : b;
+                if( r.cls == null || hasType(r.cls, x) )
+                    derived.accept(new Fact(r.head, y));
+            }
+            for( final RoleRule r : rules(roleRulesByBody, p) ) {
+                final OWLNamedIndividual x = r.body.inverse ? b : a;
+                final OWLNamedIndividual y = r.body.inverse ? a : b;
+                derived.accept(r.head.fact(x, y));
+            }
+            for( final ChainRule r : rules(chainRulesByFirst, p) ) {
+                final OWLNamedIndividual x = r.first.inverse ? b : a;
+                final OWLNamedIndividual y = r.first.inverse ? a : b;
+                for( final OWLNamedIndividual z : roleSuccessors(r.second, y) ) {
+                    derived.accept(r.head.fact(x, z));
+                }
+            }
+            for( final ChainRule r : rules(chainRulesBySecond, p) ) {
+                final OWLNamedIndividual y = r.second.inverse ? b : a;
+                final OWLNamedIndividual z = r.second.inverse ? a : b;
+                for( final OWLNamedIndividual x : rolePredecessors(r.first, y) ) {
+                    derived.accept(r.head.fact(x, z));
+                }
+            }
+            if( irreflexiveProperties.contains(p) && a.equals(b) ) {
+                clash.accept(Collections.singletonList(f));
+            }
+            if( asymmetricProperties.contains(p) && related(p, b, a) ) {
+                clash.accept(Arrays.asList(f, new Fact(p, b, a)));
+            }
+            for( final Role[] pair : rules(disjointRoles, p) ) {
+                // pair[0] is a role over p
+                final OWLNamedIndividual x = pair[0].inverse ? b : a;
+                final OWLNamedIndividual y = pair[0].inverse ? a : b;
+                if( hasRole(pair[1], x, y) )
+                    clash.accept(Arrays.asList(f, pair[1].fact(x, y)));
+            }
+            if( negativeFacts.contains(f) ) {
+                clash.accept(Collections.singletonList(f));
+            }
+        }
+    }
+
+    // whether f can be derived in one step from the current materialization
+    private boolean derivable(final Fact f) {
+        if( f.isClassFact() ) {
+            final OWLClass c = f.cls;
+            final OWLNamedIndividual a = f.subject;
+            for( final ClassRule r : rules(classRulesByHead, c) ) {
+                boolean fires = true;
+                for( final OWLClass b : r.body ) {
+                    if( !hasType(b, a) ) { fires = false; break; }
+                }
+                if( fires ) return true;
+            }
+            for( final ExistsRule r : rules(existsRulesByHead, c) ) {
+                if( r.value != null ) {
+                    if( hasRole(r.role, a, r.value) ) return true;
+                } else {
+                    for( final OWLNamedIndividual y : roleSuccessors(r.role, a) ) {
+                        if( r.filler == null || hasType(r.filler, y) ) return true;
+                    }
+                }
+            }
+            for( final ForallRule r : rules(forallRulesByHead, c) ) {
+                for( final OWLNamedIndividual x : rolePredecessors(r.role, a) ) {
+                    if( r.cls == null || hasType(r.cls, x) ) return true;
+                }
+            }
+        } else {
+            final OWLObjectProperty p = f.property;
+            for( final RoleRule r : rules(roleRulesByHead, p) ) {
+                final OWLNamedIndividual x = r.head.inverse ? f.object : f.subject;
+                final OWLNamedIndividual y = r.head.inverse ? f.subject : f.object;
+                if( hasRole(r.body, x, y) ) return true;
+            }
+            for( final ChainRule r : rules(chainRulesByHead, p) ) {
+                final OWLNamedIndividual x = r.head.inverse ? f.object : f.subject;
+                final OWLNamedIndividual z = r.head.inverse ? f.subject : f.object;
+                for( final OWLNamedIndividual y : roleSuccessors(r.first, x) ) {
+                    if( hasRole(r.second, y, z) ) return true;
+                }
+            }
+            for( final HasValueRule r : rules(hasValueRulesByHead, p) ) {
+                final OWLNamedIndividual x = r.role.inverse ? f.object : f.subject;
+                final OWLNamedIndividual y = r.role.inverse ? f.subject : f.object;
+                if( r.value.equals(y) && hasType(r.cls, x) ) return true;
+            }
+        }
+        return false;
+    }
+
+    //
+    // materialization store
+    //
+
+    private boolean contains(final Fact f) {
+        return f.isClassFact() ? hasType(f.cls, f.subject) : related(f.property, f.subject, f.object);
+    }
+
+    private boolean hasType(final OWLClass c, final OWLNamedIndividual i) {
+        final Set<OWLClass> s = types.get(i);
+        return s != null && s.contains(c);
+    }
+
+    private boolean related(final OWLObjectProperty p, final OWLNamedIndividual a, final OWLNamedIndividual b) {
+        final Map<OWLNamedIndividual, Set<OWLNamedIndividual>> m = successors.get(p);
+        if( m == null )
+            return false;
+        final Set<OWLNamedIndividual> s = m.get(a);
+        return s != null && s.contains(b);
+    }
+
+    private boolean hasRole(final Role r, final OWLNamedIndividual x, final OWLNamedIndividual y) {
+        return r.inverse ? related(r.property, y, x) : related(r.property, x, y);
+    }
+
+    private Set<OWLNamedIndividual> roleSuccessors(final Role r, final OWLNamedIndividual x) {
+        return neighbours(r.inverse ? predecessors : successors, r.property, x);
+    }
+
+    private Set<OWLNamedIndividual> rolePredecessors(final Role r, final OWLNamedIndividual y) {
+        return neighbours(r.inverse ? successors : predecessors, r.property, y);
+    }
+
+    private static Set<OWLNamedIndividual> neighbours(final Map<OWLObjectProperty, Map<OWLNamedIndividual, Set<OWLNamedIndividual>>> index,
+            final OWLObjectProperty p, final OWLNamedIndividual i) {
+        final Map<OWLNamedIndividual, Set<OWLNamedIndividual>> m = index.get(p);
+        if( m == null )
+            return Collections.emptySet();
+        final Set<OWLNamedIndividual> s = m.get(i);
+        return s == null ? Collections.<OWLNamedIndividual>emptySet() : s;
+    }
+
+    private boolean insert(final Fact f) {
+        final boolean inserted;
+        if( f.isClassFact() ) {
+            inserted = add(types, f.subject, f.cls);
+            if( inserted ) add(instances, f.cls, f.subject);
+        } else {
+            inserted = add(successors.computeIfAbsent(f.property, k -> new HashMap<OWLNamedIndividual, Set<OWLNamedIndividual>>()), f.subject, f.object);
+            if( inserted ) add(predecessors.computeIfAbsent(f.property, k -> new HashMap<OWLNamedIndividual, Set<OWLNamedIndividual>>()), f.object, f.subject);
+        }
+        if( inserted ) insertions++;
+        return inserted;
+    }
+
+    private void remove(final Fact f) {
+        if( f.isClassFact() ) {
+            delete(types, f.subject, f.cls);
+            delete(instances, f.cls, f.subject);
+        } else {
+            delete(successors.get(f.property), f.subject, f.object);
+            delete(predecessors.get(f.property), f.object, f.subject);
+        }
+        deletions++;
+    }
+
+    private static <K, V> boolean add(final Map<K, Set<V>> m, final K k, final V v) {
+        return m.computeIfAbsent(k, x -> new HashSet<V>()).add(v);
+    }
+
+    private static <K, V> void delete(final Map<K, Set<V>> m, final K k, final V v) {
+        if( m == null )
+            return;
+        final Set<V> s = m.get(k);
+        if( s != null ) {
+            s.remove(v);
+            if( s.isEmpty() ) m.remove(k);
+        }
+    }
+
+    private static <K, V> List<V> rules(final Map<K, List<V>> index, final K k) {
+        final List<V> l = index.get(k);
+        return l == null ? Collections.<V>emptyList() : l;
+    }
+
+    private static <K, V> void index(final Map<K, List<V>> index, final K k, final V v) {
+        index.computeIfAbsent(k, x -> new ArrayList<V>()).add(v);
+    }
+
+    //
+    // compilation of axioms
+    //
+
+    // facts for an assertion axiom, null if axiom is not an assertion
+    private List<Fact> assertionFacts(final OWLAxiom axiom) {
+        if( axiom instanceof OWLClassAssertionAxiom ) {
+            final OWLClassAssertionAxiom ca = (OWLClassAssertionAxiom)axiom;
+            final OWLClass c = headClass(ca.getClassExpression());
+            if( c == null || !ca.getIndividual().isNamed() )
+                return null;
+            return Collections.singletonList(new Fact(c, ca.getIndividual().asOWLNamedIndividual()));
+        } else if( axiom instanceof OWLObjectPropertyAssertionAxiom ) {
+            final OWLObjectPropertyAssertionAxiom pa = (OWLObjectPropertyAssertionAxiom)axiom;
+            if( !pa.getSubject().isNamed() || !pa.getObject().isNamed() )
+                return null;
+            return Collections.singletonList(new Role(pa.getProperty()).fact(
+                pa.getSubject().asOWLNamedIndividual(), pa.getObject().asOWLNamedIndividual()));
+        } else if( axiom instanceof OWLDataPropertyAssertionAxiom || axiom instanceof OWLDifferentIndividualsAxiom ) {
+            // irrelevant without data property reasoning and equality
+            return Collections.emptyList();
+        }
+        return null;
+    }
+
+    // compile a TBox/RBox axiom into rules, false if not supported
+    private boolean compile(final OWLAxiom axiom) {
+        if( axiom instanceof OWLSubClassOfAxiom ) {
+            final OWLSubClassOfAxiom a = (OWLSubClassOfAxiom)axiom;
+            return addSubClassOf(a.getSubClass(), a.getSuperClass());
+        } else if( axiom instanceof OWLEquivalentClassesAxiom ) {
+            return addSubClassOfAll(((OWLEquivalentClassesAxiom)axiom).asOWLSubClassOfAxioms());
+        } else if( axiom instanceof OWLDisjointClassesAxiom ) {
+            return addSubClassOfAll(((OWLDisjointClassesAxiom)axiom).asOWLSubClassOfAxioms());
+        } else if( axiom instanceof OWLObjectPropertyDomainAxiom ) {
+            final OWLSubClassOfAxiom a = ((OWLObjectPropertyDomainAxiom)axiom).asOWLSubClassOfAxiom();
+            return addSubClassOf(a.getSubClass(), a.getSuperClass());
+        } else if( axiom instanceof OWLObjectPropertyRangeAxiom ) {
+            final OWLSubClassOfAxiom a = ((OWLObjectPropertyRangeAxiom)axiom).asOWLSubClassOfAxiom();
+            return addSubClassOf(a.getSubClass(), a.getSuperClass());
+        } else if( axiom instanceof OWLSubObjectPropertyOfAxiom ) {
+            final OWLSubObjectPropertyOfAxiom a = (OWLSubObjectPropertyOfAxiom)axiom;
+            addRoleRule(new Role(a.getSubProperty()), new Role(a.getSuperProperty()));
+            return true;
+        } else if( axiom instanceof OWLEquivalentObjectPropertiesAxiom ) {
+            for( final OWLSubObjectPropertyOfAxiom a : ((OWLEquivalentObjectPropertiesAxiom)axiom).asSubObjectPropertyOfAxioms() ) {
+                addRoleRule(new Role(a.getSubProperty()), new Role(a.getSuperProperty()));
+            }
+            return true;
+        } else if( axiom instanceof OWLInverseObjectPropertiesAxiom ) {
+            final OWLInverseObjectPropertiesAxiom a = (OWLInverseObjectPropertiesAxiom)axiom;
+            final Role first = new Role(a.getFirstProperty());
+            final Role second = new Role(a.getSecondProperty());
+            addRoleRule(first, second.inverted());
+            addRoleRule(second, first.inverted());
+            return true;
+        } else if( axiom instanceof OWLSymmetricObjectPropertyAxiom ) {
+            final Role r = new Role(((OWLSymmetricObjectPropertyAxiom)axiom).getProperty());
+            addRoleRule(r, r.inverted());
+            return true;
+        } else if( axiom instanceof OWLTransitiveObjectPropertyAxiom ) {
+            final Role r = new Role(((OWLTransitiveObjectPropertyAxiom)axiom).getProperty());
+            addChainRule(r, r, r);
+            return true;
+        } else if( axiom instanceof OWLSubPropertyChainOfAxiom ) {
+            final OWLSubPropertyChainOfAxiom a = (OWLSubPropertyChainOfAxiom)axiom;
+            final List<OWLObjectPropertyExpression> chain = a.getPropertyChain();
+            Role prefix = new Role(chain.get(0));
+            for( int i = 1; i < chain.size(); i++ ) {
+                // longer chains are split using auxiliary properties
+                final Role next = (i == chain.size() - 1) ? new Role(a.getSuperProperty())
+                    : new Role(df.getOWLObjectProperty(IRI.create(AUX_NAMESPACE + "P" + (auxiliaryCounter++))), false);
+                addChainRule(prefix, new Role(chain.get(i)), next);
+                prefix = next;
+            }
+            if( chain.size() == 1 )
+                addRoleRule(prefix, new Role(a.getSuperProperty()));
+            return true;
+        } else if( axiom instanceof OWLIrreflexiveObjectPropertyAxiom ) {
+            irreflexiveProperties.add(((OWLIrreflexiveObjectPropertyAxiom)axiom).getProperty().getNamedProperty());
+            ruleCount++;
+            return true;
+        } else if( axiom instanceof OWLAsymmetricObjectPropertyAxiom ) {
+            asymmetricProperties.add(((OWLAsymmetricObjectPropertyAxiom)axiom).getProperty().getNamedProperty());
+            ruleCount++;
+            return true;
+        } else if( axiom instanceof OWLDisjointObjectPropertiesAxiom ) {
+            final List<Role> roles = ((OWLDisjointObjectPropertiesAxiom)axiom).properties()
+                .map(e -> new Role(e)).collect(Collectors.toList());
+            for( int i = 0; i < roles.size(); i++ ) {
+                for( int j = 0; j < roles.size(); j++ ) {
+                    if( i != j ) index(disjointRoles, roles.get(i).property, new Role[] { roles.get(i), roles.get(j) });
+                }
+            }
+            ruleCount++;
+            return true;
+        } else if( axiom instanceof OWLNegativeObjectPropertyAssertionAxiom ) {
+            final OWLNegativeObjectPropertyAssertionAxiom a = (OWLNegativeObjectPropertyAssertionAxiom)axiom;
+            if( !a.getSubject().isNamed() || !a.getObject().isNamed() )
+                return false;
+            negativeFacts.add(new Role(a.getProperty()).fact(a.getSubject().asOWLNamedIndividual(), a.getObject().asOWLNamedIndividual()));
+            ruleCount++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean addSubClassOfAll(final Collection<OWLSubClassOfAxiom> axioms) {
+        for( final OWLSubClassOfAxiom a : axioms ) {
+            if( !addSubClassOf(a.getSubClass(), a.getSuperClass()) ) return false;
+        }
+        return true;
+    }
+
+    private boolean addSubClassOf(final OWLClassExpression sub, final OWLClassExpression sup) {
+        if( sup.isOWLThing() )
+            return true;
+        switch( sub.getClassExpressionType() ) {
+        case OWL_CLASS:
+            return addRuleWithBody(Collections.singletonList(sub.asOWLClass()), sup);
+        case OBJECT_INTERSECTION_OF:
+            {
+                final List<OWLClass> body = new ArrayList<OWLClass>();
+                for( final OWLClassExpression op : ((OWLObjectIntersectionOf)sub).operands().collect(Collectors.toList()) ) {
+                    final OWLClass c = bodyClass(op);
+                    if( c == null ) return false;
+                    body.add(c);
+                }
+                return addRuleWithBody(body, sup);
+            }
+        case OBJECT_UNION_OF:
+            for( final OWLClassExpression op : ((OWLObjectUnionOf)sub).operands().collect(Collectors.toList()) ) {
+                if( !addSubClassOf(op, sup) ) return false;
+            }
+            return true;
+        case OBJECT_ONE_OF:
+            {
+                final OWLClass head = headClass(sup);
+                if( head == null ) return false;
+                for( final OWLIndividual i : ((OWLObjectOneOf)sub).individuals().collect(Collectors.toList()) ) {
+                    if( !i.isNamed() ) return false;
+                    tboxFacts.add(new Fact(head, i.asOWLNamedIndividual()));
+                }
+                return true;
+            }
+        case OBJECT_SOME_VALUES_FROM:
+            {
+                final OWLObjectSomeValuesFrom e = (OWLObjectSomeValuesFrom)sub;
+                OWLClass filler = null;
+                if( !e.getFiller().isOWLThing() ) {
+                    filler = bodyClass(e.getFiller());
+                    if( filler == null ) return false;
+                }
+                final OWLClass head = headClass(sup);
+                if( head == null ) return false;
+                addExistsRule(new ExistsRule(new Role(e.getProperty()), filler, null, head));
+                return true;
+            }
+        case OBJECT_HAS_VALUE:
+            {
+                final OWLObjectHasValue e = (OWLObjectHasValue)sub;
+                if( !e.getFiller().isNamed() ) return false;
+                final OWLClass head = headClass(sup);
+                if( head == null ) return false;
+                addExistsRule(new ExistsRule(new Role(e.getProperty()), null, e.getFiller().asOWLNamedIndividual(), head));
+                return true;
+            }
+        default:
+            return false;
+        }
+    }
+
+    // rules for body(x) -> sup(x)
+    private boolean addRuleWithBody(final List<OWLClass> body, final OWLClassExpression sup) {
+        switch( sup.getClassExpressionType() ) {
+        case OWL_CLASS:
+            if( !sup.isOWLThing() ) addClassRule(body, sup.asOWLClass());
+            return true;
+        case OBJECT_INTERSECTION_OF:
+            for( final OWLClassExpression op : ((OWLObjectIntersectionOf)sup).operands().collect(Collectors.toList()) ) {
+                if( !addRuleWithBody(body, op) ) return false;
+            }
+            return true;
+        case OBJECT_COMPLEMENT_OF:
+            {
+                final OWLClass c = bodyClass(((OWLObjectComplementOf)sup).getOperand());
+                if( c == null ) return false;
+                final List<OWLClass> extended = new ArrayList<OWLClass>(body);
+                extended.add(c);
+                addClassRule(extended, nothing);
+                return true;
+            }
+        case OBJECT_ALL_VALUES_FROM:
+            {
+                final OWLObjectAllValuesFrom e = (OWLObjectAllValuesFrom)sup;
+                final OWLClass head = headClass(e.getFiller());
+                if( head == null ) return false;
+                final OWLClass cls = singleBodyClass(body);
+                addForallRule(new ForallRule(cls.isOWLThing() ? null : cls, new Role(e.getProperty()), head));
+                return true;
+            }
+        case OBJECT_HAS_VALUE:
+            {
+                final OWLObjectHasValue e = (OWLObjectHasValue)sup;
+                if( !e.getFiller().isNamed() ) return false;
+                final HasValueRule r = new HasValueRule(singleBodyClass(body), new Role(e.getProperty()), e.getFiller().asOWLNamedIndividual());
+                index(hasValueRulesByClass, r.cls, r);
+                index(hasValueRulesByHead, r.role.property, r);
+                ruleCount++;
+                return true;
+            }
+        case OBJECT_MAX_CARDINALITY:
+            {
+                // only max 0 is supported, max 1 would require equality reasoning
+                final OWLObjectMaxCardinality e = (OWLObjectMaxCardinality)sup;
+                if( e.getCardinality() != 0 ) return false;
+                OWLClass filler = null;
+                if( !e.getFiller().isOWLThing() ) {
+                    filler = bodyClass(e.getFiller());
+                    if( filler == null ) return false;
+                }
+                final OWLClass hasSuccessor = freshClass();
+                addExistsRule(new ExistsRule(new Role(e.getProperty()), filler, null, hasSuccessor));
+                final List<OWLClass> extended = new ArrayList<OWLClass>(body);
+                extended.add(hasSuccessor);
+                addClassRule(extended, nothing);
+                return true;
+            }
+        default:
+            return false;
+        }
+    }
+
+    // a class that is derived for every instance of e, null if not supported
+    private OWLClass bodyClass(final OWLClassExpression e) {
+        if( !e.isAnonymous() )
+            return e.asOWLClass();
+        OWLClass aux = bodyAuxiliaries.get(e);
+        if( aux == null ) {
+            aux = freshClass();
+            if( !addSubClassOf(e, aux) ) return null;
+            bodyAuxiliaries.put(e, aux);
+        }
+        return aux;
+    }
+
+    // a class whose instances are derived to be instances of e, null if not supported
+    private OWLClass headClass(final OWLClassExpression e) {
+        if( !e.isAnonymous() )
+            return e.asOWLClass();
+        OWLClass aux = headAuxiliaries.get(e);
+        if( aux == null ) {
+            aux = freshClass();
+            if( !addRuleWithBody(Collections.singletonList(aux), e) ) return null;
+            headAuxiliaries.put(e, aux);
+        }
+        return aux;
+    }
+
+    private OWLClass singleBodyClass(final List<OWLClass> body) {
+        if( body.size() == 1 )
+            return body.get(0);
+        final OWLClass aux = freshClass();
+        addClassRule(body, aux);
+        return aux;
+    }
+
+    private OWLClass freshClass() {
+        return df.getOWLClass(IRI.create(AUX_NAMESPACE + "C" + (auxiliaryCounter++)));
+    }
+
+    private void addClassRule(final List<OWLClass> body, final OWLClass head) {
+        // owl:Thing in a conjunction is redundant
+        List<OWLClass> b = body;
+        if( body.size() > 1 && body.contains(thing) ) {
+            b = new ArrayList<OWLClass>(body);
+            b.removeIf(c -> c.equals(thing));
+        }
+        final ClassRule r = new ClassRule(b, head);
+        for( final OWLClass c : new HashSet<OWLClass>(b) ) {
+            index(classRulesByBody, c, r);
+        }
+        index(classRulesByHead, head, r);
+        ruleCount++;
+    }
+
+    private void addExistsRule(final ExistsRule r) {
+        index(existsRulesByProperty, r.role.property, r);
+        if( r.filler != null ) index(existsRulesByFiller, r.filler, r);
+        index(existsRulesByHead, r.head, r);
+        ruleCount++;
+    }
+
+    private void addForallRule(final ForallRule r) {
+        index(forallRulesByProperty, r.role.property, r);
+        if( r.cls != null ) index(forallRulesByClass, r.cls, r);
+        index(forallRulesByHead, r.head, r);
+        ruleCount++;
+    }
+
+    private void addRoleRule(final Role body, final Role head) {
+        final RoleRule r = new RoleRule(body, head);
+        index(roleRulesByBody, body.property, r);
+        index(roleRulesByHead, head.property, r);
+        ruleCount++;
+    }
+
+    private void addChainRule(final Role first, final Role second, final Role head) {
+        final ChainRule r = new ChainRule(first, second, head);
+        index(chainRulesByFirst, first.property, r);
+        index(chainRulesBySecond, second.property, r);
+        index(chainRulesByHead, head.property, r);
+        ruleCount++;
+    }
+}
@@ -0,0 +1,164 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.ClassExpressionType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLEquivalentClassesAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+// decides for which queries the StructuralReasoner (told class hierarchy and asserted facts) is complete
+//
+// the structural reasoner is complete for instances of a class C if
+// * no axiom can make the ontology inconsistent (then consistency checks are trivially true), and
+// * instances of C can only come from class assertions of C or of told subclasses of C
+//   (C and its told subclasses do not occur in axioms beyond named subclass/equivalence axioms and assertions)
+class ReasonerRouting {
+    private static final Set<AxiomType<?>> CLASH_AXIOMS = new HashSet<AxiomType<?>>();
+    private static final Set<ClassExpressionType> CLASH_EXPRESSIONS = new HashSet<ClassExpressionType>();
+    static {
+        CLASH_AXIOMS.add(AxiomType.DISJOINT_CLASSES);
+        CLASH_AXIOMS.add(AxiomType.DISJOINT_UNION);
+        CLASH_AXIOMS.add(AxiomType.DISJOINT_OBJECT_PROPERTIES);
+        CLASH_AXIOMS.add(AxiomType.DISJOINT_DATA_PROPERTIES);
+        CLASH_AXIOMS.add(AxiomType.FUNCTIONAL_OBJECT_PROPERTY);
+        CLASH_AXIOMS.add(AxiomType.INVERSE_FUNCTIONAL_OBJECT_PROPERTY);
+        CLASH_AXIOMS.add(AxiomType.FUNCTIONAL_DATA_PROPERTY);
+        CLASH_AXIOMS.add(AxiomType.IRREFLEXIVE_OBJECT_PROPERTY);
+        CLASH_AXIOMS.add(AxiomType.ASYMMETRIC_OBJECT_PROPERTY);
+        CLASH_AXIOMS.add(AxiomType.NEGATIVE_OBJECT_PROPERTY_ASSERTION);
+        CLASH_AXIOMS.add(AxiomType.NEGATIVE_DATA_PROPERTY_ASSERTION);
+        CLASH_AXIOMS.add(AxiomType.DIFFERENT_INDIVIDUALS);
+        CLASH_AXIOMS.add(AxiomType.HAS_KEY);
+        CLASH_AXIOMS.add(AxiomType.DATA_PROPERTY_RANGE);
+        CLASH_AXIOMS.add(AxiomType.DATATYPE_DEFINITION);
+        CLASH_AXIOMS.add(AxiomType.SWRL_RULE);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.OBJECT_COMPLEMENT_OF);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.OBJECT_MAX_CARDINALITY);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.OBJECT_EXACT_CARDINALITY);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.OBJECT_ONE_OF);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.OBJECT_HAS_SELF);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.DATA_SOME_VALUES_FROM);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.DATA_ALL_VALUES_FROM);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.DATA_HAS_VALUE);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.DATA_MAX_CARDINALITY);
+        CLASH_EXPRESSIONS.add(ClassExpressionType.DATA_EXACT_CARDINALITY);
+    }
+
+    private final boolean clashFree;
+    // everything may be inferred (e.g., because of SameIndividual)
+    private final boolean allInferred;
+    // classes whose instances may be inferred beyond the told hierarchy
+    private final Set<OWLClass> inferredClasses;
+
+    private ReasonerRouting(final boolean _clashFree, final boolean _allInferred, final Set<OWLClass> _inferredClasses) {
+        clashFree = _clashFree;
+        allInferred = _allInferred;
+        inferredClasses = _inferredClasses;
+    }
+
+    public static ReasonerRouting analyze(final OWLOntology ontology) {
+        boolean clashFree = true;
+        boolean allInferred = false;
+        final Set<OWLClass> inferred = new HashSet<OWLClass>();
+        final Map<OWLClass, Set<OWLClass>> toldSuperClasses = new HashMap<OWLClass, Set<OWLClass>>();
+
+        for( final OWLAxiom axiom : ontology.axioms(Imports.INCLUDED).collect(Collectors.toList()) ) {
+            if( !axiom.isLogicalAxiom() )
+                continue;
+            if( mayClash(axiom) ) {
+                clashFree = false;
+            }
+            if( axiom.getAxiomType() == AxiomType.SAME_INDIVIDUAL ) {
+                allInferred = true;
+            }
+            if( isTold(axiom, toldSuperClasses) ) {
+                continue;
+            }
+            // any other axiom mentioning classes may lead to inferred instances of these classes
+            axiom.classesInSignature().forEach(c -> inferred.add(c));
+        }
+
+        // instances of a class are instances of all its told superclasses
+        final Deque<OWLClass> work = new ArrayDeque<OWLClass>(inferred);
+        while( !work.isEmpty() ) {
+            final Set<OWLClass> supers = toldSuperClasses.get(work.poll());
+            if( supers == null )
+                continue;
+            for( final OWLClass s : supers ) {
+                if( inferred.add(s) ) work.add(s);
+            }
+        }
+        return new ReasonerRouting(clashFree, allInferred, inferred);
+    }
+
+    // whether axiom can take part in an inconsistency (also used for the axioms added by a delta)
+    public static boolean mayClash(final OWLAxiom axiom) {
+        return CLASH_AXIOMS.contains(axiom.getAxiomType())
+            || axiom.classesInSignature().anyMatch(c -> c.isOWLNothing())
+            || axiom.nestedClassExpressions().anyMatch(e -> CLASH_EXPRESSIONS.contains(e.getClassExpressionType()));
+    }
+
+    // records told subclass relations of named classes, returns true if axiom is handled by the told hierarchy
+    private static boolean isTold(final OWLAxiom axiom, final Map<OWLClass, Set<OWLClass>> toldSuperClasses) {
+        if( axiom instanceof OWLSubClassOfAxiom ) {
+            final OWLSubClassOfAxiom a = (OWLSubClassOfAxiom)axiom;
+            if( a.getSubClass().isAnonymous() || a.getSuperClass().isAnonymous() )
+                return false;
+            toldSuperClasses.computeIfAbsent(a.getSubClass().asOWLClass(), k -> new HashSet<OWLClass>()).add(a.getSuperClass().asOWLClass());
+            return true;
+        } else if( axiom instanceof OWLEquivalentClassesAxiom ) {
+            final List<OWLClassExpression> classes = ((OWLEquivalentClassesAxiom)axiom).classExpressions().collect(Collectors.toList());
+            for( final OWLClassExpression c : classes ) {
+                if( c.isAnonymous() ) return false;
+            }
+            for( final OWLClassExpression c : classes ) {
+                for( final OWLClassExpression d : classes ) {
+                    if( !c.equals(d) ) toldSuperClasses.computeIfAbsent(c.asOWLClass(), k -> new HashSet<OWLClass>()).add(d.asOWLClass());
+                }
+            }
+            return true;
+        } else if( axiom instanceof OWLClassAssertionAxiom ) {
+            return !((OWLClassAssertionAxiom)axiom).getClassExpression().isAnonymous();
+        }
+        // property assertions and property hierarchy axioms do not create class instances on their own
+        return axiom.getAxiomType() == AxiomType.OBJECT_PROPERTY_ASSERTION
+            || axiom.getAxiomType() == AxiomType.DATA_PROPERTY_ASSERTION
+            || axiom.getAxiomType() == AxiomType.SUB_OBJECT_PROPERTY
+            || axiom.getAxiomType() == AxiomType.EQUIVALENT_OBJECT_PROPERTIES
+            || axiom.getAxiomType() == AxiomType.SUB_DATA_PROPERTY
+            || axiom.getAxiomType() == AxiomType.EQUIVALENT_DATA_PROPERTIES;
+    }
+
+    // consistency checks can be answered structurally (ABox modifications for which mayClash is false can never lead
+    // to inconsistency)
+    public boolean isClashFree() {
+        return clashFree;
+    }
+
+    public boolean isStructurallyComplete(final OWLClass cls) {
+        return clashFree && !allInferred && !inferredClasses.contains(cls);
+    }
+
+    // all class queries can be answered structurally
+    public boolean isTrivial() {
+        return clashFree && !allInferred && inferredClasses.isEmpty();
+    }
+
+    public int inferredClassCount() {
+        return allInferred ? -1 : inferredClasses.size();
+    }
+}
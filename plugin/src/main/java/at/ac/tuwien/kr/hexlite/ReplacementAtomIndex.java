@@ -0,0 +1,152 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+// instantiated replacement atoms of the modified-ontology atoms, indexed by tuple shape and (onto, query tuple)
+//
+// a replacement atom has the tuple (aux, onto, delta, sel, <query>*, <output>*), and all replacement atoms with the same
+// aux predicate belong to the same external atom; several atoms can have the same shape (e.g. dlC, dlCS and dlCE,
+// or dlOP, dlOPS, dlDP and dlDPS), so the index only relies on the tuples:
+// * if a single aux predicate has replacement atoms of the shape of the called atom with its onto and query,
+//   they belong to the called atom (the solver instantiates the replacement atoms of every atom it calls)
+// * otherwise, the aux predicates whose name contains the called predicate as a word (delimited by characters
+//   that are not letters or digits) and no other predicate of the same shape are those of the called atom;
+//   if no aux predicate is left, the replacement atoms are ambiguous: no nogoods are learned for them
+//   (logged once as a warning), and the solver checks them against the answer of the atom for the full delta
+class ReplacementAtomIndex {
+    private static final Logger LOGGER = LogManager.getLogger("Hexlite-OWLAPIPlugin");
+
+    // predicate -> indexed atom
+    private final Map<String, IPluginAtom> atoms;
+    // tuple size -> output arities of the atoms with this tuple size
+    private final Map<Integer, Set<Integer>> outputArities;
+    // the indexed collection (the index is rebuilt if the solver hands out a different or grown collection)
+    private Collection<? extends ISymbol> source;
+    private int sourceSize;
+    // (tuple size, output arity, onto, query*) -> aux predicate -> replacement atoms
+    private final HashMap<List<Object>, Map<String, List<ISymbol>>> byShape;
+    // replacement atoms that were not matched because their atom is ambiguous
+    private final Set<ISymbol> ambiguous;
+    // aux predicates that were reported as ambiguous
+    private final Set<Set<String>> reported;
+    private long rebuilds;
+
+    public ReplacementAtomIndex(final Map<String, IPluginAtom> _atoms) {
+        atoms = _atoms;
+        outputArities = new HashMap<Integer, Set<Integer>>();
+        for( final IPluginAtom atom : atoms.values() )
+            outputArities.computeIfAbsent(tupleSize(atom), k -> new HashSet<Integer>()).add(atom.getOutputArguments());
+        source = null;
+        sourceSize = -1;
+        byShape = new HashMap<List<Object>, Map<String, List<ISymbol>>>();
+        ambiguous = new HashSet<ISymbol>();
+        reported = new HashSet<Set<String>>();
+        rebuilds = 0;
+    }
+
+    private static int tupleSize(final IPluginAtom atom) {
+        return 1 + atom.getInputArguments().size() + atom.getOutputArguments();
+    }
+
+    private static List<Object> key(final int size, final int oarity, final ISymbol onto, final List<? extends ISymbol> query) {
+        final List<Object> key = new ArrayList<Object>(query.size() + 3);
+        key.add(size);
+        key.add(oarity);
+        key.add(onto);
+        key.addAll(query);
+        return key;
+    }
+
+    // true if predicate occurs in name and is not part of a longer word
+    static boolean isWordOf(final String predicate, final String name) {
+        for( int at = name.indexOf(predicate); at != -1; at = name.indexOf(predicate, at + 1) ) {
+            final int end = at + predicate.length();
+            if( (at == 0 || !Character.isLetterOrDigit(name.charAt(at - 1)))
+                    && (end == name.length() || !Character.isLetterOrDigit(name.charAt(end))) )
+                return true;
+        }
+        return false;
+    }
+
+    private void rebuild(final Collection<? extends ISymbol> instantiated) {
+        byShape.clear();
+        ambiguous.clear();
+        for( final ISymbol replacementAtom : instantiated ) {
+            final ArrayList<ISymbol> tuple = replacementAtom.tuple();
+            final Set<Integer> oarities = outputArities.get(tuple.size());
+            if( tuple.size() < 4 || oarities == null )
+                continue;
+            // indexed once for each way the tuple can be split into query and output
+            for( final int oarity : oarities ) {
+                byShape.computeIfAbsent(key(tuple.size(), oarity, tuple.get(1), tuple.subList(4, tuple.size() - oarity)),
+                        k -> new HashMap<String, List<ISymbol>>(2))
+                    .computeIfAbsent(tuple.get(0).value(), k -> new ArrayList<ISymbol>(2)).add(replacementAtom);
+            }
+        }
+        source = instantiated;
+        sourceSize = instantiated.size();
+        rebuilds++;
+    }
+
+    // whether the replacement atoms of aux belong to predicate, among the atoms with tuples of the given shape
+    private boolean isNamedFor(final String aux, final String predicate, final int size, final int oarity) {
+        if( !isWordOf(predicate, aux) )
+            return false;
+        for( final IPluginAtom other : atoms.values() ) {
+            if( !other.getPredicate().equals(predicate) && tupleSize(other) == size && other.getOutputArguments() == oarity
+                    && isWordOf(other.getPredicate(), aux) )
+                return false;
+        }
+        return true;
+    }
+
+    // replacement atoms of atom predicate with the given ontology and query tuple
+    public synchronized List<ISymbol> lookup(final Collection<? extends ISymbol> instantiated, final String predicate,
+            final ISymbol onto, final List<? extends ISymbol> query) {
+        if( instantiated != source || instantiated.size() != sourceSize )
+            rebuild(instantiated);
+        final IPluginAtom atom = atoms.get(predicate);
+        final int size = tupleSize(atom);
+        final int oarity = atom.getOutputArguments();
+        final Map<String, List<ISymbol>> byAux = byShape.get(key(size, oarity, onto, query));
+        if( byAux == null )
+            return Collections.<ISymbol>emptyList();
+        if( byAux.size() == 1 )
+            return byAux.values().iterator().next();
+        final List<ISymbol> ret = new ArrayList<ISymbol>();
+        for( final Map.Entry<String, List<ISymbol>> e : byAux.entrySet() ) {
+            if( isNamedFor(e.getKey(), predicate, size, oarity) )
+                ret.addAll(e.getValue());
+        }
+        if( ret.isEmpty() ) {
+            for( final List<ISymbol> replacementAtoms : byAux.values() )
+                ambiguous.addAll(replacementAtoms);
+            if( reported.add(byAux.keySet()) )
+                LOGGER.warn("cannot tell which replacement atoms of {} belong to {} with query {}, no nogoods are learned for them",
+                    byAux.keySet(), predicate, query);
+        }
+        return ret;
+    }
+
+    // replacement atoms of the last indexed collection that were not matched because their atom is ambiguous
+    public synchronized long ambiguous() {
+        return ambiguous.size();
+    }
+
+    public synchronized long rebuilds() {
+        return rebuilds;
+    }
+}
@@ -0,0 +1,118 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import at.ac.tuwien.kr.hexlite.api.Answer;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IAnswer;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IQuery;
+import at.ac.tuwien.kr.hexlite.api.ISolverContext;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+public class AnswerCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Answer answer(final String... values) {
+        final Answer answer = new Answer();
+        for( final String v : values )
+            answer.output(new ArrayList<ISymbol>(Collections.singletonList(Stubs.constant(v))));
+        return answer;
+    }
+
+    private static AnswerCache.Key key(final String query, final ISymbol... modifiers) {
+        return new AnswerCache.Key(null, "dlC", Collections.singletonList(Stubs.quoted(query)), new HashSet<ISymbol>(Arrays.asList(modifiers)));
+    }
+
+    @Test
+    public void keysDoNotDependOnTheOrderOfModifiers() {
+        final ISymbol a = Stubs.term("addc", Stubs.quoted("ex:A"), Stubs.quoted("ex:i"));
+        final ISymbol b = Stubs.term("addc", Stubs.quoted("ex:B"), Stubs.quoted("ex:i"));
+        final AnswerCache cache = new AnswerCache(16, 1024);
+        cache.put(key("ex:A", a, b), answer("x"));
+        assertNotNull(cache.get(key("ex:A", b, a)));
+        assertNull(cache.get(key("ex:A", a)));
+        assertNull(cache.get(key("ex:B", a, b)));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() {
+        final AnswerCache cache = new AnswerCache(2, 1024);
+        cache.put(key("ex:A"), answer("a"));
+        cache.put(key("ex:B"), answer("b"));
+        cache.get(key("ex:A"));
+        cache.put(key("ex:C"), answer("c"));
+        assertNotNull(cache.get(key("ex:A")));
+        assertNull(cache.get(key("ex:B")));
+        assertNotNull(cache.get(key("ex:C")));
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    public void boundsTheNumberOfCachedTuples() {
+        final AnswerCache cache = new AnswerCache(16, 3);
+        cache.put(key("ex:A"), answer("a1", "a2"));
+        cache.put(key("ex:B"), answer("b1", "b2"));
+        assertNull(cache.get(key("ex:A")));
+        assertEquals(2, cache.get(key("ex:B")).getTrueTuples().size());
+        // an answer larger than the bound is not cached at all
+        cache.put(key("ex:C"), answer("c1", "c2", "c3", "c4"));
+        assertNull(cache.get(key("ex:C")));
+        assertNotNull(cache.get(key("ex:B")));
+    }
+
+    private static List<ISymbol> outputs(final IAnswer answer) {
+        final List<ISymbol> outputs = new ArrayList<ISymbol>();
+        for( final List<ISymbol> t : answer.getTrueTuples() )
+            outputs.addAll(t);
+        return outputs;
+    }
+
+    @Test
+    public void cachedAnswersAreNotSharedBetweenSolverContexts() throws Exception {
+        final Path meta = TestOntologies.write(folder.getRoot().toPath(), "cache", "",
+            "SubClassOf(ex:B ex:A)", "ClassAssertion(ex:A ex:i)");
+        final OWLAPIPlugin plugin = new OWLAPIPlugin();
+        final Map<String, IPluginAtom> atoms = TestOntologies.atoms(plugin);
+        final ISymbol delta = Stubs.atom(true, "delta", Stubs.constant("s"),
+            Stubs.term("addc", Stubs.quoted("ex:B"), Stubs.quoted("ex:j")));
+        final IQuery query = Stubs.query(Stubs.interpretation(Collections.singletonList(delta)),
+            Stubs.quoted(meta.toString()), Stubs.constant("delta"), Stubs.constant("s"), Stubs.quoted("ex:A"));
+
+        final Stubs.SolverContext first = new Stubs.SolverContext();
+        final Stubs.SolverContext second = new Stubs.SolverContext();
+        final ISolverContext firstContext = first.create();
+        final ISolverContext secondContext = second.create();
+        final IAnswer firstAnswer = atoms.get("dlC").retrieve(firstContext, query);
+        final IAnswer cachedAnswer = atoms.get("dlC").retrieve(firstContext, query);
+        final IAnswer secondAnswer = atoms.get("dlC").retrieve(secondContext, query);
+        final long firstHits = plugin.answerCache(firstContext).hits();
+        final long secondHits = plugin.answerCache(secondContext).hits();
+        plugin.teardown();
+
+        assertEquals(1, firstHits);
+        assertEquals(0, secondHits);
+
+        assertEquals(2, outputs(firstAnswer).size());
+        assertEquals(new HashSet<ISymbol>(outputs(firstAnswer)), new HashSet<ISymbol>(outputs(secondAnswer)));
+        for( final ISymbol s : outputs(cachedAnswer) )
+            assertSame(first, Stubs.owner(s));
+        for( final ISymbol s : outputs(secondAnswer) )
+            assertSame(second, Stubs.owner(s));
+    }
+}
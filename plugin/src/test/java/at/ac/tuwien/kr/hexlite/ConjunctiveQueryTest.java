@@ -0,0 +1,116 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.model.OWLObject;
+
+public class ConjunctiveQueryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OntologyContext oc;
+
+    @Before
+    public void setUp() throws Exception {
+        oc = new OntologyContext(TestOntologies.write(folder.getRoot().toPath(), "cq", "",
+            "SubObjectPropertyOf(ex:hasChild ex:ancestorOf)",
+            "TransitiveObjectProperty(ex:ancestorOf)",
+            "SubClassOf(ex:Fan ObjectHasValue(ex:likes ex:k))",
+            "DataPropertyRange(ex:age xsd:integer)",
+            "ObjectPropertyAssertion(ex:hasChild ex:a ex:b)",
+            "ObjectPropertyAssertion(ex:hasChild ex:b ex:c)",
+            "ClassAssertion(ex:Koala ex:b)",
+            "ClassAssertion(ex:Koala ex:c)",
+            "ClassAssertion(ex:Fan ex:a)",
+            "DataPropertyAssertion(ex:age ex:b \"3\"^^xsd:integer)").toString());
+    }
+
+    @After
+    public void tearDown() {
+        oc.teardown();
+    }
+
+    private Set<List<String>> answers(final String query) {
+        final ConjunctiveQuery cq = oc.compileConjunctiveQuery(query);
+        final Set<List<String>> ret = new HashSet<List<String>>();
+        oc.lock().lock();
+        try {
+            for( final List<OWLObject> answer : cq.evaluate(oc) ) {
+                final String[] names = new String[answer.size()];
+                for( int i = 0; i < names.length; i++ )
+                    names[i] = oc.simplifyNamespaceIfPossible(answer.get(i).toString().replaceAll("^<|>$", ""));
+                ret.add(Arrays.asList(names));
+            }
+        } finally {
+            oc.lock().unlock();
+        }
+        return ret;
+    }
+
+    private static Set<List<String>> tuples(final String... tuples) {
+        final Set<List<String>> ret = new HashSet<List<String>>();
+        for( final String t : tuples )
+            ret.add(t.isEmpty() ? Arrays.<String>asList() : Arrays.asList(t.split(" ")));
+        return ret;
+    }
+
+    @Test
+    public void parsesVariablesInOrderOfOccurrence() {
+        final ConjunctiveQuery cq = oc.compileConjunctiveQuery("ex:hasChild(?Y,?X), ex:Koala(?X), ex:age(?X,?A)");
+        assertEquals(Arrays.asList("Y", "X", "A"), cq.variables());
+        assertEquals(3, cq.arity());
+        assertSame(cq, oc.compileConjunctiveQuery("ex:hasChild(?Y,?X), ex:Koala(?X), ex:age(?X,?A)"));
+    }
+
+    @Test
+    public void malformedQueriesAreInvalid() {
+        for( final String query : Arrays.asList("ex:Koala(?X", "ex:Unknown(?X)", "ex:hasChild(?X,3)",
+                "ex:age(?X,ex:b)", "ex:Koala(?X), ex:age(?Y,?X)", "ex:Koala(?X) ex:Koala(?Y)") )
+            assertSame(query, ConjunctiveQuery.INVALID, oc.compileConjunctiveQuery(query));
+    }
+
+    @Test
+    public void joinsEntailedPairs() {
+        // transitivity: the pairs come from the reasoner
+        assertEquals(tuples("ex:a ex:b", "ex:b ex:c", "ex:a ex:c"), answers("ex:ancestorOf(?X,?Y)"));
+        assertEquals(tuples("ex:a ex:b ex:c"), answers("ex:hasChild(?X,?Y), ex:hasChild(?Y,?Z)"));
+        assertEquals(tuples("ex:a ex:b"), answers("ex:ancestorOf(?X,?Y), ex:ancestorOf(?Y,ex:c), ex:Koala(?Y)"));
+        // hasValue restriction: entailed pair without an assertion
+        assertEquals(tuples("ex:a ex:k"), answers("ex:likes(?X,?Y)"));
+        assertEquals(tuples("ex:b \"3\"^^xsd:integer"), answers("ex:Koala(?X), ex:age(?X,?A)"));
+    }
+
+    @Test
+    public void edgesAgreeWithRolledUpAtoms() {
+        // p(?X,?Y) joined in the plugin and p(?X,y) answered by the reasoner give the same pairs
+        for( final String property : Arrays.asList("ex:hasChild", "ex:ancestorOf", "ex:likes") ) {
+            final Set<List<String>> joined = answers(property + "(?X,?Y)");
+            for( final String y : Arrays.asList("ex:a", "ex:b", "ex:c", "ex:k") ) {
+                final Set<List<String>> expected = new HashSet<List<String>>();
+                for( final List<String> pair : joined ) {
+                    if( pair.get(1).equals(y) )
+                        expected.add(Arrays.asList(pair.get(0)));
+                }
+                assertEquals(property + " " + y, expected, answers(property + "(?X," + y + ")"));
+            }
+        }
+    }
+
+    @Test
+    public void queriesWithoutVariablesAreChecks() {
+        assertEquals(tuples(""), answers("ex:ancestorOf(ex:a,ex:c), ex:Koala(ex:c)"));
+        assertTrue(answers("ex:ancestorOf(ex:c,ex:a)").isEmpty());
+    }
+}
@@ -0,0 +1,107 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+public class ConsistencyOracleTest {
+    private static final List<OWLAxiom> AXIOMS = new ArrayList<OWLAxiom>();
+    static {
+        for( int i = 0; i < 12; i++ )
+            AXIOMS.add(TestOntologies.DF.getOWLClassAssertionAxiom(TestOntologies.DF.getOWLClass(TestOntologies.iri("C" + i)),
+                TestOntologies.DF.getOWLNamedIndividual(TestOntologies.iri("a"))));
+    }
+
+    private static Set<OWLAxiom> axioms(final Integer... indexes) {
+        final Set<OWLAxiom> ret = new HashSet<OWLAxiom>();
+        for( final int i : indexes )
+            ret.add(AXIOMS.get(i));
+        return ret;
+    }
+
+    @Test
+    public void answersSubsetsOfConsistentAndSupersetsOfInconsistentSets() {
+        final ConsistencyOracle oracle = new ConsistencyOracle(ConsistencyOracle.DEFAULT_MAX_SETS);
+        assertNull(oracle.lookup(axioms()));
+        oracle.record(axioms(0, 1, 2), true);
+        oracle.record(axioms(3, 4), false);
+        assertEquals(Boolean.TRUE, oracle.lookup(axioms()));
+        assertEquals(Boolean.TRUE, oracle.lookup(axioms(0, 2)));
+        assertEquals(Boolean.TRUE, oracle.lookup(axioms(0, 1, 2)));
+        assertEquals(Boolean.FALSE, oracle.lookup(axioms(3, 4)));
+        assertEquals(Boolean.FALSE, oracle.lookup(axioms(0, 3, 4, 5)));
+        assertNull(oracle.lookup(axioms(0, 1, 2, 5)));
+        assertNull(oracle.lookup(axioms(3)));
+        assertNull(oracle.lookup(axioms(3, 5)));
+    }
+
+    @Test
+    public void anInconsistentBaseOntologyIsInconsistentForAllModifications() {
+        final ConsistencyOracle oracle = new ConsistencyOracle(ConsistencyOracle.DEFAULT_MAX_SETS);
+        oracle.record(axioms(), false);
+        assertEquals(Boolean.FALSE, oracle.lookup(axioms()));
+        assertEquals(Boolean.FALSE, oracle.lookup(axioms(7, 8)));
+    }
+
+    @Test
+    public void keepsOnlyMinimalInconsistentAndMaximalConsistentSets() {
+        final ConsistencyOracle oracle = new ConsistencyOracle(ConsistencyOracle.DEFAULT_MAX_SETS);
+        oracle.record(axioms(0), true);
+        oracle.record(axioms(0, 1), true);
+        oracle.record(axioms(2, 3, 4), false);
+        oracle.record(axioms(2, 3), false);
+        oracle.record(axioms(5), true);
+        assertTrue(oracle.statistics(), oracle.statistics().endsWith("1 minimal inconsistent and 2 maximal consistent sets stored"));
+        assertEquals(Boolean.FALSE, oracle.lookup(axioms(2, 3)));
+        assertNull(oracle.lookup(axioms(2, 4)));
+        assertEquals(Boolean.TRUE, oracle.lookup(axioms(1)));
+    }
+
+    @Test
+    public void dropsTheOldestSetWhenFull() {
+        final ConsistencyOracle oracle = new ConsistencyOracle(2);
+        oracle.record(axioms(0), true);
+        oracle.record(axioms(1), true);
+        oracle.record(axioms(2), true);
+        assertNull(oracle.lookup(axioms(0)));
+        assertEquals(Boolean.TRUE, oracle.lookup(axioms(1)));
+        assertEquals(Boolean.TRUE, oracle.lookup(axioms(2)));
+    }
+
+    @Test
+    public void agreesWithAMonotoneConsistencyCheck() {
+        // inconsistent iff the added axioms contain one of the conflicts
+        final List<Set<OWLAxiom>> conflicts = Arrays.asList(axioms(0, 5), axioms(3, 7, 9), axioms(11));
+        final Random random = new Random(42);
+        final ConsistencyOracle oracle = new ConsistencyOracle(ConsistencyOracle.DEFAULT_MAX_SETS);
+        int answered = 0;
+        for( int round = 0; round < 2000; round++ ) {
+            final Set<OWLAxiom> added = new HashSet<OWLAxiom>();
+            for( final OWLAxiom a : AXIOMS ) {
+                if( random.nextInt(4) == 0 )
+                    added.add(a);
+            }
+            final boolean consistent = conflicts.stream().noneMatch(added::containsAll);
+            final Boolean known = oracle.lookup(added);
+            if( known == null ) {
+                oracle.record(added, consistent);
+            } else {
+                assertEquals(added.toString(), consistent, known);
+                answered++;
+            }
+        }
+        assertTrue(answered > 1000);
+        assertEquals(Boolean.TRUE, oracle.lookup(Collections.<OWLAxiom>emptySet()));
+    }
+}
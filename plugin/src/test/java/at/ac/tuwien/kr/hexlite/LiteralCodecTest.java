@@ -0,0 +1,103 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
+
+public class LiteralCodecTest {
+    private static final OWLDataProperty AGE = TestOntologies.DF.getOWLDataProperty(TestOntologies.iri("age"));
+    private static final OWLDataProperty WEIGHT = TestOntologies.DF.getOWLDataProperty(TestOntologies.iri("weight"));
+    private static final OWLDataProperty NAME = TestOntologies.DF.getOWLDataProperty(TestOntologies.iri("name"));
+    private static final OWLDataProperty NOTE = TestOntologies.DF.getOWLDataProperty(TestOntologies.iri("note"));
+
+    private LiteralCodec codec;
+
+    @Before
+    public void setUp() throws Exception {
+        codec = LiteralCodec.create(TestOntologies.load(
+            "DataPropertyRange(ex:age xsd:unsignedByte)",
+            "DataPropertyRange(ex:weight xsd:decimal)",
+            "DataPropertyRange(ex:name xsd:string)",
+            // two ranges: converted as without a range
+            "DataPropertyRange(ex:note xsd:string)",
+            "DataPropertyRange(ex:note xsd:integer)"), TestOntologies.DF);
+    }
+
+    private static OWLLiteral literal(final String lexical, final OWL2Datatype datatype) {
+        return TestOntologies.DF.getOWLLiteral(lexical, datatype.getDatatype(TestOntologies.DF));
+    }
+
+    @Test
+    public void parsesIntsWithoutOverflow() {
+        assertEquals(Integer.valueOf(42), LiteralCodec.parseInt("42"));
+        assertEquals(Integer.valueOf(-7), LiteralCodec.parseInt("-7"));
+        assertEquals(Integer.valueOf(7), LiteralCodec.parseInt("+7"));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), LiteralCodec.parseInt("-2147483648"));
+        assertNull(LiteralCodec.parseInt("2147483648"));
+        assertNull(LiteralCodec.parseInt("12345678901"));
+        assertNull(LiteralCodec.parseInt(""));
+        assertNull(LiteralCodec.parseInt("-"));
+        assertNull(LiteralCodec.parseInt("4.2"));
+    }
+
+    @Test
+    public void decodesWithTheRangeOfTheProperty() {
+        assertEquals(literal("5", OWL2Datatype.XSD_UNSIGNED_BYTE), codec.decode(AGE, Stubs.constant("5")));
+        assertEquals(literal("4.2", OWL2Datatype.XSD_DECIMAL), codec.decode(WEIGHT, Stubs.quoted("4.2")));
+        assertEquals(literal("5", OWL2Datatype.XSD_DECIMAL), codec.decode(WEIGHT, Stubs.constant("5")));
+        assertEquals(literal("5", OWL2Datatype.XSD_STRING), codec.decode(NAME, Stubs.constant("5")));
+    }
+
+    @Test
+    public void illTypedValuesAreDecodedWithoutTheRange() {
+        // out of the value range of xsd:unsignedByte, not an integer, not a decimal
+        assertEquals(TestOntologies.DF.getOWLLiteral(300), codec.decode(AGE, Stubs.constant("300")));
+        assertEquals(TestOntologies.DF.getOWLLiteral(-1), codec.decode(AGE, Stubs.constant("-1")));
+        assertEquals(TestOntologies.DF.getOWLLiteral("old"), codec.decode(AGE, Stubs.quoted("old")));
+        assertEquals(TestOntologies.DF.getOWLLiteral(true), codec.decode(WEIGHT, Stubs.constant("true")));
+    }
+
+    @Test
+    public void decodesWithoutARange() {
+        assertEquals(TestOntologies.DF.getOWLLiteral(5), codec.decode(NOTE, Stubs.constant("5")));
+        assertEquals(TestOntologies.DF.getOWLLiteral(false), codec.decode(NOTE, Stubs.constant("false")));
+        assertEquals(TestOntologies.DF.getOWLLiteral("5"), codec.decode(NOTE, Stubs.quoted("5")));
+        assertEquals(TestOntologies.DF.getOWLLiteral("koala"), codec.decode(NOTE, Stubs.constant("koala")));
+        // does not fit into an int
+        assertEquals(TestOntologies.DF.getOWLLiteral("12345678901"), codec.decode(NOTE, Stubs.constant("12345678901")));
+    }
+
+    @Test
+    public void checksLexicalSpaceAndValueRange() {
+        assertTrue(LiteralCodec.isWellTyped("255", OWL2Datatype.XSD_UNSIGNED_BYTE.getDatatype(TestOntologies.DF)));
+        assertFalse(LiteralCodec.isWellTyped("256", OWL2Datatype.XSD_UNSIGNED_BYTE.getDatatype(TestOntologies.DF)));
+        assertTrue(LiteralCodec.isWellTyped("-2147483648", OWL2Datatype.XSD_INT.getDatatype(TestOntologies.DF)));
+        assertFalse(LiteralCodec.isWellTyped("2147483648", OWL2Datatype.XSD_INT.getDatatype(TestOntologies.DF)));
+        assertTrue(LiteralCodec.isWellTyped("+1", OWL2Datatype.XSD_POSITIVE_INTEGER.getDatatype(TestOntologies.DF)));
+        assertFalse(LiteralCodec.isWellTyped("0", OWL2Datatype.XSD_POSITIVE_INTEGER.getDatatype(TestOntologies.DF)));
+        assertTrue(LiteralCodec.isWellTyped("123456789012345678901234567890", OWL2Datatype.XSD_INTEGER.getDatatype(TestOntologies.DF)));
+        assertFalse(LiteralCodec.isWellTyped("1.5", OWL2Datatype.XSD_INTEGER.getDatatype(TestOntologies.DF)));
+        assertTrue(LiteralCodec.isWellTyped("1", OWL2Datatype.XSD_BOOLEAN.getDatatype(TestOntologies.DF)));
+        assertFalse(LiteralCodec.isWellTyped("yes", OWL2Datatype.XSD_BOOLEAN.getDatatype(TestOntologies.DF)));
+        assertTrue(LiteralCodec.isWellTyped("-4.2", OWL2Datatype.XSD_DECIMAL.getDatatype(TestOntologies.DF)));
+        assertTrue(LiteralCodec.isWellTyped("anything", OWL2Datatype.XSD_STRING.getDatatype(TestOntologies.DF)));
+    }
+
+    @Test
+    public void encodesIntegersAndBooleans() {
+        assertEquals(Integer.valueOf(5), LiteralCodec.asInteger(literal("5", OWL2Datatype.XSD_INT)));
+        assertEquals(Integer.valueOf(5), LiteralCodec.asInteger(literal(" 5 ", OWL2Datatype.XSD_NON_NEGATIVE_INTEGER)));
+        assertNull(LiteralCodec.asInteger(literal("5", OWL2Datatype.XSD_DECIMAL)));
+        assertNull(LiteralCodec.asInteger(literal("99999999999", OWL2Datatype.XSD_LONG)));
+        assertEquals(Boolean.TRUE, LiteralCodec.asBoolean(literal("1", OWL2Datatype.XSD_BOOLEAN)));
+        assertEquals(Boolean.FALSE, LiteralCodec.asBoolean(literal("false", OWL2Datatype.XSD_BOOLEAN)));
+        assertNull(LiteralCodec.asBoolean(literal("true", OWL2Datatype.XSD_STRING)));
+    }
+}
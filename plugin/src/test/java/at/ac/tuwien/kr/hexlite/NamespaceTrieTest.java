@@ -0,0 +1,54 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NamespaceTrieTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static NamespaceTrie trie(final String... keysAndNamespaces) {
+        final Map<String, String> namespaces = new HashMap<String, String>();
+        for( int i = 0; i < keysAndNamespaces.length; i += 2 )
+            namespaces.put(keysAndNamespaces[i], keysAndNamespaces[i + 1]);
+        return new NamespaceTrie(namespaces);
+    }
+
+    @Test
+    public void findsTheLongestMatchingNamespace() {
+        final NamespaceTrie trie = trie("kr", "http://kr.example.org/", "ex", "http://kr.example.org/test#", "o", "http://other.org/");
+        NamespaceTrie.Match m = trie.longestPrefix("http://kr.example.org/test#a");
+        assertEquals("ex", m.key);
+        assertEquals("http://kr.example.org/test#".length(), m.length);
+        m = trie.longestPrefix("http://kr.example.org/other#a");
+        assertEquals("kr", m.key);
+        assertEquals("o", trie.longestPrefix("http://other.org/").key);
+        // a namespace only matches as a whole
+        assertNull(trie.longestPrefix("http://kr.example"));
+        assertNull(trie.longestPrefix("urn:x"));
+        assertNull(trie.longestPrefix(""));
+    }
+
+    @Test
+    public void contextSimplifiesWithTheLongestNamespaceAndExpandsBack() throws Exception {
+        final OntologyContext oc = new OntologyContext(TestOntologies.write(folder.getRoot().toPath(), "ns",
+            "\"namespaces\": { \"ex\": \"" + TestOntologies.NS + "\", \"org\": \"http://example.org/\" }",
+            "ClassAssertion(ex:A ex:a)").toString());
+        assertEquals("ex:a", oc.simplifyNamespaceIfPossible(TestOntologies.NS + "a"));
+        assertEquals("org:other#b", oc.simplifyNamespaceIfPossible("http://example.org/other#b"));
+        assertEquals("urn:x", oc.simplifyNamespaceIfPossible("urn:x"));
+        assertEquals(TestOntologies.NS + "a", oc.expandNamespace("ex:a"));
+        assertEquals("http://example.org/other#b", oc.expandNamespace("org:other#b"));
+        // full IRIs and unknown prefixes stay as they are
+        assertEquals("http://example.org/x", oc.expandNamespace("http://example.org/x"));
+        assertEquals("unknown:x", oc.expandNamespace("unknown:x"));
+        oc.teardown();
+    }
+}
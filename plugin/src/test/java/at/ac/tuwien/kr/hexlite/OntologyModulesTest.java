@@ -0,0 +1,119 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+
+public class OntologyModulesTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OntologyContext oc;
+
+    @Before
+    public void setUp() throws Exception {
+        // A and B are related to each other, X and Y only to each other; Z is unrelated to anything
+        oc = new OntologyContext(TestOntologies.write(folder.getRoot().toPath(), "modules", "\"modules\": true",
+            "Declaration(Class(ex:Z))",
+            "SubClassOf(ex:A ex:B)",
+            "DisjointClasses(ex:B ex:C)",
+            "SubClassOf(ex:X ex:Y)",
+            "ClassAssertion(ex:A ex:a)",
+            "ClassAssertion(ex:X ex:x)").toString());
+        oc.lock().lock();
+    }
+
+    @After
+    public void tearDown() {
+        oc.lock().unlock();
+        oc.teardown();
+    }
+
+    private AddAxiom classAssertion(final String cls, final String individual) {
+        return new AddAxiom(oc.ontology(), TestOntologies.DF.getOWLClassAssertionAxiom(
+            TestOntologies.DF.getOWLClass(TestOntologies.iri(cls)), TestOntologies.DF.getOWLNamedIndividual(TestOntologies.iri(individual))));
+    }
+
+    // asks the module reasoner (isConsistent may be answered by the consistency oracle without a reasoner)
+    private boolean consistent() {
+        return oc.reasonerFor(null).isConsistent();
+    }
+
+    @Test
+    public void subsetsOfAPinnedModificationReuseItsModules() {
+        final List<OWLOntologyChange> all = new ArrayList<OWLOntologyChange>();
+        all.add(classAssertion("C", "a"));
+        all.add(classAssertion("Y", "z"));
+        oc.switchToModification(all);
+        assertFalse(consistent());
+        final int modules = oc._modules.size();
+
+        oc.pinModuleSignature();
+        try {
+            for( final OWLOntologyChange change : all ) {
+                oc.switchToModification(Collections.singletonList(change));
+                consistent();
+                assertEquals(modules, oc._modules.size());
+            }
+            oc.switchToModification(Collections.singletonList(all.get(0)));
+            assertFalse(consistent());
+            oc.switchToModification(Collections.singletonList(all.get(1)));
+            assertTrue(consistent());
+        } finally {
+            oc.releaseModuleSignature();
+        }
+
+        // without the pin, the subset gets its own module
+        oc.switchToModification(Collections.singletonList(all.get(1)));
+        consistent();
+        assertEquals(modules + 1, oc._modules.size());
+    }
+
+    @Test
+    public void modulesAreSeededWithTheIndividualsOfTheDeltaAndTheQuery() {
+        final OWLClass b = TestOntologies.DF.getOWLClass(TestOntologies.iri("B"));
+        final OWLClass y = TestOntologies.DF.getOWLClass(TestOntologies.iri("Y"));
+        final OWLNamedIndividual a = TestOntologies.DF.getOWLNamedIndividual(TestOntologies.iri("a"));
+        final OWLNamedIndividual x = TestOntologies.DF.getOWLNamedIndividual(TestOntologies.iri("x"));
+        final OWLNamedIndividual z = TestOntologies.DF.getOWLNamedIndividual(TestOntologies.iri("z"));
+        oc.switchToModification(Collections.singletonList(classAssertion("Y", "z")));
+        assertTrue(consistent());
+
+        // entailment of an assertion: the module is extracted for the delta and the queried axiom, with their individuals
+        final OWLAxiom query = TestOntologies.DF.getOWLClassAssertionAxiom(b, a);
+        assertTrue(oc.reasonerFor(query).isEntailed(query));
+        boolean seeded = false;
+        for( final Set<OWLEntity> signature : oc._modules.keySet() ) {
+            assertTrue(signature.contains(z));
+            assertFalse(signature.contains(x));
+            seeded |= signature.contains(a) && signature.contains(b);
+        }
+        assertTrue(seeded);
+
+        // instances are about all individuals: enumeration queries use the full ontology and are complete
+        final int modules = oc._modules.size();
+        assertTrue(oc.reasonerFor(b).getInstances(b, false).containsEntity(a));
+        assertTrue(oc.reasonerFor(y).getInstances(y, false).containsEntity(z));
+        assertTrue(oc.reasonerFor(y).getInstances(y, false).containsEntity(x));
+        assertTrue(oc.reasonerForAll(Arrays.asList(b, y)).getInstances(b, false).containsEntity(a));
+        assertEquals(modules, oc._modules.size());
+    }
+}
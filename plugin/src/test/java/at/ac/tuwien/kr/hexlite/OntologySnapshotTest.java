@@ -0,0 +1,52 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OntologySnapshotTest {
+    private static final String[] AXIOMS = { "SubClassOf(ex:A ex:B)", "ClassAssertion(ex:A ex:a)" };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void snapshotIsWrittenRightAfterLoading() throws Exception {
+        final Path snapshot = folder.getRoot().toPath().resolve("onto.snapshot");
+        final Path meta = TestOntologies.write(folder.getRoot().toPath(), "onto", "\"snapshot\": \"" + snapshot + "\"", AXIOMS);
+        final OntologyContext oc = new OntologyContext(meta.toString());
+        // no teardown: the run may be aborted
+        assertTrue(Files.exists(snapshot));
+        assertFalse(oc._snapshotOutdated);
+        oc.teardown();
+
+        final OntologyContext reloaded = new OntologyContext(meta.toString());
+        assertFalse(reloaded._snapshotOutdated);
+        assertEquals(2, reloaded.ontology().getLogicalAxiomCount());
+        reloaded.teardown();
+    }
+
+    @Test
+    public void snapshotWithExtensionTablesIsWrittenOnceTheyAreBuilt() throws Exception {
+        final Path snapshot = folder.getRoot().toPath().resolve("tables.snapshot");
+        final Path meta = TestOntologies.write(folder.getRoot().toPath(), "tables",
+            "\"snapshot\": \"" + snapshot + "\", \"extension-tables\": true", AXIOMS);
+        final OntologyContext oc = new OntologyContext(meta.toString());
+        assertFalse(Files.exists(snapshot));
+        oc.extensionTables();
+        assertTrue(Files.exists(snapshot));
+        oc.teardown();
+
+        final OntologyContext reloaded = new OntologyContext(meta.toString());
+        assertFalse(reloaded._snapshotOutdated);
+        assertTrue(reloaded._extensionTables != null);
+        reloaded.teardown();
+    }
+}
@@ -0,0 +1,70 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class QuickXplainTest {
+    private static List<Integer> range(final int n) {
+        final List<Integer> ret = new ArrayList<Integer>();
+        for( int i = 0; i < n; i++ )
+            ret.add(i);
+        return ret;
+    }
+
+    // holds if the set contains all elements of one of the conflicts
+    private static QuickXplain<Integer> conflicts(final List<Set<Integer>> conflicts) {
+        return new QuickXplain<Integer>(set -> conflicts.stream().anyMatch(c -> set.containsAll(c)));
+    }
+
+    @Test
+    public void findsTheOnlyConflict() {
+        final QuickXplain<Integer> qx = conflicts(Collections.singletonList(new HashSet<Integer>(Arrays.asList(3, 17, 42))));
+        final List<Integer> conflict = qx.explain(range(64));
+        assertEquals(new HashSet<Integer>(Arrays.asList(3, 17, 42)), new HashSet<Integer>(conflict));
+        // O(k log(n/k)) checks, far below one check per candidate
+        assertTrue(qx.checks() < 32);
+    }
+
+    @Test
+    public void reportsWhetherThePropertyHoldsAtAll() {
+        assertNull(conflicts(Collections.singletonList(Collections.singleton(99))).explain(range(10)));
+        assertEquals(Collections.emptyList(), conflicts(Collections.singletonList(Collections.<Integer>emptySet())).explain(range(10)));
+        assertEquals(Collections.emptyList(), conflicts(Collections.singletonList(Collections.<Integer>emptySet())).explain(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void explanationsAreMinimal() {
+        final Random random = new Random(42);
+        for( int round = 0; round < 100; round++ ) {
+            final List<Set<Integer>> conflicts = new ArrayList<Set<Integer>>();
+            for( int c = 1 + random.nextInt(3); c > 0; c-- ) {
+                final Set<Integer> conflict = new HashSet<Integer>();
+                for( int k = 1 + random.nextInt(4); k > 0; k-- )
+                    conflict.add(random.nextInt(20));
+                conflicts.add(conflict);
+            }
+            final QuickXplain<Integer> qx = conflicts(conflicts);
+            final List<Integer> explanation = qx.explain(range(20));
+            final Set<Integer> found = new HashSet<Integer>(explanation);
+            assertEquals(explanation.size(), found.size());
+            // the property holds for the explanation, and for no subset with one element less
+            assertTrue(conflicts.stream().anyMatch(c -> found.containsAll(c)));
+            for( final Integer e : explanation ) {
+                final Set<Integer> smaller = new HashSet<Integer>(found);
+                smaller.remove(e);
+                assertTrue(conflicts.stream().noneMatch(c -> smaller.containsAll(c)));
+            }
+        }
+    }
+}
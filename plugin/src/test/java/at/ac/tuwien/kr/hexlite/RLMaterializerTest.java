@@ -0,0 +1,262 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.HermiT.ReasonerFactory;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+// the materializer must agree with HermiT on instances, pairs and consistency after every modification
+public class RLMaterializerTest {
+    private static final String[] TBOX = {
+        "Declaration(Class(ex:A))", "Declaration(Class(ex:B))", "Declaration(Class(ex:C))", "Declaration(Class(ex:D))",
+        "Declaration(Class(ex:E))", "Declaration(Class(ex:F))", "Declaration(Class(ex:G))", "Declaration(Class(ex:H))",
+        "Declaration(ObjectProperty(ex:p))", "Declaration(ObjectProperty(ex:q))", "Declaration(ObjectProperty(ex:qi))",
+        "Declaration(ObjectProperty(ex:r))", "Declaration(ObjectProperty(ex:s))", "Declaration(ObjectProperty(ex:t))",
+        "SubClassOf(ex:A ex:B)",
+        "SubClassOf(ex:B ex:C)",
+        "SubClassOf(ObjectSomeValuesFrom(ex:p ex:B) ex:D)",
+        "SubClassOf(ex:D ObjectAllValuesFrom(ex:r ex:E))",
+        "SubClassOf(ObjectHasValue(ex:p ex:o) ex:H)",
+        "SubClassOf(ObjectIntersectionOf(ex:C ex:E) ex:G)",
+        "ObjectPropertyRange(ex:r ex:C)",
+        "ObjectPropertyDomain(ex:s ex:F)",
+        "SubObjectPropertyOf(ex:p ex:q)",
+        "TransitiveObjectProperty(ex:q)",
+        "InverseObjectProperties(ex:q ex:qi)",
+        "SymmetricObjectProperty(ex:s)",
+        "SubObjectPropertyOf(ObjectPropertyChain(ex:p ex:s) ex:t)",
+        "DisjointClasses(ex:C ex:F)",
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OWLOntology ontology;
+    private RLMaterializer materializer;
+    private OWLReasoner hermit;
+
+    private void load(final String... abox) throws Exception {
+        final List<String> axioms = new ArrayList<String>();
+        Collections.addAll(axioms, TBOX);
+        Collections.addAll(axioms, abox);
+        ontology = TestOntologies.load(axioms.toArray(new String[0]));
+        materializer = RLMaterializer.create(ontology, TestOntologies.DF);
+        assertNotNull(materializer);
+        hermit = new ReasonerFactory().createReasoner(ontology);
+    }
+
+    @After
+    public void dispose() {
+        if( hermit != null )
+            hermit.dispose();
+    }
+
+    private static OWLClass cls(final String name) {
+        return TestOntologies.DF.getOWLClass(TestOntologies.iri(name));
+    }
+
+    private static OWLObjectProperty op(final String name) {
+        return TestOntologies.DF.getOWLObjectProperty(TestOntologies.iri(name));
+    }
+
+    private static OWLNamedIndividual ind(final String name) {
+        return TestOntologies.DF.getOWLNamedIndividual(TestOntologies.iri(name));
+    }
+
+    private static OWLAxiom type(final String c, final String i) {
+        return TestOntologies.DF.getOWLClassAssertionAxiom(cls(c), ind(i));
+    }
+
+    private static OWLAxiom pair(final String p, final String s, final String o) {
+        return TestOntologies.DF.getOWLObjectPropertyAssertionAxiom(op(p), ind(s), ind(o));
+    }
+
+    // applies the effective part of the modification to the ontology and to the materializer (like switchToModification)
+    private void modify(final List<OWLAxiom> removes, final List<OWLAxiom> adds) {
+        final List<OWLAxiom> removed = removes.stream().filter(ontology::containsAxiom).distinct().collect(Collectors.toList());
+        final List<OWLAxiom> added = adds.stream().filter(a -> !ontology.containsAxiom(a) || removed.contains(a)).distinct()
+            .collect(Collectors.toList());
+        removed.forEach(a -> ontology.getOWLOntologyManager().applyChange(new RemoveAxiom(ontology, a)));
+        added.forEach(a -> ontology.getOWLOntologyManager().applyChange(new AddAxiom(ontology, a)));
+        materializer.update(removed, added);
+        hermit.flush();
+    }
+
+    private void add(final OWLAxiom... axioms) {
+        modify(Collections.<OWLAxiom>emptyList(), java.util.Arrays.asList(axioms));
+    }
+
+    private void remove(final OWLAxiom... axioms) {
+        modify(java.util.Arrays.asList(axioms), Collections.<OWLAxiom>emptyList());
+    }
+
+    private void assertAgreesWithHermiT() {
+        assertEquals("consistency", hermit.isConsistent(), materializer.isConsistent());
+        if( !hermit.isConsistent() )
+            return;
+        for( final OWLClass c : ontology.classesInSignature(Imports.INCLUDED).collect(Collectors.toList()) ) {
+            final Set<OWLNamedIndividual> expected = hermit.getInstances(c, false).entities().collect(Collectors.toSet());
+            assertEquals("instances of " + c, expected, materializer.instances(c));
+        }
+        final List<OWLNamedIndividual> individuals = ontology.individualsInSignature(Imports.INCLUDED).collect(Collectors.toList());
+        for( final OWLObjectProperty p : ontology.objectPropertiesInSignature(Imports.INCLUDED).collect(Collectors.toList()) ) {
+            final Set<Map.Entry<OWLNamedIndividual, OWLNamedIndividual>> expected = new HashSet<Map.Entry<OWLNamedIndividual, OWLNamedIndividual>>();
+            for( final OWLNamedIndividual s : individuals )
+                hermit.getObjectPropertyValues(s, p).entities().forEach(o -> expected.add(new SimpleImmutableEntry<OWLNamedIndividual, OWLNamedIndividual>(s, o)));
+            final Set<Map.Entry<OWLNamedIndividual, OWLNamedIndividual>> actual = new HashSet<Map.Entry<OWLNamedIndividual, OWLNamedIndividual>>();
+            materializer.forEachPair(p, (s, o) -> actual.add(new SimpleImmutableEntry<OWLNamedIndividual, OWLNamedIndividual>(s, o)));
+            assertEquals("pairs of " + p, expected, actual);
+            for( final Map.Entry<OWLNamedIndividual, OWLNamedIndividual> e : expected )
+                assertTrue(materializer.hasPair(p, e.getKey(), e.getValue()));
+        }
+    }
+
+    @Test
+    public void materializesTheInitialABox() throws Exception {
+        load("ClassAssertion(ex:A ex:a)", "ObjectPropertyAssertion(ex:p ex:x ex:a)", "ObjectPropertyAssertion(ex:p ex:a ex:o)",
+            "ObjectPropertyAssertion(ex:r ex:x ex:y)", "ObjectPropertyAssertion(ex:s ex:a ex:z)");
+        assertAgreesWithHermiT();
+        assertTrue(materializer.instances(cls("D")).contains(ind("x")));
+        assertTrue(materializer.instances(cls("G")).contains(ind("y")));
+        assertTrue(materializer.hasPair(op("qi"), ind("o"), ind("x")));
+        assertTrue(materializer.hasPair(op("t"), ind("x"), ind("z")));
+    }
+
+    @Test
+    public void addsAndDeletesIncrementally() throws Exception {
+        load("ClassAssertion(ex:A ex:a)", "ObjectPropertyAssertion(ex:p ex:x ex:a)");
+        add(pair("r", "x", "y"), pair("p", "a", "b"));
+        assertAgreesWithHermiT();
+        assertTrue(materializer.instances(cls("E")).contains(ind("y")));
+        remove(type("A", "a"));
+        assertAgreesWithHermiT();
+        assertFalse(materializer.instances(cls("D")).contains(ind("x")));
+        assertFalse(materializer.instances(cls("E")).contains(ind("y")));
+        add(type("B", "a"));
+        assertAgreesWithHermiT();
+        assertTrue(materializer.instances(cls("E")).contains(ind("y")));
+    }
+
+    @Test
+    public void copiesAreUpdatedIndependently() throws Exception {
+        load("ClassAssertion(ex:A ex:a)", "ObjectPropertyAssertion(ex:p ex:x ex:a)");
+        final RLMaterializer original = materializer;
+        materializer = original.copy();
+        add(pair("r", "x", "y"), pair("p", "a", "b"));
+        remove(type("A", "a"));
+        assertAgreesWithHermiT();
+        assertFalse(materializer.instances(cls("D")).contains(ind("x")));
+        // the original still has the materialization of the loaded ontology
+        assertTrue(original.instances(cls("D")).contains(ind("x")));
+        assertFalse(original.hasPair(op("p"), ind("a"), ind("b")));
+    }
+
+    @Test
+    public void keepsFactsThatAreStillDerivableAnotherWay() throws Exception {
+        load("ClassAssertion(ex:A ex:a)", "ClassAssertion(ex:B ex:a)",
+            "ObjectPropertyAssertion(ex:p ex:a ex:b)", "ObjectPropertyAssertion(ex:p ex:b ex:c)", "ObjectPropertyAssertion(ex:q ex:a ex:c)");
+        // B(a) is also derived from A(a), q(a,c) also by transitivity over p(a,b) and p(b,c)
+        remove(type("B", "a"), pair("q", "a", "c"));
+        assertAgreesWithHermiT();
+        assertTrue(materializer.instances(cls("B")).contains(ind("a")));
+        assertTrue(materializer.hasPair(op("q"), ind("a"), ind("c")));
+        assertTrue(materializer.hasPair(op("qi"), ind("c"), ind("a")));
+        // without the last derivation both are gone
+        remove(type("A", "a"), pair("p", "b", "c"));
+        assertAgreesWithHermiT();
+        assertFalse(materializer.instances(cls("B")).contains(ind("a")));
+        assertFalse(materializer.hasPair(op("q"), ind("a"), ind("c")));
+    }
+
+    @Test
+    public void detectsAndRetractsInconsistencies() throws Exception {
+        load("ClassAssertion(ex:A ex:a)");
+        add(pair("s", "a", "b"));
+        // s has domain F, and F is disjoint with C
+        assertAgreesWithHermiT();
+        assertFalse(materializer.isConsistent());
+        remove(pair("s", "a", "b"));
+        assertAgreesWithHermiT();
+        assertTrue(materializer.isConsistent());
+        add(pair("s", "b", "a"));
+        // symmetric: s(a,b) again
+        assertFalse(materializer.isConsistent());
+        remove(type("A", "a"));
+        assertAgreesWithHermiT();
+        assertTrue(materializer.isConsistent());
+    }
+
+    @Test
+    public void agreesWithHermiTOnRandomModifications() throws Exception {
+        load("ClassAssertion(ex:A ex:a)", "ObjectPropertyAssertion(ex:p ex:a ex:b)", "ObjectPropertyAssertion(ex:r ex:b ex:c)");
+        final String[] individuals = { "a", "b", "c", "d", "o" };
+        final List<OWLAxiom> candidates = new ArrayList<OWLAxiom>();
+        for( final String i : individuals ) {
+            for( final String c : new String[] { "A", "B", "D", "E" } )
+                candidates.add(type(c, i));
+            for( final String j : individuals ) {
+                for( final String p : new String[] { "p", "q", "r", "s" } )
+                    candidates.add(pair(p, i, j));
+            }
+        }
+        final Random random = new Random(42);
+        for( int step = 0; step < 200; step++ ) {
+            final List<OWLAxiom> removes = new ArrayList<OWLAxiom>();
+            final List<OWLAxiom> adds = new ArrayList<OWLAxiom>();
+            for( int k = random.nextInt(4); k >= 0; k-- ) {
+                final OWLAxiom a = candidates.get(random.nextInt(candidates.size()));
+                (ontology.containsAxiom(a) ? removes : adds).add(a);
+            }
+            modify(removes, adds);
+            assertAgreesWithHermiT();
+        }
+    }
+
+    @Test
+    public void automaticRoutingUsesTheMaterializerForRLOntologies() throws Exception {
+        final List<String> axioms = new ArrayList<String>();
+        Collections.addAll(axioms, TBOX);
+        axioms.add("ClassAssertion(ex:A ex:a)");
+        final OntologyContext oc = new OntologyContext(TestOntologies.write(folder.getRoot().toPath(), "auto", "\"reasoner\": \"auto\"",
+            axioms.toArray(new String[0])).toString());
+        assertNotNull(oc.materializer());
+        assertTrue(oc.materializer().instances(cls("C")).contains(ind("a")));
+        oc.teardown();
+    }
+
+    @Test
+    public void rejectsOntologiesOutsideItsFragment() throws Exception {
+        // equality reasoning (functional properties) is not supported
+        assertNull(RLMaterializer.create(TestOntologies.load("Declaration(ObjectProperty(ex:p))", "FunctionalObjectProperty(ex:p)"),
+            TestOntologies.DF));
+        // not in OWL 2 RL: existential on the right-hand side
+        assertNull(RLMaterializer.create(TestOntologies.load("Declaration(Class(ex:A))", "Declaration(Class(ex:B))",
+            "Declaration(ObjectProperty(ex:p))", "SubClassOf(ex:A ObjectSomeValuesFrom(ex:p ex:B))"), TestOntologies.DF));
+    }
+}
@@ -0,0 +1,247 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IQuery;
+import at.ac.tuwien.kr.hexlite.api.ISolverContext;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+public class ReadOnlyConcurrencyTest {
+    private static final String[] AXIOMS = {
+        "SubClassOf(ex:A ex:B)",
+        "SubClassOf(ObjectSomeValuesFrom(ex:p ex:A) ex:C)",
+        "ClassAssertion(ex:A ex:a1)", "ClassAssertion(ex:A ex:a2)", "ClassAssertion(ex:B ex:b1)",
+        "ObjectPropertyAssertion(ex:p ex:b1 ex:a1)", "ObjectPropertyAssertion(ex:p ex:b2 ex:b1)" };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private OntologyContext context(final String meta) throws Exception {
+        return new OntologyContext(TestOntologies.write(folder.getRoot().toPath(), "concurrency", meta, AXIOMS).toString());
+    }
+
+    @Test
+    public void memoizedResultsDoNotWaitForTheLock() throws Exception {
+        final OntologyContext oc = context("");
+        assertEquals("x", oc.readOnly("key", c -> "x"));
+        // a modified-ontology call holds the lock for a long time
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<?> holder = executor.submit(() -> {
+            oc.lock().lock();
+            try {
+                locked.countDown();
+                release.await();
+            } finally {
+                oc.lock().unlock();
+            }
+            return null;
+        });
+        locked.await();
+        try {
+            final Future<String> reader = executor.submit(() -> oc.<String>readOnly("key", c -> "recomputed"));
+            assertEquals("x", reader.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+        holder.get();
+        oc.teardown();
+    }
+
+    @Test
+    public void concurrentMissesComputeOnce() throws Exception {
+        final OntologyContext oc = context("");
+        final AtomicInteger computed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for( int i = 0; i < 8; i++ ) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return oc.readOnly("key", c -> {
+                    computed.incrementAndGet();
+                    return new Object();
+                });
+            }));
+        }
+        start.countDown();
+        final Object first = results.get(0).get();
+        for( final Future<Object> result : results )
+            assertSame(first, result.get());
+        assertEquals(1, computed.get());
+        oc.teardown();
+    }
+
+    @Test
+    public void failedComputationsAreNotMemoized() throws Exception {
+        final OntologyContext oc = context("");
+        try {
+            oc.readOnly("key", c -> { throw new IllegalArgumentException("failed"); });
+            fail("the exception of the computation is passed on");
+        } catch (final IllegalArgumentException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals("x", oc.readOnly("key", c -> "x"));
+        oc.teardown();
+    }
+
+    @Test
+    public void memoizedResultsAreBounded() throws Exception {
+        final OntologyContext oc = context("");
+        for( int i = 0; i < OntologyContext.MAX_READ_ONLY + 100; i++ ) {
+            final int value = i;
+            assertEquals(Integer.valueOf(value), oc.readOnly(Integer.valueOf(i), c -> value));
+        }
+        assertEquals(OntologyContext.MAX_READ_ONLY, oc._readOnly.size());
+        oc.teardown();
+    }
+
+    private static Set<List<String>> values(final IPluginAtom.IAnswer answer) {
+        final Set<List<String>> ret = new HashSet<List<String>>();
+        for( final List<ISymbol> tuple : answer.getTrueTuples() ) {
+            final List<String> t = new ArrayList<String>();
+            for( final ISymbol s : tuple )
+                t.add(s.value());
+            ret.add(t);
+        }
+        return ret;
+    }
+
+    // the read-only and modified-ontology queries of the stress tests: atom, query, and the delta of modified calls
+    private static final class Call {
+        final String atom;
+        final IQuery query;
+
+        Call(final Path meta, final String atom, final List<ISymbol> delta, final String... arguments) {
+            this.atom = atom;
+            final List<ISymbol> input = new ArrayList<ISymbol>();
+            input.add(Stubs.quoted(meta.toString()));
+            if( delta != null ) {
+                input.add(Stubs.constant("delta"));
+                input.add(Stubs.constant("s"));
+            }
+            for( final String argument : arguments )
+                input.add(Stubs.quoted(argument));
+            query = Stubs.query(Stubs.interpretation(delta == null ? Collections.<ISymbol>emptyList() : delta),
+                input.toArray(new ISymbol[0]));
+        }
+    }
+
+    private static List<Call> calls(final Path meta) {
+        final List<Call> calls = new ArrayList<Call>();
+        for( final String cls : Arrays.asList("ex:A", "ex:B", "ex:C", "ex:B and not ex:A", "ex:p some ex:B") )
+            calls.add(new Call(meta, "dlCro", null, cls));
+        calls.add(new Call(meta, "dlOPro", null, "ex:p"));
+        for( final String individual : Arrays.asList("ex:a1", "ex:b1", "ex:b2") ) {
+            calls.add(new Call(meta, "dlCEro", null, "ex:C", individual));
+            calls.add(new Call(meta, "dlOPEro", null, "ex:p", individual, "ex:b1"));
+        }
+        for( final String individual : Arrays.asList("ex:b2", "ex:c1", "ex:a1") ) {
+            final List<ISymbol> delta = Collections.singletonList(Stubs.atom(true, "delta", Stubs.constant("s"),
+                Stubs.term("addc", Stubs.quoted("ex:A"), Stubs.quoted(individual))));
+            calls.add(new Call(meta, "dlC", delta, "ex:C"));
+            calls.add(new Call(meta, "dlC", delta, "ex:B"));
+        }
+        return calls;
+    }
+
+    @Test
+    public void concurrentCallsGiveTheSequentialAnswers() throws Exception {
+        for( final String meta : Arrays.asList("", "\"pool-size\": 3") ) {
+            final Path metafile = TestOntologies.write(folder.getRoot().toPath(), "stress", meta, AXIOMS);
+            final List<Call> calls = calls(metafile);
+
+            final OWLAPIPlugin sequential = new OWLAPIPlugin();
+            final Map<String, IPluginAtom> sequentialAtoms = TestOntologies.atoms(sequential);
+            final ISolverContext sequentialContext = new Stubs.SolverContext().create();
+            final Map<Call, Set<List<String>>> expected = new HashMap<Call, Set<List<String>>>();
+            for( final Call call : calls )
+                expected.put(call, values(sequentialAtoms.get(call.atom).retrieve(sequentialContext, call.query)));
+            sequential.teardown();
+
+            final OWLAPIPlugin plugin = new OWLAPIPlugin();
+            final Map<String, IPluginAtom> atoms = TestOntologies.atoms(plugin);
+            final List<Callable<Integer>> workers = new ArrayList<Callable<Integer>>();
+            for( int w = 0; w < 8; w++ ) {
+                final Random random = new Random(w);
+                workers.add(() -> {
+                    final ISolverContext ctx = new Stubs.SolverContext().create();
+                    for( int i = 0; i < 200; i++ ) {
+                        final Call call = calls.get(random.nextInt(calls.size()));
+                        assertEquals(call.atom + " " + call.query.getInput(), expected.get(call),
+                            values(atoms.get(call.atom).retrieve(ctx, call.query)));
+                    }
+                    return 200;
+                });
+            }
+            for( final Future<Integer> done : executor.invokeAll(workers) )
+                assertEquals(Integer.valueOf(200), done.get());
+            plugin.teardown();
+        }
+    }
+
+    @Test
+    public void memoizedReadOnlyCallsFromManyThreadsComputeOnce() throws Exception {
+        final Path metafile = TestOntologies.write(folder.getRoot().toPath(), "memoized", "", AXIOMS);
+        final OWLAPIPlugin plugin = new OWLAPIPlugin();
+        final IPluginAtom dlCro = TestOntologies.atoms(plugin).get("dlCro");
+        final IQuery query = new Call(metafile, "dlCro", null, "ex:B").query;
+        final Set<List<String>> expected = values(dlCro.retrieve(new Stubs.SolverContext().create(), query));
+        assertEquals(new HashSet<List<String>>(Arrays.asList(
+            Arrays.asList("http://example.org/hexlite-test#a1"), Arrays.asList("http://example.org/hexlite-test#a2"),
+            Arrays.asList("http://example.org/hexlite-test#b1"))), expected);
+        final OntologyContext oc = (OntologyContext) plugin.ontologyContext(metafile.toString());
+        final Map<Object, FutureTask<Object>> memoized = new HashMap<Object, FutureTask<Object>>(oc._readOnly);
+
+        final Callable<Void> worker = () -> {
+            final ISolverContext ctx = new Stubs.SolverContext().create();
+            for( int i = 0; i < 1000; i++ )
+                assertEquals(expected, values(dlCro.retrieve(ctx, query)));
+            return null;
+        };
+        for( final Future<Void> done : executor.invokeAll(Collections.nCopies(4, worker)) )
+            done.get();
+        // the calls of the workers are answered from the memoized result
+        assertEquals(memoized, oc._readOnly);
+        plugin.teardown();
+    }
+}
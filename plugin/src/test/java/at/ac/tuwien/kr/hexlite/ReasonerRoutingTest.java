@@ -0,0 +1,85 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IQuery;
+import at.ac.tuwien.kr.hexlite.api.ISolverContext;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+public class ReasonerRoutingTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] AXIOMS = { "SubClassOf(ex:B ex:A)", "ClassAssertion(ex:B ex:a)", "ClassAssertion(ex:A ex:b)" };
+
+    @Test
+    public void clashFreeOntologiesAreRoutedToStructuralReasoner() throws Exception {
+        assertTrue(ReasonerRouting.analyze(TestOntologies.load(AXIOMS)).isTrivial());
+        assertTrue(ReasonerRouting.mayClash(TestOntologies.DF.getOWLClassAssertionAxiom(TestOntologies.DF.getOWLNothing(),
+            TestOntologies.DF.getOWLNamedIndividual(TestOntologies.iri("a")))));
+        assertFalse(ReasonerRouting.mayClash(TestOntologies.DF.getOWLClassAssertionAxiom(
+            TestOntologies.DF.getOWLClass(TestOntologies.iri("B")), TestOntologies.DF.getOWLNamedIndividual(TestOntologies.iri("b")))));
+    }
+
+    // output tuples of atom for the delta with selector s, as strings
+    private static Set<List<String>> retrieve(final Map<String, IPluginAtom> atoms, final Path meta, final String atom,
+            final List<ISymbol> delta, final ISymbol... arguments) {
+        final ISymbol[] input = new ISymbol[3 + arguments.length];
+        input[0] = Stubs.quoted(meta.toString());
+        input[1] = Stubs.constant("delta");
+        input[2] = Stubs.constant("s");
+        System.arraycopy(arguments, 0, input, 3, arguments.length);
+        final IQuery query = Stubs.query(Stubs.interpretation(delta), input);
+        final ISolverContext ctx = new Stubs.SolverContext().create();
+        final Set<List<String>> ret = new HashSet<List<String>>();
+        for( final List<ISymbol> tuple : atoms.get(atom).retrieve(ctx, query).getTrueTuples() ) {
+            final String[] values = new String[tuple.size()];
+            for( int i = 0; i < values.length; i++ )
+                values[i] = tuple.get(i).value();
+            ret.add(Arrays.asList(values));
+        }
+        return ret;
+    }
+
+    private static ISymbol delta(final String cls, final String individual) {
+        return Stubs.atom(true, "delta", Stubs.constant("s"), Stubs.term("addc", Stubs.quoted(cls), Stubs.quoted(individual)));
+    }
+
+    @Test
+    public void deltasThatMayClashAreNotAnsweredStructurally() throws Exception {
+        final String namespaces = "\"namespaces\": { \"ex\": \"" + TestOntologies.NS + "\", \"owl\": \"http://www.w3.org/2002/07/owl#\" }";
+        final Path auto = TestOntologies.write(folder.getRoot().toPath(), "auto", "\"reasoner\": \"auto\",\n  " + namespaces, AXIOMS);
+        final Path hermit = TestOntologies.write(folder.getRoot().toPath(), "hermit", "\"reasoner\": \"hermit\",\n  " + namespaces, AXIOMS);
+        final OWLAPIPlugin plugin = new OWLAPIPlugin();
+        final Map<String, IPluginAtom> atoms = TestOntologies.atoms(plugin);
+        try {
+            final List<List<ISymbol>> deltas = Arrays.asList(Arrays.asList(delta("ex:B", "ex:c")),
+                Arrays.asList(delta("owl:Nothing", "ex:a")), Arrays.asList(delta("ex:B", "ex:c"), delta("owl:Nothing", "ex:c")));
+            final int[] consistentTuples = { 1, 0, 0 };
+            for( int i = 0; i < deltas.size(); i++ ) {
+                final List<ISymbol> delta = deltas.get(i);
+                final Set<List<String>> consistent = retrieve(atoms, hermit, "dlConsistent", delta);
+                assertEquals(delta.toString(), consistentTuples[i], consistent.size());
+                assertEquals(delta.toString(), consistent, retrieve(atoms, auto, "dlConsistent", delta));
+                assertEquals(delta.toString(), retrieve(atoms, hermit, "dlC", delta, Stubs.quoted("ex:A")),
+                    retrieve(atoms, auto, "dlC", delta, Stubs.quoted("ex:A")));
+            }
+        } finally {
+            plugin.teardown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+public class ReplacementAtomIndexTest {
+    private static final ISymbol ONTO = Stubs.quoted("onto-meta.json");
+    private static final List<ISymbol> QUERY = Collections.singletonList(Stubs.quoted("ex:A"));
+
+    private static Map<String, IPluginAtom> atoms(final String... predicates) {
+        final Map<String, IPluginAtom> all = TestOntologies.atoms(new OWLAPIPlugin());
+        final Map<String, IPluginAtom> atoms = new HashMap<String, IPluginAtom>();
+        for( final String predicate : predicates )
+            atoms.put(predicate, all.get(predicate));
+        return atoms;
+    }
+
+    // replacement atom (aux, onto, delta, sel, query, output)
+    private static ISymbol classReplacement(final String aux, final ISymbol onto, final String query, final String output) {
+        return Stubs.atom(true, aux, onto, Stubs.constant("delta"), Stubs.constant("s1"), Stubs.quoted(query), Stubs.quoted(output));
+    }
+
+    @Test
+    public void predicatesMatchWholeWordsOnly() {
+        assertTrue(ReplacementAtomIndex.isWordOf("dlC", "dlC"));
+        assertTrue(ReplacementAtomIndex.isWordOf("dlC", "aux_r_dlC_3"));
+        assertTrue(ReplacementAtomIndex.isWordOf("dlC", "aux_dlCS_dlC"));
+        assertFalse(ReplacementAtomIndex.isWordOf("dlC", "aux_r_dlCS"));
+        assertFalse(ReplacementAtomIndex.isWordOf("dlC", "aux_r_xdlC"));
+        assertFalse(ReplacementAtomIndex.isWordOf("dlCS", "aux_r_dlC"));
+    }
+
+    @Test
+    public void atomsOfTheSameShapeAreToldApartByTheirAuxName() {
+        final ReplacementAtomIndex index = new ReplacementAtomIndex(atoms("dlC", "dlCS", "dlOP"));
+        final ISymbol full = classReplacement("aux_r_dlC", ONTO, "ex:A", "http://example.org/hexlite-test#a");
+        final ISymbol simplified = classReplacement("aux_r_dlCS", ONTO, "ex:A", "ex:a");
+        final List<ISymbol> instantiated = Arrays.asList(full, simplified);
+        assertEquals(Collections.singletonList(full), index.lookup(instantiated, "dlC", ONTO, QUERY));
+        assertEquals(Collections.singletonList(simplified), index.lookup(instantiated, "dlCS", ONTO, QUERY));
+        assertEquals(Collections.emptyList(), index.lookup(instantiated, "dlOP", ONTO, QUERY));
+        assertEquals(0, index.ambiguous());
+    }
+
+    @Test
+    public void theShapeSufficesIfOnlyOneAtomFits() {
+        final ReplacementAtomIndex index = new ReplacementAtomIndex(atoms("dlC", "dlOP"));
+        final ISymbol r = classReplacement("aux_7", ONTO, "ex:A", "ex:a");
+        final List<ISymbol> instantiated = Collections.singletonList(r);
+        assertEquals(Collections.singletonList(r), index.lookup(instantiated, "dlC", ONTO, QUERY));
+        assertEquals(Collections.emptyList(), index.lookup(instantiated, "dlOP", ONTO, QUERY));
+    }
+
+    @Test
+    public void aSingleAuxPredicateBelongsToTheCalledAtom() {
+        // the aux names do not mention the atoms, as hexlite only guarantees the tuple layout
+        final ReplacementAtomIndex index = new ReplacementAtomIndex(atoms("dlC", "dlCS", "dlCE"));
+        final ISymbol a = classReplacement("aux_0", ONTO, "ex:A", "ex:a");
+        final ISymbol b = classReplacement("aux_1", ONTO, "ex:B", "ex:b");
+        final List<ISymbol> instantiated = Arrays.asList(a, b);
+        assertEquals(Collections.singletonList(a), index.lookup(instantiated, "dlC", ONTO, QUERY));
+        assertEquals(Collections.singletonList(b),
+            index.lookup(instantiated, "dlCS", ONTO, Collections.singletonList(Stubs.quoted("ex:B"))));
+        assertEquals(0, index.ambiguous());
+    }
+
+    @Test
+    public void ambiguousReplacementAtomsAreNotMatched() {
+        final ReplacementAtomIndex index = new ReplacementAtomIndex(atoms("dlC", "dlCS"));
+        final List<ISymbol> instantiated = Arrays.asList(
+            classReplacement("aux_7", ONTO, "ex:A", "ex:a"),
+            classReplacement("aux_dlC_dlCS", ONTO, "ex:A", "ex:a"));
+        assertEquals(Collections.emptyList(), index.lookup(instantiated, "dlC", ONTO, QUERY));
+        assertEquals(Collections.emptyList(), index.lookup(instantiated, "dlCS", ONTO, QUERY));
+        assertEquals(2, index.ambiguous());
+    }
+
+    @Test
+    public void matchesOntologyAndQueryAndFollowsTheSolver() {
+        final ReplacementAtomIndex index = new ReplacementAtomIndex(atoms("dlC", "dlCS"));
+        final ISymbol other = Stubs.quoted("other-meta.json");
+        final ISymbol r = classReplacement("aux_r_dlC", ONTO, "ex:A", "ex:a");
+        final List<ISymbol> instantiated = new ArrayList<ISymbol>();
+        instantiated.add(r);
+        instantiated.add(classReplacement("aux_r_dlC", other, "ex:A", "ex:a"));
+        instantiated.add(classReplacement("aux_r_dlC", ONTO, "ex:B", "ex:a"));
+        assertEquals(Collections.singletonList(r), index.lookup(instantiated, "dlC", ONTO, QUERY));
+        assertEquals(1, index.rebuilds());
+        index.lookup(instantiated, "dlC", ONTO, QUERY);
+        assertEquals(1, index.rebuilds());
+
+        // the solver instantiated another replacement atom
+        final ISymbol s = classReplacement("aux_r_dlC", ONTO, "ex:A", "ex:b");
+        instantiated.add(s);
+        assertEquals(Arrays.asList(r, s), index.lookup(instantiated, "dlC", ONTO, QUERY));
+        assertEquals(2, index.rebuilds());
+    }
+}
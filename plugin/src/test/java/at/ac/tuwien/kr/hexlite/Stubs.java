@@ -0,0 +1,186 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import at.ac.tuwien.kr.hexlite.api.IInterpretation;
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom.IQuery;
+import at.ac.tuwien.kr.hexlite.api.ISolverContext;
+import at.ac.tuwien.kr.hexlite.api.ISymbol;
+
+// in-process stand-ins for the solver side of the hexlite API (also used by the benchmarks, via the test-jar)
+//
+// the stubs are dynamic proxies that implement the methods the plugin uses; any other method throws
+// UnsupportedOperationException; symbols stored through a solver context remember that context
+public final class Stubs {
+    private Stubs() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> iface, final InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[] { iface }, handler);
+    }
+
+    private static UnsupportedOperationException unsupported(final Method method) {
+        return new UnsupportedOperationException("stub does not implement " + method.getDeclaringClass().getSimpleName()
+            + "." + method.getName());
+    }
+
+    // ground term or atom: a constant (no arguments) or name(arguments), with a truth value for input atoms
+    private static final class Symbol implements InvocationHandler {
+        final String name;
+        final List<ISymbol> arguments;
+        final boolean truth;
+        final String value;
+        // solver context that stored the symbol (null for symbols of the query and the interpretation)
+        final SolverContext owner;
+
+        Symbol(final String _name, final List<ISymbol> _arguments, final boolean _truth, final SolverContext _owner) {
+            name = _name;
+            arguments = _arguments;
+            truth = _truth;
+            owner = _owner;
+            value = arguments.isEmpty() ? name
+                : name + "(" + arguments.stream().map(ISymbol::value).collect(Collectors.joining(",")) + ")";
+        }
+
+        public Object invoke(final Object self, final Method method, final Object[] args) {
+            switch( method.getName() ) {
+            case "value":
+            case "toString":
+                return value;
+            case "tuple": {
+                final ArrayList<ISymbol> ret = new ArrayList<ISymbol>(arguments.size() + 1);
+                ret.add(arguments.isEmpty() ? (ISymbol) self : constant(name));
+                ret.addAll(arguments);
+                return ret;
+            }
+            case "isTrue":
+                return truth;
+            case "negate":
+                return proxy(ISymbol.class, new Symbol(name, arguments, !truth, owner));
+            case "intValue":
+                return Integer.parseInt(value);
+            case "hashCode":
+                return value.hashCode() * 2 + (truth ? 1 : 0);
+            case "equals": {
+                if( args[0] == null || !Proxy.isProxyClass(args[0].getClass()) )
+                    return false;
+                final InvocationHandler other = Proxy.getInvocationHandler(args[0]);
+                return other instanceof Symbol && ((Symbol) other).value.equals(value) && ((Symbol) other).truth == truth;
+            }
+            default:
+                throw unsupported(method);
+            }
+        }
+    }
+
+    public static ISymbol constant(final String name) {
+        return proxy(ISymbol.class, new Symbol(name, Collections.<ISymbol>emptyList(), true, null));
+    }
+
+    public static ISymbol quoted(final String s) {
+        return constant("\"" + s + "\"");
+    }
+
+    public static ISymbol term(final String name, final ISymbol... arguments) {
+        return proxy(ISymbol.class, new Symbol(name, Arrays.asList(arguments), true, null));
+    }
+
+    // input atom name(arguments) with the given truth value in the interpretation
+    public static ISymbol atom(final boolean truth, final String name, final ISymbol... arguments) {
+        return proxy(ISymbol.class, new Symbol(name, Arrays.asList(arguments), truth, null));
+    }
+
+    // solver context that stored symbol, null if it was not stored by a solver context
+    static SolverContext owner(final ISymbol symbol) {
+        return ((Symbol) Proxy.getInvocationHandler(symbol)).owner;
+    }
+
+    // solver context that creates symbols on store* and records learned nogoods
+    public static final class SolverContext implements InvocationHandler {
+        final List<Set<ISymbol>> nogoods = Collections.synchronizedList(new ArrayList<Set<ISymbol>>());
+        private volatile ArrayList<ISymbol> instantiatedOutputAtoms = new ArrayList<ISymbol>();
+
+        public void setInstantiatedOutputAtoms(final Collection<ISymbol> atoms) {
+            instantiatedOutputAtoms = new ArrayList<ISymbol>(atoms);
+        }
+
+        private ISymbol store(final String value) {
+            return proxy(ISymbol.class, new Symbol(value, Collections.<ISymbol>emptyList(), true, this));
+        }
+
+        @SuppressWarnings("unchecked")
+        public Object invoke(final Object self, final Method method, final Object[] args) {
+            switch( method.getName() ) {
+            case "storeString":
+            case "storeConstant":
+                return store((String) args[0]);
+            case "storeInteger":
+                return store(String.valueOf(args[0]));
+            case "learn":
+                nogoods.add(new HashSet<ISymbol>((Collection<ISymbol>) args[0]));
+                return null;
+            case "getInstantiatedOutputAtoms":
+                return method.getReturnType().isAssignableFrom(ArrayList.class) ? instantiatedOutputAtoms
+                    : new HashSet<ISymbol>(instantiatedOutputAtoms);
+            case "hashCode":
+                return System.identityHashCode(self);
+            case "equals":
+                return self == args[0];
+            case "toString":
+                return "stub solver context";
+            default:
+                throw unsupported(method);
+            }
+        }
+
+        public ISolverContext create() {
+            return proxy(ISolverContext.class, this);
+        }
+    }
+
+    public static IInterpretation interpretation(final Collection<ISymbol> _inputAtoms) {
+        final ArrayList<ISymbol> inputAtoms = new ArrayList<ISymbol>(_inputAtoms);
+        return proxy(IInterpretation.class, (self, method, args) -> {
+            switch( method.getName() ) {
+            case "getInputAtoms":
+                return method.getReturnType().isAssignableFrom(ArrayList.class) ? inputAtoms : new HashSet<ISymbol>(inputAtoms);
+            case "hashCode":
+                return System.identityHashCode(self);
+            case "equals":
+                return self == args[0];
+            default:
+                throw unsupported(method);
+            }
+        });
+    }
+
+    public static IQuery query(final IInterpretation interpretation, final ISymbol... input) {
+        final ArrayList<ISymbol> inputList = new ArrayList<ISymbol>(Arrays.asList(input));
+        return proxy(IQuery.class, (self, method, args) -> {
+            switch( method.getName() ) {
+            case "getInput":
+                return inputList;
+            case "getInterpretation":
+                return interpretation;
+            case "hashCode":
+                return Objects.hash(inputList);
+            case "equals":
+                return self == args[0];
+            default:
+                throw unsupported(method);
+            }
+        });
+    }
+}
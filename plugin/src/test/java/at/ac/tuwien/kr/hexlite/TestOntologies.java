@@ -0,0 +1,74 @@
+package at.ac.tuwien.kr.hexlite;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.StringDocumentSource;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+import at.ac.tuwien.kr.hexlite.api.IPluginAtom;
+
+// small ontologies for tests, written in functional syntax with the prefix ex: (the namespace "ex" of the meta file)
+final class TestOntologies {
+    static final String NS = "http://example.org/hexlite-test#";
+    static final OWLDataFactory DF = OWLManager.getOWLDataFactory();
+
+    private TestOntologies() {
+    }
+
+    private static String document(final String... axioms) {
+        final StringBuilder b = new StringBuilder();
+        b.append("Prefix(ex:=<").append(NS).append(">)\n");
+        b.append("Prefix(xsd:=<http://www.w3.org/2001/XMLSchema#>)\n");
+        b.append("Ontology(<").append(NS, 0, NS.length() - 1).append(">\n");
+        for( final String axiom : axioms )
+            b.append(axiom).append('\n');
+        return b.append(")\n").toString();
+    }
+
+    static IRI iri(final String name) {
+        return IRI.create(NS + name);
+    }
+
+    static OWLOntology load(final String... axioms) throws OWLOntologyCreationException {
+        return OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(new StringDocumentSource(document(axioms)));
+    }
+
+    // writes name.owl and name-meta.json to dir and returns the meta file;
+    // meta contains additional members of the meta file (e.g. "\"reasoner\": \"rl\""), or is empty;
+    // the namespaces default to ex unless meta has its own
+    static Path write(final Path dir, final String name, final String meta, final String... axioms) throws IOException {
+        final Path owl = dir.resolve(name + ".owl");
+        Files.write(owl, document(axioms).getBytes(StandardCharsets.UTF_8));
+        final Path metafile = dir.resolve(name + "-meta.json");
+        try( PrintWriter out = new PrintWriter(Files.newBufferedWriter(metafile, StandardCharsets.UTF_8)) ) {
+            out.println("{");
+            out.println("  \"load-uri\": \"" + owl.toAbsolutePath() + "\",");
+            if( meta.contains("\"namespaces\"") ) {
+                out.println("  " + meta);
+            } else {
+                if( !meta.isEmpty() )
+                    out.println("  " + meta + ",");
+                out.println("  \"namespaces\": { \"ex\": \"" + NS + "\" }");
+            }
+            out.println("}");
+        }
+        return metafile;
+    }
+
+    static Map<String, IPluginAtom> atoms(final OWLAPIPlugin plugin) {
+        final Map<String, IPluginAtom> atoms = new HashMap<String, IPluginAtom>();
+        for( final IPluginAtom atom : plugin.createAtoms() )
+            atoms.put(atom.getPredicate(), atom);
+        return atoms;
+    }
+}
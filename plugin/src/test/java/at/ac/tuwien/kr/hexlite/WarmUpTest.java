@@ -0,0 +1,37 @@
+package at.ac.tuwien.kr.hexlite;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WarmUpTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void callsDuringWarmUpWaitOnlyForTheCurrentStage() throws Exception {
+        final OntologyContext oc = new OntologyContext(TestOntologies.write(folder.getRoot().toPath(), "warmup",
+            "\"extension-tables\": true, \"minimal-nogoods\": true",
+            "SubClassOf(ex:A ex:B)", "ClassAssertion(ex:A ex:a)", "ObjectPropertyAssertion(ex:p ex:a ex:b)").toString());
+        final Thread warmUp = new Thread(oc::warmUp);
+        warmUp.start();
+        // a call arrives while the first stage holds the lock
+        while( !oc._lock.isLocked() && warmUp.isAlive() )
+            Thread.yield();
+        oc.lock().lock();
+        try {
+            // the call got the lock before the later stages (the extension tables are built last)
+            assertTrue(warmUp.isAlive());
+            assertNull(oc._extensionTables);
+        } finally {
+            oc.lock().unlock();
+        }
+        warmUp.join();
+        assertNotNull(oc._extensionTables);
+        oc.teardown();
+    }
+}